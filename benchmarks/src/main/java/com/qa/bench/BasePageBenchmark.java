@@ -0,0 +1,118 @@
+package com.qa.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.WebElement;
+
+import com.qa.base.BatchQuery;
+import com.qa.base.ElementSnapshot;
+
+/**
+ * Throughput and command count of the hottest {@link com.qa.base.BasePage} helpers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasePageBenchmark {
+
+	private final String product = Fixture.product(Fixture.PRODUCTS / 2);
+	private final String country = Fixture.country(Fixture.COUNTRIES / 2);
+
+	@Benchmark
+	public WebElement getElement(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		WebElement element = state.page.getElement(Fixture.SUBMIT);
+		counters.record(before, state.commands());
+		return element;
+	}
+
+	@Benchmark
+	public void doClick(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		state.page.doClick(Fixture.SUBMIT);
+		counters.record(before, state.commands());
+	}
+
+	@Benchmark
+	public String doGetText(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		String text = state.page.doGetText(Fixture.SUBMIT);
+		counters.record(before, state.commands());
+		return text;
+	}
+
+	@Benchmark
+	public List<WebElement> visibilityofAllElements(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		List<WebElement> cards = state.page.visibilityofAllElements(Fixture.CARDS, 10);
+		counters.record(before, state.commands());
+		return cards;
+	}
+
+	@Benchmark
+	public ArrayList<String> doGetDropDownOptions(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		ArrayList<String> options = state.page.doGetDropDownOptions(Fixture.COUNTRY);
+		counters.record(before, state.commands());
+		return options;
+	}
+
+	@Benchmark
+	public void doSelectDropDownValue(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		state.page.doSelectDropDownValue(Fixture.COUNTRY, country);
+		counters.record(before, state.commands());
+	}
+
+	@Benchmark
+	public WebElement fluentWait(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		WebElement element = state.page.fluentWait(Fixture.SUBMIT, 10, 1);
+		counters.record(before, state.commands());
+		return element;
+	}
+
+	// the lookup HomePage.getProductByName performs
+	@Benchmark
+	public WebElement productByName(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		WebElement match = null;
+		for (ElementSnapshot card : BatchQuery.of(Fixture.CARDS).textOf("b").fetch(state.webDriver)) {
+			if (card.text().equals(product)) {
+				match = card.element();
+				break;
+			}
+		}
+		counters.record(before, state.commands());
+		return match;
+	}
+
+	// the per-card lookup getProductByName used before batching, kept as a baseline
+	@Benchmark
+	public WebElement productByNamePerElement(DriverState state, CommandCounters counters) {
+		long before = state.commands();
+		WebElement match = null;
+		for (WebElement card : state.page.getElements(Fixture.CARDS)) {
+			if (card.findElement(Fixture.CARD_TITLE).getText().equals(product)) {
+				match = card;
+				break;
+			}
+		}
+		counters.record(before, state.commands());
+		return match;
+	}
+}
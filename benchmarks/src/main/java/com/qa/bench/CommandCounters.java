@@ -0,0 +1,28 @@
+package com.qa.bench;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the WebDriver commands issued by the benchmarked helpers. JMH reports the
+ * counter as a rate next to the primary score, so {@code commands / score} is the
+ * number of commands per helper call.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CommandCounters {
+
+	public long commands;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		commands = 0;
+	}
+
+	void record(long before, long after) {
+		commands += after - before;
+	}
+}
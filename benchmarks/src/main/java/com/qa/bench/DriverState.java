@@ -0,0 +1,93 @@
+package com.qa.bench;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import com.qa.base.BasePage;
+
+/**
+ * The WebDriver a benchmark runs against.
+ * <p>
+ * {@code driver=stub} (default) uses the in-memory {@link StubWebDriver}, optionally with
+ * {@code latencyMicros} of simulated round-trip time per command. {@code driver=chrome}
+ * starts headless Chrome on the {@link FixtureServer} page and counts commands through an
+ * {@link EventFiringDecorator}. The {@link BasePage} under test is created here so that
+ * it always talks to the same driver instance the command counter reads.
+ * </p>
+ */
+@State(Scope.Thread)
+public class DriverState {
+
+	@Param({ "stub" })
+	public String driver;
+
+	@Param({ "0" })
+	public long latencyMicros;
+
+	public WebDriver webDriver;
+	public BasePage page;
+
+	private LongSupplier commandCount;
+	private FixtureServer server;
+	private WebDriver browser;
+
+	@Setup(Level.Trial)
+	public void start() throws IOException {
+		if ("stub".equals(driver)) {
+			StubWebDriver stub = Fixture.stubDriver(latencyMicros);
+			webDriver = stub;
+			commandCount = stub::commandCount;
+		} else if ("chrome".equals(driver)) {
+			server = new FixtureServer();
+			browser = new ChromeDriver(new ChromeOptions().addArguments("--headless=new"));
+			CommandCounter counter = new CommandCounter();
+			webDriver = new EventFiringDecorator<WebDriver>(counter).decorate(browser);
+			webDriver.get(server.url());
+			commandCount = counter::count;
+		} else {
+			throw new IllegalArgumentException("Unknown benchmark driver: " + driver);
+		}
+		page = new BasePage(webDriver);
+	}
+
+	public long commands() {
+		return commandCount.getAsLong();
+	}
+
+	@TearDown(Level.Trial)
+	public void stop() {
+		if (browser != null) {
+			browser.quit();
+		}
+		if (server != null) {
+			server.close();
+		}
+	}
+
+	static final class CommandCounter implements WebDriverListener {
+
+		private long count;
+
+		@Override
+		public void beforeAnyCall(Object target, Method method, Object[] args) {
+			count++;
+		}
+
+		long count() {
+			return count;
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.qa.bench;
+
+import org.openqa.selenium.By;
+
+/**
+ * The benchmark fixture: a product catalog, a country dropdown, a list of choices
+ * and a submit button. The same content is exposed as an in-memory stub driver and
+ * as static HTML for {@link FixtureServer}, so both driver modes exercise the same
+ * locators.
+ */
+public final class Fixture {
+
+	public static final int PRODUCTS = 100;
+	public static final int COUNTRIES = 50;
+	public static final int CHOICES = 20;
+
+	public static final By CARDS = By.cssSelector(".card");
+	public static final By CARD_TITLE = By.cssSelector("b");
+	public static final By CARD_BUTTON = By.cssSelector("button");
+	public static final By COUNTRY = By.cssSelector("#country");
+	public static final By OPTION = By.cssSelector("option");
+	public static final By CHOICE = By.cssSelector(".choice");
+	public static final By SUBMIT = By.cssSelector("#submit");
+
+	private Fixture() {
+	}
+
+	public static String product(int i) {
+		return "PRODUCT " + i;
+	}
+
+	public static String country(int i) {
+		return "Country " + i;
+	}
+
+	public static StubWebDriver stubDriver(long latencyMicros) {
+		StubWebDriver driver = new StubWebDriver(latencyMicros);
+		for (int i = 0; i < PRODUCTS; i++) {
+			driver.register(CARDS, new StubElement("div", product(i) + "\nAdd To Cart")
+					.attribute("class", "card")
+					.child(CARD_TITLE, new StubElement("b", product(i)))
+					.child(CARD_BUTTON, new StubElement("button", "Add To Cart")));
+		}
+		StubElement select = new StubElement("select", "").attribute("id", "country");
+		for (int i = 0; i < COUNTRIES; i++) {
+			select.child(OPTION, new StubElement("option", country(i)).attribute("value", "c" + i));
+		}
+		driver.register(COUNTRY, select);
+		for (int i = 0; i < CHOICES; i++) {
+			driver.register(CHOICE, new StubElement("span", "Choice " + i).attribute("class", "choice"));
+		}
+		driver.register(SUBMIT, new StubElement("button", "Submit").attribute("id", "submit"));
+		return driver;
+	}
+
+	public static String html() {
+		StringBuilder html = new StringBuilder(16 * 1024);
+		html.append("<!DOCTYPE html><html><head><title>Fixture</title></head><body>\n");
+		for (int i = 0; i < PRODUCTS; i++) {
+			html.append("<div class=\"card\"><b>").append(product(i))
+					.append("</b><button>Add To Cart</button></div>\n");
+		}
+		html.append("<select id=\"country\">\n");
+		for (int i = 0; i < COUNTRIES; i++) {
+			html.append("<option value=\"c").append(i).append("\">").append(country(i)).append("</option>\n");
+		}
+		html.append("</select>\n");
+		for (int i = 0; i < CHOICES; i++) {
+			html.append("<span class=\"choice\">Choice ").append(i).append("</span>\n");
+		}
+		html.append("<button id=\"submit\">Submit</button>\n</body></html>\n");
+		return html.toString();
+	}
+}
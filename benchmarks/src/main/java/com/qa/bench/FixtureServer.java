@@ -0,0 +1,39 @@
+package com.qa.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the {@link Fixture} page from an embedded HTTP server on a free local port,
+ * for benchmarks that drive a real browser.
+ */
+public final class FixtureServer implements AutoCloseable {
+
+	private final HttpServer server;
+
+	public FixtureServer() throws IOException {
+		byte[] page = Fixture.html().getBytes(StandardCharsets.UTF_8);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+			exchange.sendResponseHeaders(200, page.length);
+			try (OutputStream body = exchange.getResponseBody()) {
+				body.write(page);
+			}
+		});
+		server.start();
+	}
+
+	public String url() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+	}
+}
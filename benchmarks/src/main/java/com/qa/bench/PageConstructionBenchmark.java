@@ -0,0 +1,90 @@
+package com.qa.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.FindBy;
+import org.openqa.selenium.support.PageFactory;
+
+import com.qa.base.BasePage;
+import com.qa.base.PageElements;
+
+/**
+ * Cost of constructing a page object: Selenium's {@link PageFactory} against the cached
+ * {@link PageElements} metadata, and a full {@link BasePage} subclass.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageConstructionBenchmark {
+
+	@Benchmark
+	public Object pageFactory(DriverState state) {
+		CatalogFields page = new CatalogFields();
+		PageFactory.initElements(state.webDriver, page);
+		return page;
+	}
+
+	@Benchmark
+	public Object pageElements(DriverState state) {
+		CatalogFields page = new CatalogFields();
+		PageElements.initElements(state.webDriver, page);
+		return page;
+	}
+
+	@Benchmark
+	public Object basePageSubclass(DriverState state) {
+		return new CatalogPage(state.webDriver);
+	}
+
+	public static class CatalogFields {
+
+		@FindBy(css = ".card")
+		List<WebElement> cards;
+
+		@FindBy(css = "#country")
+		WebElement country;
+
+		@FindBy(css = ".choice")
+		List<WebElement> choices;
+
+		@FindBy(css = "#submit")
+		WebElement submit;
+
+		@FindBy(xpath = "(//div[contains(@class, 'card')])[2]")
+		WebElement secondCard;
+	}
+
+	public static class CatalogPage extends BasePage {
+
+		@FindBy(css = ".card")
+		List<WebElement> cards;
+
+		@FindBy(css = "#country")
+		WebElement country;
+
+		@FindBy(css = ".choice")
+		List<WebElement> choices;
+
+		@FindBy(css = "#submit")
+		WebElement submit;
+
+		@FindBy(xpath = "(//div[contains(@class, 'card')])[2]")
+		WebElement secondCard;
+
+		public CatalogPage(WebDriver driver) {
+			super(driver);
+		}
+	}
+}
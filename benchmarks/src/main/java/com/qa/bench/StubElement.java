@@ -0,0 +1,162 @@
+package com.qa.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.WebElement;
+
+/**
+ * In-memory element of the fixture page. Every call counts as one WebDriver command
+ * on the owning {@link StubWebDriver}, just like a remote element would.
+ */
+public class StubElement implements WebElement {
+
+	final String tag;
+	final String text;
+	final Map<String, String> attributes = new LinkedHashMap<>();
+	final Map<By, List<StubElement>> children = new HashMap<>();
+	boolean displayed = true;
+	private StubWebDriver driver;
+
+	public StubElement(String tag, String text) {
+		this.tag = tag;
+		this.text = text;
+	}
+
+	public StubElement attribute(String name, String value) {
+		attributes.put(name, value);
+		return this;
+	}
+
+	public StubElement child(By locator, StubElement child) {
+		children.computeIfAbsent(locator, k -> new ArrayList<>()).add(child);
+		return this;
+	}
+
+	void attach(StubWebDriver owner) {
+		this.driver = owner;
+		for (List<StubElement> list : children.values()) {
+			for (StubElement child : list) {
+				child.attach(owner);
+			}
+		}
+	}
+
+	List<StubElement> childrenMatching(By locator) {
+		List<StubElement> list = children.get(locator);
+		return list == null ? Collections.<StubElement>emptyList() : list;
+	}
+
+	@Override
+	public void click() {
+		driver.command();
+	}
+
+	@Override
+	public void submit() {
+		driver.command();
+	}
+
+	@Override
+	public void sendKeys(CharSequence... keysToSend) {
+		driver.command();
+	}
+
+	@Override
+	public void clear() {
+		driver.command();
+	}
+
+	@Override
+	public String getTagName() {
+		driver.command();
+		return tag;
+	}
+
+	@Override
+	@Deprecated
+	public String getAttribute(String name) {
+		driver.command();
+		return attributes.get(name);
+	}
+
+	@Override
+	public boolean isSelected() {
+		driver.command();
+		return false;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		driver.command();
+		return true;
+	}
+
+	@Override
+	public String getText() {
+		driver.command();
+		return text;
+	}
+
+	@Override
+	public List<WebElement> findElements(By by) {
+		driver.command();
+		return new ArrayList<WebElement>(childrenMatching(by));
+	}
+
+	@Override
+	public WebElement findElement(By by) {
+		driver.command();
+		List<StubElement> list = childrenMatching(by);
+		if (list.isEmpty()) {
+			throw new NoSuchElementException("No child matching " + by);
+		}
+		return list.get(0);
+	}
+
+	@Override
+	public boolean isDisplayed() {
+		driver.command();
+		return displayed;
+	}
+
+	@Override
+	public Point getLocation() {
+		driver.command();
+		return new Point(0, 0);
+	}
+
+	@Override
+	public Dimension getSize() {
+		driver.command();
+		return new Dimension(100, 20);
+	}
+
+	@Override
+	public Rectangle getRect() {
+		driver.command();
+		return new Rectangle(0, 0, 20, 100);
+	}
+
+	@Override
+	public String getCssValue(String propertyName) {
+		driver.command();
+		return "";
+	}
+
+	@Override
+	public <X> X getScreenshotAs(OutputType<X> target) {
+		driver.command();
+		return target.convertFromPngBytes(new byte[0]);
+	}
+}
@@ -0,0 +1,231 @@
+package com.qa.bench;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * A {@link WebDriver} backed by an in-memory fixture instead of a browser.
+ * <p>
+ * Elements are registered per locator. Every driver and element call is counted as
+ * one command and can be given an artificial latency to model the HTTP round-trip of
+ * a real session. The batch-read script used by {@code BatchQuery} is answered from
+ * the fixture; every other script returns {@code null}.
+ * </p>
+ */
+public class StubWebDriver implements WebDriver, JavascriptExecutor, TakesScreenshot {
+
+	private final Map<By, List<StubElement>> elements = new HashMap<>();
+	private final long latencyNanos;
+	private long commands;
+
+	public StubWebDriver(long latencyMicros) {
+		this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+	}
+
+	public StubWebDriver register(By locator, StubElement element) {
+		element.attach(this);
+		elements.computeIfAbsent(locator, k -> new ArrayList<>()).add(element);
+		return this;
+	}
+
+	public long commandCount() {
+		return commands;
+	}
+
+	void command() {
+		commands++;
+		if (latencyNanos > 0) {
+			LockSupport.parkNanos(latencyNanos);
+		}
+	}
+
+	private List<StubElement> matching(By locator) {
+		List<StubElement> list = elements.get(locator);
+		return list == null ? Collections.<StubElement>emptyList() : list;
+	}
+
+	@Override
+	public List<WebElement> findElements(By by) {
+		command();
+		return new ArrayList<WebElement>(matching(by));
+	}
+
+	@Override
+	public WebElement findElement(By by) {
+		command();
+		List<StubElement> list = matching(by);
+		if (list.isEmpty()) {
+			throw new NoSuchElementException("Fixture has no element for " + by);
+		}
+		return list.get(0);
+	}
+
+	@Override
+	public Object executeScript(String script, Object... args) {
+		command();
+		if (script.startsWith("var using = arguments[0]")) {
+			return batchRead(args);
+		}
+		return null;
+	}
+
+	@Override
+	public Object executeAsyncScript(String script, Object... args) {
+		command();
+		return null;
+	}
+
+	// mirrors the row layout of BatchQuery's script: [element, text, displayed, attributes]
+	@SuppressWarnings("unchecked")
+	private List<List<Object>> batchRead(Object[] args) {
+		String using = (String) args[0];
+		String value = (String) args[1];
+		String descendants = (String) args[3];
+		String textOf = (String) args[4];
+		List<String> names = (List<String>) args[5];
+
+		List<StubElement> found;
+		if (args[2] != null) {
+			found = new ArrayList<>();
+			for (Object element : (List<Object>) args[2]) {
+				found.add((StubElement) element);
+			}
+		} else if ("xpath".equals(using)) {
+			found = matching(By.xpath(value));
+		} else if ("tag name".equals(using)) {
+			found = matching(By.tagName(value));
+		} else {
+			found = matching(By.cssSelector(value));
+		}
+		List<StubElement> selected = found;
+		if (descendants != null) {
+			selected = new ArrayList<>();
+			for (StubElement element : found) {
+				selected.addAll(element.childrenMatching(By.cssSelector(descendants)));
+			}
+		}
+		List<List<Object>> rows = new ArrayList<>(selected.size());
+		for (StubElement element : selected) {
+			StubElement textSource = element;
+			if (textOf != null) {
+				List<StubElement> sub = element.childrenMatching(By.cssSelector(textOf));
+				textSource = sub.isEmpty() ? null : sub.get(0);
+			}
+			Map<String, Object> attrs = new LinkedHashMap<>();
+			for (String name : names) {
+				attrs.put(name, element.attributes.get(name));
+			}
+			List<Object> row = new ArrayList<>(4);
+			row.add(element);
+			row.add(textSource == null ? "" : textSource.text);
+			row.add(element.displayed);
+			row.add(attrs);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	@Override
+	public <X> X getScreenshotAs(OutputType<X> target) {
+		command();
+		return target.convertFromPngBytes(new byte[0]);
+	}
+
+	@Override
+	public void get(String url) {
+		command();
+	}
+
+	@Override
+	public String getCurrentUrl() {
+		command();
+		return "about:fixture";
+	}
+
+	@Override
+	public String getTitle() {
+		command();
+		return "Fixture";
+	}
+
+	@Override
+	public String getPageSource() {
+		command();
+		return "";
+	}
+
+	@Override
+	public void close() {
+		command();
+	}
+
+	@Override
+	public void quit() {
+		command();
+	}
+
+	@Override
+	public Set<String> getWindowHandles() {
+		command();
+		return Collections.singleton("fixture");
+	}
+
+	@Override
+	public String getWindowHandle() {
+		command();
+		return "fixture";
+	}
+
+	@Override
+	public TargetLocator switchTo() {
+		return noOp(TargetLocator.class);
+	}
+
+	@Override
+	public Navigation navigate() {
+		return noOp(Navigation.class);
+	}
+
+	@Override
+	public Options manage() {
+		return noOp(Options.class);
+	}
+
+	// manage()/navigate()/switchTo() chains: count the call, return nested no-op views
+	@SuppressWarnings("unchecked")
+	private <T> T noOp(Class<T> type) {
+		return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			command();
+			Class<?> returnType = method.getReturnType();
+			if (returnType == WebDriver.class) {
+				return this;
+			}
+			if (returnType == Set.class) {
+				return Collections.emptySet();
+			}
+			if (returnType.isInterface() && returnType.getName().startsWith("org.openqa.selenium")) {
+				return noOp(returnType);
+			}
+			if (returnType == boolean.class) {
+				return false;
+			}
+			return null;
+		});
+	}
+}
@@ -2,32 +2,29 @@ package Pages;
 
 import org.openqa.selenium.WebDriver;
 
-import java.util.List;
-
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 import com.qa.base.*;
 
 public class CartPage extends BasePage {
 
-	WebDriver driver;
-	
+	public CartPage() {
+		super();
+	}
+
 	public CartPage(WebDriver driver) {
 		super(driver);
-		this.driver=driver;
-		PageFactory.initElements(driver, this);
 	}
 	
-	@FindBy(css=".cartSection h3")
-	private List<WebElement> cartProducts;
+	By cartSections = By.cssSelector(".cartSection");
 	
 	@FindBy(css=".totalRow button")
 	WebElement checkOut;
 	
 	public Boolean verifyProductDisplay(String productName) {
-	boolean match = cartProducts.stream().anyMatch(cartProduct->cartProduct.getText().equalsIgnoreCase(productName));
+	// one snapshot of the cart serves every product checked until the page changes
+	boolean match = snapshot(cartSections).texts("h3").stream().anyMatch(cartProduct->cartProduct.equalsIgnoreCase(productName));
 	return match;
 
 	}
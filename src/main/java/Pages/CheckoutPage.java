@@ -7,20 +7,18 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 
 import com.qa.base.BasePage;
 
 public class CheckoutPage extends BasePage {
 
-	WebDriver driver;
-	
+	public CheckoutPage() {
+		super();
+	}
+
 	public CheckoutPage(WebDriver driver) {
 		super(driver);
-		this.driver=driver;
-		PageFactory.initElements(driver, this);
-	
 	}
 	
 	@FindBy(css="[placeholder='Select Country']")
@@ -44,11 +42,11 @@ public class CheckoutPage extends BasePage {
 
 	}
 	
-	public ConfirmationPage submitOrder() throws InterruptedException
+	public ConfirmationPage submitOrder()
 	{
 		
 		((org.openqa.selenium.JavascriptExecutor) driver).executeScript("arguments[0].scrollIntoView(true);", submit);
-		Thread.sleep(1000);
+		awaitIdle();
 		submit.click();
 		
 		//submit.click();
@@ -4,26 +4,24 @@ import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 
 import com.qa.base.BasePage;
 
 public class ConfirmationPage extends BasePage{
 
-    WebDriver driver;
-	
+	public ConfirmationPage() {
+		super();
+	}
+
 	public ConfirmationPage(WebDriver driver) {
 		super(driver);
-		this.driver=driver;
-		PageFactory.initElements(driver, this);
 	}
 	 private By confirmMessageLocator = By.cssSelector(".hero-primary");
 	@FindBy(css=".hero-primary")
 	WebElement confirmMessage;
 	
 	 public String getConfirmationMessage() {
-	        // Wait for element to be present before reading text
-	        WebElement messageElement = waitForElementPresent(confirmMessageLocator, 10);
-	        return messageElement.getText();
+	        // Wait for the message to show; the snapshot that passed the wait already holds its text
+	        return waitForSnapshot(confirmMessageLocator, 10).roots().get(0).text();
 	    }
 }
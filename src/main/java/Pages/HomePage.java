@@ -1,50 +1,44 @@
 package Pages;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.FindBy;
-import org.openqa.selenium.support.PageFactory;
 
 import com.qa.base.*;
 
 public class HomePage extends BasePage {
 
-    WebDriver driver;
+    public HomePage() {
+        super();
+    }
 
     public HomePage(WebDriver driver) {
         super(driver);
-        this.driver = driver;
-        PageFactory.initElements(driver, this);
     }
 
     // ===== Locators =====
-    @FindBy(css = ".mb-3")
-    List<WebElement> locator;  // Product cards
-
-    @FindBy(css = ".ng-animating")
-    WebElement spinner;        // Loader/spinner
-
     By product1 = By.cssSelector(".mb-3");
     By addToCart = By.cssSelector(".card-body button:last-of-type");
     By toastMessage = By.cssSelector("#toast-container");
-    By spinnerLocator = By.cssSelector(".ng-animating");
 
     // ===== Actions =====
 
     // Wait until all products are visible and return them
     public List<WebElement> getProductsList() {
-        visibilityofAllElements(product1, 10);
-        return locator;
+        return waitForSnapshot(product1, 10).roots().stream()
+            .map(SnapshotNode::element)
+            .collect(Collectors.toList());
     }
 
     // Get a product card by its name
     public WebElement getProductByName(String productName) {
-        return locator.stream()
-            .filter(product -> product.findElement(By.cssSelector("b"))
-            .getText().equals(productName))
+        return BatchQuery.of(product1).textOf("b").fetch(driver).stream()
+            .filter(product -> product.text().equals(productName))
+            .map(ElementSnapshot::element)
             .findFirst()
             .orElse(null);
     }
@@ -54,7 +48,7 @@ public class HomePage extends BasePage {
         WebElement p = getProductByName(productName);
         p.findElement(addToCart).click();
         visibilityofAllElements(toastMessage, 10);
-        waitForElementToDisappear(spinner, 10);
+        awaitIdle();
         
        
     }
@@ -3,29 +3,54 @@ package Pages;
 import java.util.Properties;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.support.PageFactory;
 import com.qa.base.BasePage;
+import com.qa.base.SessionBootstrap;
+import com.qa.config.FrameworkConfig;
 
 public class LandingPage extends BasePage {
 
-    WebDriver driver;
     Properties prop;
 
+    // Constructor that uses the current thread's driver
+    public LandingPage(Properties prop) {
+        super();
+        this.prop = prop;
+    }
+
     // Constructor that always takes driver + prop
     public LandingPage(WebDriver driver, Properties prop) {
         super(driver);
-        this.driver = driver;
         this.prop = prop;
-        PageFactory.initElements(driver, this);
     }
 
-    // Always use the URL from properties
+    // Always use the URL from the framework configuration
     public void goTo() {
-        String appUrl = prop.getProperty("url");
-        if (appUrl == null || appUrl.isEmpty()) {
-            throw new RuntimeException("URL is not set in config.properties");
+        driver.get(FrameworkConfig.get().baseUrl());
+    }
+
+    // Opens the home page with a cached session, logging in through the UI only when needed
+    public HomePage loginWithSession(String username, String password) {
+        SessionBootstrap sessions = SessionBootstrap.get();
+        if (sessions.authenticate(driver, username, password, () -> loginIntoApplication(username, password))) {
+            HomePage homePage = resumeSession();
+            if (homePage != null) {
+                return homePage;
+            }
+            // the application rejected the cached session
+            sessions.invalidate(username);
         }
-        driver.get(appUrl);
+        goTo();
+        return loginIntoApplication(username, password);
+    }
+
+    // Opens the dashboard with the session's current cookies; null when the app asks to log in again
+    public HomePage resumeSession() {
+        driver.get(FrameworkConfig.get().homeUrl());
+        awaitIdle();
+        if (driver.getCurrentUrl().contains("/auth/login")) {
+            return null;
+        }
+        return new HomePage(driver);
     }
 
     // Login method
@@ -0,0 +1,37 @@
+package automation;
+
+import com.qa.base.Checkpoint;
+import com.qa.config.FrameworkConfig;
+
+import Pages.CartPage;
+import Pages.CheckoutPage;
+import Pages.HomePage;
+import Pages.LandingPage;
+
+/**
+ * The states of the order flow that tests start from, reached through
+ * {@link com.qa.base.FlowEngine}.
+ * <p>
+ * Only the logged-in state is reusable: the cart lives on the server and is emptied by
+ * every submitted order, so a session is never handed over with items in it.
+ * </p>
+ */
+public final class Checkpoints {
+
+	public static final Checkpoint<HomePage> LOGGED_IN = Checkpoint
+			.<HomePage>start("logged-in", (driver, from, params) -> new LandingPage(driver, FrameworkConfig.get().asProperties())
+					.loginWithSession(params.get("username"), params.get("password")), "username")
+			.reusable(driver -> new LandingPage(driver, FrameworkConfig.get().asProperties()).resumeSession());
+
+	public static final Checkpoint<CartPage> ITEM_IN_CART = LOGGED_IN.then("item-in-cart", (driver, home, params) -> {
+		home.getProductsList();
+		home.addProductToCart(params.get("productname"));
+		return home.goToCartPage();
+	}, "productname");
+
+	public static final Checkpoint<CheckoutPage> AT_CHECKOUT = ITEM_IN_CART.then("at-checkout",
+			(driver, cart, params) -> cart.goToCheckout());
+
+	private Checkpoints() {
+	}
+}
@@ -0,0 +1,34 @@
+package automation;
+
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+import org.testng.annotations.DataProvider;
+
+import com.qa.config.FrameworkConfig;
+import com.qa.utilities.DataRows;
+import com.qa.utilities.Shard;
+
+/**
+ * Data providers for the order tests. Rows are streamed from the file named by
+ * {@code data.orders} and limited to this worker's {@link Shard}; TestNG runs them in
+ * parallel on {@code data-provider-thread-count} threads.
+ */
+public class OrderData {
+
+	@DataProvider(name = "orders", parallel = true)
+	public static Iterator<Object[]> orders() {
+		DataRows.Reader rows = DataRows.open(Paths.get(FrameworkConfig.get().require("data.orders")), Shard.fromConfig());
+		return new Iterator<Object[]>() {
+			@Override
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+
+			@Override
+			public Object[] next() {
+				return new Object[] { rows.next() };
+			}
+		};
+	}
+}
@@ -2,34 +2,140 @@ package com.qa.base;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.io.File;
+import java.nio.file.Paths;
 import java.io.FileReader;
 import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.Alert;
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
-import org.openqa.selenium.OutputType;
-import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
+import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.FluentWait;
 import org.openqa.selenium.support.ui.Select;
-import org.openqa.selenium.support.ui.Wait;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.qa.config.FrameworkConfig;
 
 public class BasePage {
 
-    WebDriver driver;
-    
-    //Constructor to initialize the WebDriver instance
+	private static final Logger LOG = LogManager.getLogger(BasePage.class);
+
+	protected final WebDriver driver;
+	protected final WaitEngine waits;
+	private final ElementCache elementCache = new ElementCache(
+			FrameworkConfig.get().elementCacheTtl());
+
+	//Constructor that uses the WebDriver borrowed by the current thread
+	/**
+	 * Creates a page bound to the WebDriver session of the current thread, as handed out by
+	 * {@link DriverManager#init_driver(java.util.Properties)}.
+	 *
+	 * @throws IllegalStateException if the current thread has not borrowed a driver
+	 */
+	protected BasePage() {
+		this(currentDriver());
+	}
+
+	//Constructor to initialize the WebDriver instance
+	/**
+	 * Creates a page bound to the given driver and initialises its {@code @FindBy} fields.
+	 *
+	 * @param driver the WebDriver session this page operates on
+	 */
 	public BasePage(WebDriver driver) {
 		this.driver = driver;
+		this.waits = WaitEngine.of(driver);
+		PageElements.initElements(driver, this);
+	}
+
+	//Runs a helper inside a step that shares one deadline with the waits it calls
+	/**
+	 * Runs {@code body} inside a {@link Step} named after the calling helper. All waits
+	 * inside it share the engine's default timeout as a single budget.
+	 *
+	 * @param name the helper method name
+	 * @param body the helper's work
+	 * @return what {@code body} returned
+	 */
+	protected <T> T callStep(String name, Supplier<T> body) {
+		return Step.call(getClass(), name, waits.defaultTimeout(), body);
+	}
+
+	/**
+	 * Like {@link #callStep(String, Supplier)} for helpers that return nothing.
+	 *
+	 * @param name the helper method name
+	 * @param body the helper's work
+	 */
+	protected void runStep(String name, Runnable body) {
+		Step.run(getClass(), name, waits.defaultTimeout(), body);
+	}
+
+	private static Duration seconds(long timeout) {
+		return Duration.ofSeconds(timeout);
+	}
+
+	//Waits once for the element and returns the handle used for the interaction
+	/**
+	 * Returns the element for {@code locator}, waiting for its presence within the current
+	 * step's budget. When the element cache is enabled ({@code -Delement.cache.ttl.ms}) a
+	 * recently resolved handle is reused without another round-trip.
+	 *
+	 * @param locator the {@link By} locator used to find the element
+	 * @return the present element
+	 */
+	protected WebElement findReady(By locator) {
+		WebElement element = elementCache.get(locator);
+		if (element == null) {
+			element = waits.until(ExpectedConditions.presenceOfElementLocated(locator), waits.defaultTimeout());
+			elementCache.put(locator, element);
+		}
+		return element;
+	}
+
+	//Runs an action on the element, re-resolving it once if the handle went stale
+	/**
+	 * Applies {@code action} to the element found by {@link #findReady(By)}. If the handle
+	 * has gone stale it is dropped from the cache, resolved again and the action retried once.
+	 *
+	 * @param locator the {@link By} locator used to find the element
+	 * @param action  the interaction to perform
+	 * @return the action's result
+	 */
+	protected <T> T withElement(By locator, Function<WebElement, T> action) {
+		try {
+			return action.apply(findReady(locator));
+		} catch (StaleElementReferenceException e) {
+			elementCache.invalidate(locator);
+			return action.apply(findReady(locator));
+		}
+	}
+
+	protected void interact(By locator, Consumer<WebElement> action) {
+		withElement(locator, element -> {
+			action.accept(element);
+			return null;
+		});
+	}
+
+	private static WebDriver currentDriver() {
+		WebDriver driver = DriverManager.getDriver();
+		if (driver == null) {
+			throw new IllegalStateException("No WebDriver is bound to thread " + Thread.currentThread().getName()
+					+ "; call DriverManager.init_driver first");
+		}
+		return driver;
 	}
 	
 	//Returns a list of WebElements for the given locator
@@ -38,13 +144,78 @@ public class BasePage {
 		List<WebElement> elementsList = driver.findElements(locator);
 		return elementsList;
 	}
+
+	//Returns text, visibility and attributes of all matching elements in one call
+	/**
+	 * Reads the text, visibility and the given attributes of every element matched by
+	 * {@code locator} with a single script call.
+	 *
+	 * @param locator    the {@link By} locator used to find the elements
+	 * @param attributes the attribute names to read for each element
+	 * @return one snapshot per matched element, in document order
+	 */
+	public List<ElementSnapshot> getElementsSnapshot(By locator, String... attributes) {
+		return BatchQuery.of(locator).attributes(attributes).fetch(driver);
+	}
+
+	//Returns the texts of all matching elements in one call
+	/**
+	 * Returns the visible text of every element matched by {@code locator} with a single
+	 * script call instead of one {@code getText()} per element.
+	 *
+	 * @param locator the {@link By} locator used to find the elements
+	 * @return the texts in document order
+	 */
+	public List<String> getElementsText(By locator) {
+		return BatchQuery.of(locator).texts(driver);
+	}
+
+	//Returns a snapshot of the subtree, reused until the page changes
+	/**
+	 * Returns a {@link PageSnapshot} of every element matched by {@code root} and their
+	 * descendants. Repeated read-only checks on an unchanged page reuse the same snapshot
+	 * and cost no WebDriver round-trips.
+	 *
+	 * @param root the {@link By} locator of the subtree roots
+	 * @return an up-to-date snapshot, without roots if nothing matched
+	 */
+	public PageSnapshot snapshot(By root) {
+		return PageSnapshot.current(driver, root);
+	}
+
+	//Waits until the subtree is present and visible and returns its snapshot
+	/**
+	 * Waits until {@code root} matches at least one element and every match is displayed,
+	 * reading the page with one script call per poll, and returns the snapshot that passed.
+	 *
+	 * @param root             the {@link By} locator of the subtree roots
+	 * @param timeoutInSeconds the maximum time to wait in seconds
+	 * @return the snapshot
+	 * @throws org.openqa.selenium.TimeoutException if the roots do not show up within the timeout
+	 */
+	public PageSnapshot waitForSnapshot(By root, long timeoutInSeconds) {
+		return waits.until(new ExpectedCondition<PageSnapshot>() {
+			@Override
+			public PageSnapshot apply(WebDriver d) {
+				PageSnapshot snapshot = PageSnapshot.take(d, root);
+				boolean visible = !snapshot.roots().isEmpty()
+						&& snapshot.roots().stream().allMatch(SnapshotNode::isDisplayed);
+				return visible ? snapshot : null;
+			}
+
+			@Override
+			public String toString() {
+				return "snapshot of visible elements located by " + root;
+			}
+		}, seconds(timeoutInSeconds));
+	}
 	
 	
 	/**
 	 * Retrieves a {@link WebElement} using the specified {@link By} locator.
 	 * <p>
 	 * This method attempts to find the element on the current page using the provided locator.
-	 * If the element is found, it is returned; otherwise, {@code null} is returned and an error message is printed.
+	 * If the element is found, it is returned; otherwise, {@code null} is returned and a warning is logged.
 	 * </p>
 	 *
 	 * @param locator the {@link By} locator used to find the element
@@ -53,12 +224,12 @@ public class BasePage {
 	public WebElement getElement(By locator) {
 		WebElement element = null;
 		try {
-			System.out.println("locator is : " + locator);
+			LOG.debug("Looking up {}", locator);
 			element = driver.findElement(locator);
-			System.out.println("WebElement is created successfully : " + locator);
+			LOG.debug("Found {}", locator);
 
 		} catch (Exception e) {
-			System.out.println("some exception got occurred with this locator: " + locator);
+			LOG.warn("No element found for {}", locator);
 		}
 		return element;
 	}
@@ -72,8 +243,7 @@ public class BasePage {
 	 * @param value the text value to send to the web element
 	 */
 	public void doSendKeys(By locator, String value) {
-		waitForElementPresent(locator, 10);
-		getElement(locator).sendKeys(value);
+		runStep("doSendKeys", () -> interact(locator, element -> element.sendKeys(value)));
 	}
 	
 	
@@ -84,8 +254,7 @@ public class BasePage {
 	 * @param locator the By locator used to find the web element
 	 */
 	public void doClick(By locator) {
-		waitForElementPresent(locator, 10);
-		getElement(locator).click();
+		runStep("doClick", () -> interact(locator, WebElement::click));
 	}
 
 	//Returns the text of an element after waiting for its presence
@@ -97,22 +266,21 @@ public class BasePage {
 	 * @return the visible text of the located web element
 	 */
 	public String doGetText(By locator) {
-		waitForElementPresent(locator, 10);
-		return getElement(locator).getText();
+		return callStep("doGetText", () -> withElement(locator, WebElement::getText));
 	}
 	
 	//Checks if the element is displayed after waiting for its presence
 	
 	/**
 	 * Checks if the web element identified by the given locator is displayed on the page.
-	 * Waits for the element to be present for up to 10 seconds before checking its visibility.
+	 * Waits for the element to be present, within the {@code wait.timeout} budget of the
+	 * {@link WaitEngine}, before checking its visibility.
 	 *
 	 * @param locator the {@link By} locator used to find the element
 	 * @return {@code true} if the element is displayed; {@code false} otherwise
 	 */
 	public boolean doIsDisplayed(By locator) {
-		waitForElementPresent(locator, 10);
-		return getElement(locator).isDisplayed();
+		return callStep("doIsDisplayed", () -> withElement(locator, WebElement::isDisplayed));
 	}
 
 	// **********************************Drop Down Utils
@@ -175,15 +343,7 @@ public class BasePage {
 	 * @return An ArrayList containing the text of each option in the dropdown.
 	 */
 	public ArrayList<String> doGetDropDownOptions(By locator) {
-		ArrayList<String> ar = new ArrayList<String>();
-		Select select = new Select(getElement(locator));
-		List<WebElement> OptionsList = select.getOptions();
-
-		for (int i = 0; i < OptionsList.size(); i++) {
-			String text = OptionsList.get(i).getText();
-			ar.add(text);
-		}
-		return ar;
+		return new ArrayList<String>(BatchQuery.of(locator).descendants("option").texts(driver));
 	}
 
 	//Selects a dropdown value by visible text using a loop
@@ -196,13 +356,9 @@ public class BasePage {
 	 * @param value the visible text of the option to be selected
 	 */
 	public void doSelectDropDownValue(By locator, String value) {
-		Select selectday = new Select(getElement(locator));
-		List<WebElement> OptionsList = selectday.getOptions();
-
-		for (int i = 0; i < OptionsList.size(); i++) {
-			String text = OptionsList.get(i).getText();
-			if (text.equals(value)) {
-				OptionsList.get(i).click();
+		for (ElementSnapshot option : BatchQuery.of(locator).descendants("option").fetch(driver)) {
+			if (option.text().equals(value)) {
+				option.element().click();
 				break;
 			}
 		}
@@ -219,12 +375,9 @@ public class BasePage {
 	 * @param value The visible text of the option to select.
 	 */
 	public void doSelectDropDownValueWithoutSelect(By locator, String value) {
-		List<WebElement> optionsList = getElements(locator);
-
-		for (int i = 0; i < optionsList.size(); i++) {
-			String text = optionsList.get(i).getText();
-			if (text.equals(value)) {
-				optionsList.get(i).click();
+		for (ElementSnapshot option : BatchQuery.of(locator).fetch(driver)) {
+			if (option.text().equals(value)) {
+				option.element().click();
 				break;
 			}
 		}
@@ -245,17 +398,15 @@ public class BasePage {
 	public void selectChoiceValues(By locator, String... value) {
 		// List<WebElement> choiceList =
 		// driver.findElements(By.cssSelector("span.comboTreeItemTitle"));
-		List<WebElement> choiceList = getElements(locator);
-
 		if (!value[0].equalsIgnoreCase("ALL")) {
 
-			for (int i = 0; i < choiceList.size(); i++) {
-				String text = choiceList.get(i).getText();
-				System.out.println(text);
+			for (ElementSnapshot choice : BatchQuery.of(locator).fetch(driver)) {
+				String text = choice.text();
+				LOG.debug("Choice option '{}'", text);
 
 				for (int k = 0; k < value.length; k++) {
 					if (text.equals(value[k])) {
-						choiceList.get(i).click();
+						choice.element().click();
 						break;
 					}
 				}
@@ -264,6 +415,7 @@ public class BasePage {
 		}
 		// select all the values:
 		else {
+			List<WebElement> choiceList = getElements(locator);
 			try {
 				for (int all = 0; all < choiceList.size(); all++) {
 					choiceList.get(all).click();
@@ -311,9 +463,8 @@ public class BasePage {
 	 * @param locator the By locator of the web element to be clicked
 	 */
 	public void doActionsClick(By locator) {
-		waitForElementPresent(locator, 10);
 		Actions action = new Actions(driver);
-		action.click(getElement(locator)).build().perform();
+		runStep("doActionsClick", () -> interact(locator, element -> action.click(element).build().perform()));
 	}
 
 	// ***************************** Wait Utils
@@ -327,8 +478,7 @@ public class BasePage {
 	 * @return a list of {@link WebElement} objects that are visible
 	 */
 	public List<WebElement> visibilityofAllElements(By locator, long timeoutInSeconds) {
-		WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeoutInSeconds));
-		return wait.until(ExpectedConditions.visibilityOfAllElementsLocatedBy(locator));
+		return waits.until(ExpectedConditions.visibilityOfAllElementsLocatedBy(locator), seconds(timeoutInSeconds));
 	}
 
 	//Waits for the presence of an element by a locator
@@ -341,9 +491,7 @@ public class BasePage {
 	 * @throws org.openqa.selenium.TimeoutException if the element is not found within the timeout
 	 */
 	public WebElement waitForElementPresent(By locator, int timeout) {
-		WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-		WebElement element = wait.until(ExpectedConditions.presenceOfElementLocated(locator));
-		return element;
+		return waits.until(ExpectedConditions.presenceOfElementLocated(locator), seconds(timeout));
 	}
 
 	//Waits for an element to be visible
@@ -356,10 +504,7 @@ public class BasePage {
 	 * @throws org.openqa.selenium.TimeoutException if the element does not become visible within the timeout
 	 */
 	public WebElement waitForElementToBeVisible(By locator, int timeout) {
-		WebElement element = getElement(locator);
-		WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-		wait.until(ExpectedConditions.visibilityOf(element));
-		return element;
+		return waits.until(ExpectedConditions.visibilityOfElementLocated(locator), seconds(timeout));
 	}
 
 	//Waits for an element to be clickable
@@ -371,14 +516,11 @@ public class BasePage {
 	 * @return the {@link WebElement} once it is clickable
 	 */
 	public WebElement waitForElementToBeClickable(By locator, long timeout) {
-		WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-		return wait.until(ExpectedConditions.elementToBeClickable(locator));
-		
+		return waits.until(ExpectedConditions.elementToBeClickable(locator), seconds(timeout));
 	}
 	
 	public WebElement waitForElementToBeClickable(WebElement element, long timeout ) {
-	    WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-	    return wait.until(ExpectedConditions.elementToBeClickable(element));
+	    return waits.until(ExpectedConditions.elementToBeClickable(element), seconds(timeout));
 	}
 
 	//Waits for a specific URL to be present in the browser
@@ -390,8 +532,7 @@ public class BasePage {
 	 * @return true if the URL contains the specified substring within the timeout, false otherwise
 	 */
 	public boolean waitForUrl(String url, int timeout) {
-        WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-        return wait.until(ExpectedConditions.urlContains(url));
+        return waits.until(ExpectedConditions.urlContains(url), seconds(timeout));
     }
 
 	//Waits for a browser alert to be present
@@ -403,8 +544,7 @@ public class BasePage {
 	 * @throws TimeoutException if the alert does not appear within the specified timeout
 	 */
     public Alert waitForAlertToBePresent(int timeout) {
-        WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-        return wait.until(ExpectedConditions.alertIsPresent());
+        return waits.until(ExpectedConditions.alertIsPresent(), seconds(timeout));
     }
 
 	// Clicks an element when it becomes clickable within the timeout
@@ -415,8 +555,7 @@ public class BasePage {
 	 * @param timeout the maximum time to wait in seconds for the element to become clickable
 	 */
     public void clickWhenReady(By locator, int timeout) {
-        WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-        WebElement element = wait.until(ExpectedConditions.elementToBeClickable(locator));
+        WebElement element = waits.until(ExpectedConditions.elementToBeClickable(locator), seconds(timeout));
         element.click();
     }
 
@@ -429,11 +568,22 @@ public class BasePage {
 	 * @return The current page title after the condition is met.
 	 */
     public String waitForTitleToBePresent(String title, int timeout) {
-        WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-        wait.until(ExpectedConditions.titleContains(title));
+        waits.until(ExpectedConditions.titleContains(title), seconds(timeout));
         return driver.getTitle();
     }
     
+    //Waits until the page has finished loading, network calls, animations and scrolling
+	/**
+	 * Waits until the page is idle: {@code document.readyState} is complete, there are no
+	 * pending XHR/fetch calls, the Angular zone is stable and no animation or scroll is running.
+	 * Uses one in-browser probe instead of polling, capped by the current step's budget.
+	 *
+	 * @throws org.openqa.selenium.TimeoutException if the page does not settle in time
+	 */
+    public void awaitIdle() {
+    	Readiness.awaitIdle(driver, waits.defaultTimeout());
+    }
+
     //new utils
 
     // Scrolls the page to bring the specified element into view.
@@ -466,20 +616,17 @@ public class BasePage {
     	actions.doubleClick(getElement(locator)).perform();
     }
 
-    // Waits for an element using FluentWait with custom polling. */
+    // Waits for an element with a fixed, caller-chosen polling interval. */
     public WebElement fluentWait(By locator, int timeoutSeconds, int pollingSeconds) {
-    	Wait<WebDriver> wait = new FluentWait<>(driver)
-    			.withTimeout(Duration.ofSeconds(timeoutSeconds))
-    			.pollingEvery(Duration.ofSeconds(pollingSeconds))
-    			.ignoring(NoSuchElementException.class);
-    	return wait.until(driver -> driver.findElement(locator));
+    	return waits.until(driver -> driver.findElement(locator), seconds(timeoutSeconds), seconds(pollingSeconds));
     }
 
     // Returns true if the element is displayed within the timeout, false otherwise. 
 	
     public boolean isElementDisplayed(By locator, int timeout) {
     	try {
-    		return waitForElementPresent(locator, timeout).isDisplayed();
+    		return Step.call(getClass(), "isElementDisplayed", seconds(timeout),
+    				() -> waitForElementPresent(locator, timeout).isDisplayed());
     	} catch (Exception e) {
     		return false;
     	}
@@ -488,27 +635,27 @@ public class BasePage {
     // Captures a screenshot of the current browser window and saves it to the given path. 
 	/**
 	 * Captures a screenshot of the current browser window and saves it to the specified file path.
+	 * The file is written in the background by {@link ScreenshotService}.
 	 *
 	 * @param filePath the destination file path where the screenshot will be saved
 	 */
     public void takeScreenshot(String filePath) {
-    	TakesScreenshot ts = (TakesScreenshot) driver;
-    	File src = ts.getScreenshotAs(OutputType.FILE);
-    	File dest = new File(filePath);
-    	src.renameTo(dest);
+    	ScreenshotService.get().capture(driver, Paths.get(filePath));
     }
     
     // Reads a JSON file and returns it as a JsonObject. 
 	/**
 	 * Reads a JSON file from the specified file path and parses its contents into a {@link JsonObject}.
+	 * Large datasets should be streamed with {@link com.qa.utilities.DataRows} instead.
 	 *
 	 * @param filePath the path to the JSON file to be read
 	 * @return the parsed {@link JsonObject} representing the contents of the file
 	 * @throws Exception if an error occurs while reading the file or parsing the JSON
 	 */
     public JsonObject readJson(String filePath) throws Exception {
-    	FileReader reader = new FileReader(filePath);
-    	return JsonParser.parseReader(reader).getAsJsonObject();
+    	try (FileReader reader = new FileReader(filePath)) {
+    		return JsonParser.parseReader(reader).getAsJsonObject();
+    	}
     }
 
     //Clears the input field and sends keys
@@ -550,8 +697,7 @@ public class BasePage {
 		 * @return {@code true} if the element becomes invisible within the timeout, {@code false} otherwise
 		 */
 	 	public boolean waitForElementToDisappear(WebElement spinner, int timeout) {
-		WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-		return wait.until(ExpectedConditions.invisibilityOf(spinner));
+		return waits.until(ExpectedConditions.invisibilityOf(spinner), seconds(timeout));
 	}
 	 	
 	 
@@ -605,8 +751,7 @@ public class BasePage {
 		 * @param timeout the maximum time to wait in seconds for the alert to appear
 		 */
 	 	public void acceptAlert(int timeout) {
-		Alert alert = new WebDriverWait(driver, Duration.ofSeconds(timeout))
-				.until(ExpectedConditions.alertIsPresent());
+		Alert alert = waitForAlertToBePresent(timeout);
 		alert.accept();
 	}
 
@@ -617,8 +762,7 @@ public class BasePage {
 		 * @param timeout the maximum time to wait in seconds for the alert to appear
 		 */
 	 	public void dismissAlert(int timeout) {
-		Alert alert = new WebDriverWait(driver, Duration.ofSeconds(timeout))
-				.until(ExpectedConditions.alertIsPresent());
+		Alert alert = waitForAlertToBePresent(timeout);
 		alert.dismiss();
 	}
 
@@ -630,8 +774,7 @@ public class BasePage {
 		 * @return the text displayed in the alert
 		 */
 		public String getAlertText(int timeout) {
-		Alert alert = new WebDriverWait(driver, Duration.ofSeconds(timeout))
-				.until(ExpectedConditions.alertIsPresent());
+		Alert alert = waitForAlertToBePresent(timeout);
 		return alert.getText();
 	}
 
@@ -686,21 +829,18 @@ public class BasePage {
 		 * @return true if the title matches within the timeout, false otherwise
 		 */
 	 	public boolean waitForExactTitle(String expectedTitle, int timeout) {
-		WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(timeout));
-		return wait.until(ExpectedConditions.titleIs(expectedTitle));
+		return waits.until(ExpectedConditions.titleIs(expectedTitle), seconds(timeout));
 	}
 
 	// Captures a screenshot and saves to the specified file path
 		/**
 		 * Captures a screenshot of the current browser window and saves it to the specified file path.
+		 * Same as {@link #takeScreenshot(String)}.
 		 *
 		 * @param filePath the destination file path where the screenshot will be saved
 		 */
 		public void captureScreenshot(String filePath) {
-		TakesScreenshot ts = (TakesScreenshot) driver;
-		File src = ts.getScreenshotAs(OutputType.FILE);
-		File dest = new File(filePath);
-		src.renameTo(dest);
+		takeScreenshot(filePath);
 	}
 
 }
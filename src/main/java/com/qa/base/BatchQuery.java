@@ -0,0 +1,188 @@
+package com.qa.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Reads text, visibility and attributes of every element matched by a locator in a
+ * single {@code executeScript} call.
+ * <p>
+ * Looping over {@code findElements(...)} and calling {@code getText()} costs one
+ * WebDriver round-trip per element; a batch query costs one in total. CSS, XPath and
+ * tag-name locators (which includes {@code By.id}, {@code By.name} and
+ * {@code By.className}) are resolved inside the page. Other locators are resolved
+ * with one {@code findElements} call and the elements handed to the script.
+ * </p>
+ *
+ * <pre>
+ * List&lt;ElementSnapshot&gt; cards = BatchQuery.of(By.cssSelector(".card")).textOf("b").fetch(driver);
+ * </pre>
+ */
+public final class BatchQuery {
+
+	static final String SCRIPT = String.join("\n",
+			"var using = arguments[0], value = arguments[1], given = arguments[2];",
+			"var descendants = arguments[3], textOf = arguments[4], names = arguments[5];",
+			"var found;",
+			"if (given) found = given;",
+			"else if (using === 'css selector') found = document.querySelectorAll(value);",
+			"else if (using === 'tag name') found = document.getElementsByTagName(value);",
+			"else {",
+			"  var r = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);",
+			"  found = [];",
+			"  for (var i = 0; i < r.snapshotLength; i++) found.push(r.snapshotItem(i));",
+			"}",
+			"var els = [];",
+			"for (var i = 0; i < found.length; i++) {",
+			"  if (!descendants) { els.push(found[i]); continue; }",
+			"  var sub = found[i].querySelectorAll(descendants);",
+			"  for (var j = 0; j < sub.length; j++) els.push(sub[j]);",
+			"}",
+			"var shown = function (el) {",
+			"  if (el.tagName === 'OPTION') el = el.closest('select') || el;",
+			"  if (!el.getClientRects().length) return false;",
+			"  var s = window.getComputedStyle(el);",
+			"  return s.visibility !== 'hidden' && s.display !== 'none' && parseFloat(s.opacity) !== 0;",
+			"};",
+			"var textFor = function (el) {",
+			"  if (!el || !shown(el)) return '';",
+			"  var t = el.tagName === 'OPTION' ? el.text : (el.innerText !== undefined ? el.innerText : el.textContent);",
+			"  return (t || '').trim();",
+			"};",
+			"var out = [];",
+			"for (var k = 0; k < els.length; k++) {",
+			"  var el = els[k], attrs = {};",
+			"  for (var n = 0; n < names.length; n++) attrs[names[n]] = el.getAttribute(names[n]);",
+			"  out.push([el, textFor(textOf ? el.querySelector(textOf) : el), shown(el), attrs]);",
+			"}",
+			"return out;");
+
+	private final By locator;
+	private String descendants;
+	private String textOf;
+	private List<String> attributes = Collections.emptyList();
+
+	private BatchQuery(By locator) {
+		this.locator = locator;
+	}
+
+	/**
+	 * Starts a query over all elements matched by {@code locator}.
+	 *
+	 * @param locator the {@link By} locator of the elements to read
+	 * @return a new query
+	 */
+	public static BatchQuery of(By locator) {
+		return new BatchQuery(locator);
+	}
+
+	/**
+	 * Reads the descendants of each match that fit the CSS selector instead of the matches
+	 * themselves, e.g. the {@code option}s of a {@code select}.
+	 *
+	 * @param cssSelector the descendant selector
+	 * @return this query
+	 */
+	public BatchQuery descendants(String cssSelector) {
+		this.descendants = cssSelector;
+		return this;
+	}
+
+	/**
+	 * Takes each snapshot's text from the first descendant matching the CSS selector
+	 * rather than from the element itself.
+	 *
+	 * @param cssSelector the descendant selector, e.g. {@code "b"} for a card title
+	 * @return this query
+	 */
+	public BatchQuery textOf(String cssSelector) {
+		this.textOf = cssSelector;
+		return this;
+	}
+
+	/**
+	 * Also reads the given attributes of each element.
+	 *
+	 * @param names the attribute names
+	 * @return this query
+	 */
+	public BatchQuery attributes(String... names) {
+		this.attributes = Arrays.asList(names);
+		return this;
+	}
+
+	/**
+	 * Runs the query against the current page.
+	 *
+	 * @param driver the session to query
+	 * @return one snapshot per element, in document order; empty if nothing matched
+	 */
+	@SuppressWarnings("unchecked")
+	public List<ElementSnapshot> fetch(WebDriver driver) {
+		String using = null;
+		Object value = null;
+		List<WebElement> given = null;
+		if (locator instanceof By.Remotable) {
+			By.Remotable.Parameters parameters = ((By.Remotable) locator).getRemoteParameters();
+			using = parameters.using();
+			value = parameters.value();
+		}
+		if (!"css selector".equals(using) && !"xpath".equals(using) && !"tag name".equals(using)) {
+			given = driver.findElements(locator);
+			if (given.isEmpty()) {
+				return Collections.emptyList();
+			}
+		}
+		long start = System.nanoTime();
+		Object result = ((JavascriptExecutor) driver).executeScript(SCRIPT, using, value, given, descendants,
+				textOf, attributes);
+		long nanos = System.nanoTime() - start;
+		if (!(result instanceof List)) {
+			return Collections.emptyList();
+		}
+		List<List<Object>> rows = (List<List<Object>>) result;
+		List<ElementSnapshot> snapshots = new ArrayList<>(rows.size());
+		for (List<Object> row : rows) {
+			Map<String, String> attrs = new LinkedHashMap<>();
+			Map<String, Object> raw = (Map<String, Object>) row.get(3);
+			for (String name : attributes) {
+				Object attr = raw.get(name);
+				attrs.put(name, attr == null ? null : String.valueOf(attr));
+			}
+			snapshots.add(new ElementSnapshot(snapshots.size(), (WebElement) row.get(0), String.valueOf(row.get(1)),
+					Boolean.TRUE.equals(row.get(2)), attrs));
+		}
+		if (given == null) {
+			List<WebElement> found = new ArrayList<>(snapshots.size());
+			for (ElementSnapshot snapshot : snapshots) {
+				found.add(snapshot.element());
+			}
+			LocatorRegistry.recordScript(driver, locator, found, nanos);
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Convenience for the common case of reading only the texts.
+	 *
+	 * @param driver the session to query
+	 * @return the texts of all matches, in document order
+	 */
+	public List<String> texts(WebDriver driver) {
+		List<ElementSnapshot> snapshots = fetch(driver);
+		List<String> texts = new ArrayList<>(snapshots.size());
+		for (ElementSnapshot snapshot : snapshots) {
+			texts.add(snapshot.text());
+		}
+		return texts;
+	}
+}
@@ -0,0 +1,146 @@
+package com.qa.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * A reusable state of a page-object flow, such as "logged in" or "item in cart", reached
+ * from its parent checkpoint by one action.
+ * <p>
+ * Checkpoints form chains: {@link #start(String, Action, String...)} declares the first
+ * state and {@link #then(String, Action, String...)} one that builds on it. Each action
+ * receives the page object its parent returned and returns the page object of the new
+ * state. A checkpoint's identity is its name plus the values of its key parameters and
+ * those of its ancestors, so "item in cart" for two products are different states.
+ * A checkpoint declared {@link #reusable(Function)} survives the end of a test, and a
+ * pooled session left in it is picked up again by {@link FlowEngine}.
+ * </p>
+ *
+ * @param <T> the page object of this state
+ */
+public final class Checkpoint<T> {
+
+	/**
+	 * Moves a session from the parent state to this one.
+	 *
+	 * @param <P> the parent's page object, {@code Void} for the first checkpoint
+	 * @param <T> the page object of the new state
+	 */
+	@FunctionalInterface
+	public interface Action<P, T> {
+		T run(WebDriver driver, P from, Map<String, String> params);
+	}
+
+	private final String name;
+	private final Checkpoint<?> parent;
+	private final Action<Object, T> action;
+	private final List<String> keys;
+	private final Function<WebDriver, T> resume;
+
+	private Checkpoint(String name, Checkpoint<?> parent, Action<Object, T> action, List<String> keys,
+			Function<WebDriver, T> resume) {
+		this.name = name;
+		this.parent = parent;
+		this.action = action;
+		this.keys = keys;
+		this.resume = resume;
+	}
+
+	/**
+	 * Declares the first state of a flow.
+	 *
+	 * @param name   the state's name
+	 * @param action reaches the state from a fresh or reset session
+	 * @param keys   the parameters that tell apart instances of the state, e.g. the user
+	 * @return the checkpoint
+	 */
+	public static <T> Checkpoint<T> start(String name, Action<Void, T> action, String... keys) {
+		return new Checkpoint<>(name, null, cast(action), Arrays.asList(keys), null);
+	}
+
+	/**
+	 * Declares a state reached from this one.
+	 *
+	 * @param name   the state's name
+	 * @param action reaches the state from this one's page object
+	 * @param keys   the parameters, besides this state's own, that tell apart instances of it
+	 * @return the new checkpoint
+	 */
+	public <U> Checkpoint<U> then(String name, Action<? super T, U> action, String... keys) {
+		return new Checkpoint<>(name, this, cast(action), Arrays.asList(keys), null);
+	}
+
+	/**
+	 * Marks the state as one a session stays in after the test, so a released session is
+	 * kept in it for the next test that needs it. Call it before deriving states with
+	 * {@link #then(String, Action, String...)}.
+	 *
+	 * @param resume rebuilds the page object for a session in this state, checking that
+	 *               it still is; returns {@code null} when it is not
+	 * @return a copy of this checkpoint with the resume function
+	 */
+	public Checkpoint<T> reusable(Function<WebDriver, T> resume) {
+		return new Checkpoint<>(name, parent, action, keys, resume);
+	}
+
+	public String name() {
+		return name;
+	}
+
+	boolean isReusable() {
+		return resume != null;
+	}
+
+	/**
+	 * @return this checkpoint's ancestors and itself, the first state first
+	 */
+	List<Checkpoint<?>> chain() {
+		List<Checkpoint<?>> chain = new ArrayList<>();
+		for (Checkpoint<?> checkpoint = this; checkpoint != null; checkpoint = checkpoint.parent) {
+			chain.add(checkpoint);
+		}
+		Collections.reverse(chain);
+		return chain;
+	}
+
+	/**
+	 * @param params the flow parameters
+	 * @return the identity of this state for the given parameters, e.g.
+	 *         {@code item-in-cart{username=a@b.c, productname=ZARA COAT 3}}
+	 */
+	String key(Map<String, String> params) {
+		StringBuilder key = new StringBuilder(name).append('{');
+		String separator = "";
+		for (Checkpoint<?> checkpoint : chain()) {
+			for (String param : checkpoint.keys) {
+				key.append(separator).append(param).append('=').append(params.get(param));
+				separator = ", ";
+			}
+		}
+		return key.append('}').toString();
+	}
+
+	T run(WebDriver driver, Object from, Map<String, String> params) {
+		return action.run(driver, from, params);
+	}
+
+	T resume(WebDriver driver) {
+		return resume.apply(driver);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Action<Object, T> cast(Action<?, T> action) {
+		return (Action<Object, T>) action;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,174 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Records the count and latency of every WebDriver command.
+ * <p>
+ * {@link DriverManager} adds the {@link #listener()} to the {@link EventFiringDecorator}
+ * of every session; it times each call on the driver, its elements and its
+ * navigation/options views.
+ * Each sample is attributed to the page class and {@link BasePage} helper that issued it:
+ * taken from the current {@link Step} when there is one, otherwise from the call stack.
+ * Samples go into a suite-wide {@link CommandStats} and, between {@link #beginTest()} and
+ * {@link #endTest()}, into the current test's own statistics.
+ * </p>
+ */
+public final class CommandMetrics implements WebDriverListener {
+
+	private static final CommandMetrics INSTANCE = new CommandMetrics();
+
+	private final CommandStats suite = new CommandStats();
+	private final ThreadLocal<CommandStats> test = new ThreadLocal<>();
+	private final ThreadLocal<Deque<Long>> started = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private CommandMetrics() {
+	}
+
+	public static CommandMetrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Adds the metrics to a driver that is being decorated; see
+	 * {@link DriverManager#createDriver(String)}.
+	 *
+	 * @return the listener, or null when {@code metrics.enabled=false}
+	 */
+	static WebDriverListener listener() {
+		return FrameworkConfig.get().metricsEnabled() ? INSTANCE : null;
+	}
+
+	public CommandStats suiteStats() {
+		return suite;
+	}
+
+	/**
+	 * Starts collecting a separate summary for the test running on this thread.
+	 */
+	public void beginTest() {
+		test.set(new CommandStats());
+	}
+
+	/**
+	 * Stops collecting for the test running on this thread.
+	 *
+	 * @return the test's statistics, or an empty summary if {@link #beginTest()} was not called
+	 */
+	public CommandStats endTest() {
+		CommandStats stats = test.get();
+		test.remove();
+		return stats == null ? new CommandStats() : stats;
+	}
+
+	@Override
+	public void beforeAnyCall(Object target, Method method, Object[] args) {
+		if (CommandOrigin.isCommand(method.getName())) {
+			started.get().push(System.nanoTime());
+		}
+	}
+
+	@Override
+	public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+		finish(method, null);
+	}
+
+	@Override
+	public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+		finish(method, e);
+	}
+
+	/**
+	 * Records a browser call the framework made on the original driver, outside the
+	 * instrumented one, such as the {@link TraceRecorder} page captures.
+	 *
+	 * @param command the name to report the call under
+	 * @param nanos   how long the call took
+	 * @param failed  whether the call threw
+	 */
+	static void record(String command, long nanos, boolean failed) {
+		if (FrameworkConfig.get().metricsEnabled()) {
+			INSTANCE.add(command, nanos, failed);
+		}
+	}
+
+	private void finish(Method method, Throwable error) {
+		if (!CommandOrigin.isCommand(method.getName())) {
+			return;
+		}
+		Long start = started.get().poll();
+		if (start == null) {
+			return;
+		}
+		add(method.getName(), System.nanoTime() - start, error != null);
+	}
+
+	private void add(String command, long elapsed, boolean failed) {
+		String[] origin = CommandOrigin.current();
+		String page = origin[0];
+		String helper = origin[1];
+		suite.record(command, page, helper, elapsed, failed);
+		CommandStats stats = test.get();
+		if (stats != null) {
+			stats.record(command, page, helper, elapsed, failed);
+		}
+	}
+
+	/**
+	 * Writes the suite-wide statistics as Prometheus text: a
+	 * {@code webdriver_command_duration_seconds} histogram and a
+	 * {@code webdriver_command_errors_total} counter, labelled by command, page and helper.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writePrometheus(Path file) throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write("# HELP webdriver_command_duration_seconds Latency of WebDriver commands.\n");
+			out.write("# TYPE webdriver_command_duration_seconds histogram\n");
+			for (Map.Entry<CommandStats.Key, LatencyHistogram> entry : suite.histograms().entrySet()) {
+				String labels = labels(entry.getKey());
+				LatencyHistogram histogram = entry.getValue();
+				for (Map.Entry<Long, Long> bucket : histogram.cumulativeBuckets().entrySet()) {
+					String le = bucket.getKey() == Long.MAX_VALUE ? "+Inf" : String.valueOf(bucket.getKey() / 1000.0);
+					out.write("webdriver_command_duration_seconds_bucket{" + labels + ",le=\"" + le + "\"} "
+							+ bucket.getValue() + "\n");
+				}
+				out.write("webdriver_command_duration_seconds_sum{" + labels + "} " + histogram.sumMillis() / 1000.0 + "\n");
+				out.write("webdriver_command_duration_seconds_count{" + labels + "} " + histogram.count() + "\n");
+			}
+			out.write("# HELP webdriver_command_errors_total WebDriver commands that threw.\n");
+			out.write("# TYPE webdriver_command_errors_total counter\n");
+			for (Map.Entry<CommandStats.Key, LatencyHistogram> entry : suite.histograms().entrySet()) {
+				out.write("webdriver_command_errors_total{" + labels(entry.getKey()) + "} "
+						+ entry.getValue().errors() + "\n");
+			}
+		}
+	}
+
+	private static String labels(CommandStats.Key key) {
+		return "command=\"" + escape(key.command) + "\",page=\"" + escape(key.page) + "\",helper=\""
+				+ escape(key.helper) + "\"";
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
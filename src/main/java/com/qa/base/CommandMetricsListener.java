@@ -0,0 +1,113 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Writes the {@link CommandMetrics} of each test to {@code target/metrics/<test>.json} and
+ * the suite-wide histograms to {@code target/metrics/webdriver_commands.prom}. The test's
+ * {@link CommandStats} are also attached to its result under {@link #RESULT_ATTRIBUTE}.
+ * <p>
+ * The attributes are set right after the test method returns, before any
+ * {@link ITestListener} runs, so listeners such as {@link ResultJournal} can read them
+ * whatever order TestNG calls them in.
+ * </p>
+ */
+public class CommandMetricsListener implements ITestListener, ISuiteListener, IInvokedMethodListener {
+
+	private static final Logger LOG = LogManager.getLogger(CommandMetricsListener.class);
+
+	public static final String RESULT_ATTRIBUTE = "commandMetrics";
+	public static final String FILE_ATTRIBUTE = "commandMetricsFile";
+
+	private static final Path OUTPUT = FrameworkConfig.get().metricsDir();
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+	@Override
+	public void onTestStart(ITestResult result) {
+		CommandMetrics.get().beginTest();
+	}
+
+	@Override
+	public void afterInvocation(IInvokedMethod method, ITestResult result) {
+		if (method.isTestMethod()) {
+			result.setAttribute(RESULT_ATTRIBUTE, CommandMetrics.get().endTest());
+			result.setAttribute(FILE_ATTRIBUTE, file(result).toString());
+		}
+	}
+
+	@Override
+	public void onTestSuccess(ITestResult result) {
+		finish(result, "SUCCESS");
+	}
+
+	@Override
+	public void onTestFailure(ITestResult result) {
+		finish(result, "FAILURE");
+	}
+
+	@Override
+	public void onTestSkipped(ITestResult result) {
+		finish(result, "SKIP");
+	}
+
+	@Override
+	public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+		finish(result, "SUCCESS_PERCENTAGE_FAILURE");
+	}
+
+	@Override
+	public void onFinish(ISuite suite) {
+		Path file = OUTPUT.resolve("webdriver_commands.prom");
+		try {
+			CommandMetrics.get().writePrometheus(file);
+		} catch (IOException e) {
+			LOG.error("Could not write command metrics to {}: {}", file, e.getMessage());
+		}
+	}
+
+	private void finish(ITestResult result, String status) {
+		Object attribute = result.getAttribute(RESULT_ATTRIBUTE);
+		CommandStats stats = attribute instanceof CommandStats ? (CommandStats) attribute : CommandMetrics.get().endTest();
+		result.setAttribute(RESULT_ATTRIBUTE, stats);
+
+		String test = result.getMethod().getQualifiedName();
+		JsonObject json = stats.toJson();
+		json.addProperty("test", test);
+		json.addProperty("status", status);
+		json.addProperty("durationMs", result.getEndMillis() - result.getStartMillis());
+
+		Path file = file(result);
+		try {
+			Files.createDirectories(OUTPUT);
+			try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+				GSON.toJson(json, out);
+			}
+			result.setAttribute(FILE_ATTRIBUTE, file.toString());
+		} catch (IOException e) {
+			result.removeAttribute(FILE_ATTRIBUTE);
+			LOG.error("Could not write command metrics to {}: {}", file, e.getMessage());
+		}
+	}
+
+	private static Path file(ITestResult result) {
+		return OUTPUT.resolve(result.getMethod().getQualifiedName() + "-" + result.getStartMillis() + ".json");
+	}
+}
@@ -0,0 +1,82 @@
+package com.qa.base;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells which WebDriver calls are real commands and which page and helper issued them, for
+ * the listeners {@link DriverManager} attaches to every pooled session.
+ */
+final class CommandOrigin {
+
+	// calls that only return local state, views or wrapper objects and never reach the browser
+	private static final Set<String> NOT_COMMANDS = new HashSet<>(Arrays.asList("manage", "navigate",
+			"switchTo", "timeouts", "window", "logs", "getWrappedDriver", "getWrappedElement", "getDevTools",
+			"maybeGetDevTools", "getBiDi", "maybeGetBiDi", "getCapabilities", "getSessionId", "equals",
+			"hashCode", "toString"));
+
+	static final String NONE = "-";
+
+	private static final Map<String, Boolean> PAGE_CLASSES = new ConcurrentHashMap<>();
+
+	private CommandOrigin() {
+	}
+
+	/**
+	 * @param method the name of the method called on a driver, element or one of their views
+	 * @return {@code false} for calls that never reach the browser, such as {@code manage()}
+	 */
+	static boolean isCommand(String method) {
+		return !NOT_COMMANDS.contains(method);
+	}
+
+	/**
+	 * Returns the page class and {@link BasePage} helper that issued the current command:
+	 * taken from the current {@link Step} when there is one, otherwise from the call stack.
+	 *
+	 * @return the page's simple name and the helper name, each {@code "-"} when unknown
+	 */
+	static String[] current() {
+		String page = NONE;
+		String helper = NONE;
+		Step step = Step.current();
+		if (step != null) {
+			Step root = step.root();
+			page = root.owner() == null ? NONE : root.owner().getSimpleName();
+			helper = root.name();
+		} else {
+			for (StackTraceElement frame : new Throwable().getStackTrace()) {
+				String className = frame.getClassName();
+				if (className.equals(BasePage.class.getName())) {
+					if (helper == NONE) {
+						helper = frame.getMethodName();
+					}
+				} else if (isPageClass(className)) {
+					page = className.substring(className.lastIndexOf('.') + 1);
+					if (helper == NONE) {
+						helper = frame.getMethodName();
+					}
+					break;
+				}
+			}
+		}
+		return new String[] { page, helper };
+	}
+
+	private static boolean isPageClass(String className) {
+		Boolean page = PAGE_CLASSES.get(className);
+		if (page == null) {
+			try {
+				Class<?> type = Class.forName(className, false, BasePage.class.getClassLoader());
+				page = BasePage.class.isAssignableFrom(type) && type != BasePage.class;
+			} catch (ClassNotFoundException | LinkageError e) {
+				page = false;
+			}
+			PAGE_CLASSES.put(className, page);
+		}
+		return page;
+	}
+}
@@ -0,0 +1,111 @@
+package com.qa.base;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * WebDriver command latencies grouped by command, page class and {@link BasePage} helper.
+ */
+public final class CommandStats {
+
+	private final Map<Key, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+	void record(String command, String page, String helper, long nanos, boolean failed) {
+		Key key = new Key(command, page, helper);
+		LatencyHistogram histogram = histograms.get(key);
+		if (histogram == null) {
+			histogram = histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+		}
+		histogram.record(nanos, failed);
+	}
+
+	public long totalCount() {
+		long total = 0;
+		for (LatencyHistogram histogram : histograms.values()) {
+			total += histogram.count();
+		}
+		return total;
+	}
+
+	public double totalMillis() {
+		double total = 0;
+		for (LatencyHistogram histogram : histograms.values()) {
+			total += histogram.sumMillis();
+		}
+		return total;
+	}
+
+	Map<Key, LatencyHistogram> histograms() {
+		return histograms;
+	}
+
+	/**
+	 * Returns the statistics as a JSON object with one entry per command, page and helper,
+	 * ordered by total time spent so the most expensive combinations come first.
+	 *
+	 * @return the JSON summary
+	 */
+	public JsonObject toJson() {
+		List<Map.Entry<Key, LatencyHistogram>> entries = new ArrayList<>(histograms.entrySet());
+		entries.sort(Comparator.comparingDouble(
+				(Map.Entry<Key, LatencyHistogram> e) -> e.getValue().sumMillis()).reversed());
+		JsonArray commands = new JsonArray();
+		for (Map.Entry<Key, LatencyHistogram> entry : entries) {
+			LatencyHistogram histogram = entry.getValue();
+			JsonObject row = new JsonObject();
+			row.addProperty("command", entry.getKey().command);
+			row.addProperty("page", entry.getKey().page);
+			row.addProperty("helper", entry.getKey().helper);
+			row.addProperty("count", histogram.count());
+			row.addProperty("errors", histogram.errors());
+			row.addProperty("totalMs", round(histogram.sumMillis()));
+			row.addProperty("meanMs", round(histogram.meanMillis()));
+			row.addProperty("p95Ms", round(histogram.percentileMillis(95)));
+			row.addProperty("maxMs", round(histogram.maxMillis()));
+			commands.add(row);
+		}
+		JsonObject json = new JsonObject();
+		json.addProperty("commands", totalCount());
+		json.addProperty("totalMs", round(totalMillis()));
+		json.add("byCommand", commands);
+		return json;
+	}
+
+	private static double round(double millis) {
+		return Math.round(millis * 100) / 100.0;
+	}
+
+	static final class Key {
+
+		final String command;
+		final String page;
+		final String helper;
+
+		Key(String command, String page, String helper) {
+			this.command = command;
+			this.page = page;
+			this.helper = helper;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return command.equals(other.command) && page.equals(other.page) && helper.equals(other.helper);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(command, page, helper);
+		}
+	}
+}
@@ -1,69 +1,139 @@
 package com.qa.base;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.firefox.FirefoxDriver;
-import org.openqa.selenium.safari.SafariDriver;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import com.qa.config.FrameworkConfig;
 
 
 public class DriverManager {
 
-    WebDriver driver;
+	private static volatile DriverPool pool;
+
 	Properties prop;
 
 	/**
-	 * this method is used to initialize the WebDriver on the basis of browser
-	 * 
-	 * @param browserName
+	 * this method is used to borrow a WebDriver for the current thread from the
+	 * shared driver pool and open the application url
+	 *
+	 * @param prop
 	 * @return driver
 	 */
 	public WebDriver init_driver(Properties prop) {
 
-		String browserName = prop.getProperty("browser");
+		WebDriver driver = getPool().borrow();
+		driver.get(prop.getProperty("url"));
 
-		if (browserName.equalsIgnoreCase("chrome")) {
-			driver = new ChromeDriver();
+		return driver;
 
-		} else if (browserName.equalsIgnoreCase("firefox")) {
-			driver = new FirefoxDriver();
+	}
 
-		} else if (browserName.equalsIgnoreCase("safari")) {
-			driver = new SafariDriver();
+	/**
+	 * this method is used to return the current thread's WebDriver to the pool
+	 */
+	public void release_driver() {
+		if (pool != null) {
+			pool.release();
 		}
+	}
 
-		driver.manage().deleteAllCookies();
-		driver.manage().window().maximize();
-		//driver.manage().timeouts().implicitlyWait(20, TimeUnit.SECONDS);
+	/**
+	 * this method returns the WebDriver bound to the current thread
+	 *
+	 * @return driver, or null if the thread has not borrowed one
+	 */
+	public static WebDriver getDriver() {
+		return pool == null ? null : pool.current();
+	}
 
-		driver.get(prop.getProperty("url"));
+	/**
+	 * this method returns the shared driver pool, creating it from
+	 * {@link FrameworkConfig} on first use
+	 *
+	 * @return pool
+	 */
+	public static DriverPool getPool() {
+		DriverPool result = pool;
+		if (result == null) {
+			synchronized (DriverManager.class) {
+				result = pool;
+				if (result == null) {
+					FrameworkConfig config = FrameworkConfig.get();
+					String browserName = config.browser();
+					result = new DriverPool(() -> createDriver(browserName), config.poolSize(),
+							config.poolBorrowTimeout().getSeconds());
+					Runtime.getRuntime().addShutdownHook(new Thread(result::shutdown, "driver-pool-shutdown"));
+					pool = result;
+				}
+			}
+		}
+		return result;
+	}
 
-		return driver;
+	/**
+	 * this method quits every pooled browser and forgets the pool, so the next
+	 * init_driver call starts a fresh one
+	 */
+	public static void shutdown_pool() {
+		DriverPool result;
+		synchronized (DriverManager.class) {
+			result = pool;
+			pool = null;
+		}
+		if (result != null) {
+			result.shutdown();
+		}
+	}
+
+	/**
+	 * this method is used to launch a new browser on the basis of browser name
+	 * with the configured {@link LaunchProfile}, or to open an isolated context in a
+	 * shared browser through the {@link SessionMultiplexer} when {@code pool.contexts}
+	 * is above 1, decorated with the WebDriver listeners of {@link CommandMetrics},
+	 * {@link LocatorRegistry}, {@link PageSnapshot} and {@link TraceRecorder} (each
+	 * subsystem that is turned off contributes none), and with the
+	 * {@link NetworkControl} rules applied
+	 *
+	 * @param browserName
+	 * @return driver
+	 */
+	static WebDriver createDriver(String browserName) {
+		WebDriver driver = FrameworkConfig.get().poolContexts() > 1 ? SessionMultiplexer.get().open(browserName)
+				: LaunchProfile.active().launch(browserName);
+		//driver.manage().timeouts().implicitlyWait(20, TimeUnit.SECONDS);
 
+		return NetworkControl.install(decorate(driver, CommandMetrics.listener(), LocatorRegistry.listener(),
+				PageSnapshot.listener(), TraceRecorder.listener()));
+	}
+
+	// one decorator for all listeners, so each command is intercepted once
+	private static WebDriver decorate(WebDriver driver, WebDriverListener... listeners) {
+		List<WebDriverListener> active = new ArrayList<>();
+		for (WebDriverListener listener : listeners) {
+			if (listener != null) {
+				active.add(listener);
+			}
+		}
+		if (active.isEmpty()) {
+			return driver;
+		}
+		return new EventFiringDecorator<WebDriver>(active.toArray(new WebDriverListener[0])).decorate(driver);
 	}
 
 	/**
-	 * this method is used to initialize the properties from config.proeprties
-	 * file
-	 * 
+	 * this method returns the properties from config.properties, with
+	 * environment and -D overrides applied; the file is only read once per JVM
+	 *
 	 * @return prop
 	 */
 	public Properties init_prop() {
-		prop = new Properties();
-		try {
-			FileInputStream ip = new FileInputStream(".src/main/java/com/qa/config/config.propertiess");
-			prop.load(ip);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-
+		prop = FrameworkConfig.get().asProperties();
 		return prop;
 
 	}
-    
+
 }
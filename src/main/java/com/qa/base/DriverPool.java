@@ -0,0 +1,426 @@
+package com.qa.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+/**
+ * A bounded pool of reusable {@link WebDriver} sessions.
+ * <p>
+ * Each thread borrows at most one session at a time and keeps it in a
+ * {@link ThreadLocal} until it is released. Released sessions are reset
+ * (cookies, storage, extra windows) instead of being relaunched, and every
+ * idle session is health-checked before it is handed out again.
+ * </p>
+ * <p>
+ * A borrower can mark its session as being in a named state ({@link #markState(String)}),
+ * for example logged in as a given user. Such a session keeps its cookies and storage when
+ * it is released, and {@link #borrow(List)} hands it to a borrower that asks for that state;
+ * any other borrower gets it reset first.
+ * </p>
+ */
+public class DriverPool {
+
+	private static final Logger LOG = LogManager.getLogger(DriverPool.class);
+
+	private final Supplier<WebDriver> factory;
+	private final int maxSize;
+	private final long borrowTimeoutSeconds;
+
+	private final LinkedBlockingDeque<WebDriver> idle = new LinkedBlockingDeque<>();
+	private final Set<WebDriver> all = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger created = new AtomicInteger();
+	private final ThreadLocal<WebDriver> current = new ThreadLocal<>();
+	// idle sessions that kept their state on release, and the state of each thread's session
+	private final Map<WebDriver, String> states = new ConcurrentHashMap<>();
+	private final ThreadLocal<String> currentState = new ThreadLocal<>();
+	private volatile boolean closed;
+
+	/**
+	 * Creates a pool that launches new sessions through the given factory.
+	 *
+	 * @param factory              creates a new, fully configured browser session
+	 * @param maxSize              the maximum number of live sessions
+	 * @param borrowTimeoutSeconds how long {@link #borrow()} waits for a free session
+	 */
+	public DriverPool(Supplier<WebDriver> factory, int maxSize, long borrowTimeoutSeconds) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Driver pool size must be at least 1 but was " + maxSize);
+		}
+		this.factory = factory;
+		this.maxSize = maxSize;
+		this.borrowTimeoutSeconds = borrowTimeoutSeconds;
+	}
+
+	/**
+	 * Returns the session bound to the calling thread. If the thread holds none, an idle
+	 * healthy session is taken from the pool, a new one is launched while the pool is below
+	 * its size, or the call blocks until another thread releases one.
+	 *
+	 * @return the session bound to the current thread
+	 * @throws IllegalStateException if no session becomes available within the borrow timeout
+	 */
+	public WebDriver borrow() {
+		return borrow(Collections.<String>emptyList());
+	}
+
+	/**
+	 * Like {@link #borrow()}, but first looks for an idle session left in one of the
+	 * {@code preferred} states, earlier states first. A session left in any other state is
+	 * reset before it is handed out. {@link #state()} then tells which state, if any, the
+	 * borrowed session is in.
+	 *
+	 * @param preferred the states the caller can continue from, best first
+	 * @return the session bound to the current thread
+	 * @throws IllegalStateException if no session becomes available within the borrow timeout
+	 */
+	public WebDriver borrow(List<String> preferred) {
+		WebDriver driver = current.get();
+		if (driver != null) {
+			return driver;
+		}
+		if (closed) {
+			throw new IllegalStateException("Driver pool has been shut down");
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(borrowTimeoutSeconds);
+		while (driver == null) {
+			driver = pollPreferred(preferred);
+			if (driver == null) {
+				driver = pollHealthy();
+			}
+			if (driver == null && reserveSlot()) {
+				driver = launch();
+			}
+			if (driver == null) {
+				driver = waitForIdle(deadline);
+			}
+			if (driver != null && !adopt(driver, preferred)) {
+				driver = null;
+			}
+		}
+		current.set(driver);
+		LogContext.bindSession(driver);
+		return driver;
+	}
+
+	/**
+	 * Returns the session bound to the calling thread without borrowing one.
+	 *
+	 * @return the current thread's session, or {@code null} if it holds none
+	 */
+	public WebDriver current() {
+		return current.get();
+	}
+
+	/**
+	 * Returns the state the calling thread's session is marked with.
+	 *
+	 * @return the state, or {@code null} for a plain session
+	 */
+	public String state() {
+		return currentState.get();
+	}
+
+	/**
+	 * Marks the calling thread's session as being in {@code state}. When it is released it
+	 * only loses its extra windows and network rules, and a later {@link #borrow(List)} for
+	 * the same state can continue from it. {@code null} clears the mark.
+	 *
+	 * @param state the state, or {@code null}
+	 */
+	public void markState(String state) {
+		if (state == null) {
+			currentState.remove();
+		} else if (current.get() != null) {
+			currentState.set(state);
+		}
+	}
+
+	/**
+	 * Releases the calling thread's session back to the pool. The session is reset so the
+	 * next borrower starts from a clean browser, unless it is marked with a state; if the
+	 * reset fails the session is discarded.
+	 */
+	public void release() {
+		WebDriver driver = current.get();
+		String state = currentState.get();
+		current.remove();
+		currentState.remove();
+		LogContext.clearSession();
+		if (driver == null) {
+			return;
+		}
+		if (closed || !(state == null ? reset(driver) : tidy(driver))) {
+			discard(driver);
+			return;
+		}
+		if (state != null) {
+			states.put(driver, state);
+		}
+		idle.offerFirst(driver);
+	}
+
+	/**
+	 * Quits the calling thread's session and frees its pool slot. Use this when the session
+	 * is known to be broken and must not be reused.
+	 */
+	public void discardCurrent() {
+		WebDriver driver = current.get();
+		current.remove();
+		currentState.remove();
+		LogContext.clearSession();
+		if (driver != null) {
+			discard(driver);
+		}
+	}
+
+	/**
+	 * Launches up to {@code count} sessions in parallel and parks them in the idle queue.
+	 * Failures are reported but do not abort the warm-up of the remaining sessions.
+	 *
+	 * @param count the number of sessions to pre-spawn, capped at the pool size
+	 * @return the number of sessions that were actually started
+	 */
+	public int warmUp(int count) {
+		int target = Math.min(count, maxSize);
+		if (target <= 0) {
+			return 0;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(target);
+		List<Future<WebDriver>> launches = new ArrayList<>();
+		try {
+			for (int i = 0; i < target; i++) {
+				if (!reserveSlot()) {
+					break;
+				}
+				launches.add(executor.submit(this::launch));
+			}
+			int started = 0;
+			for (Future<WebDriver> launch : launches) {
+				try {
+					idle.offerLast(launch.get());
+					started++;
+				} catch (Exception e) {
+					LOG.error("Driver pool warm-up failed: {}", e.getMessage());
+				}
+			}
+			return started;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Shuts the pool down and quits all sessions, borrowed or idle.
+	 */
+	public void shutdown() {
+		closed = true;
+		for (WebDriver driver : new ArrayList<>(all)) {
+			discard(driver);
+		}
+		idle.clear();
+	}
+
+	public int size() {
+		return created.get();
+	}
+
+	public int idleCount() {
+		return idle.size();
+	}
+
+	public int maxSize() {
+		return maxSize;
+	}
+
+	private WebDriver pollPreferred(List<String> preferred) {
+		for (String state : preferred) {
+			for (WebDriver driver : idle) {
+				if (state.equals(states.get(driver)) && idle.remove(driver)) {
+					if (isHealthy(driver)) {
+						return driver;
+					}
+					discard(driver);
+				}
+			}
+		}
+		return null;
+	}
+
+	// binds the state a session was left in, or resets it when the borrower cannot use it
+	private boolean adopt(WebDriver driver, List<String> preferred) {
+		String state = states.remove(driver);
+		if (state != null && !preferred.contains(state)) {
+			if (!reset(driver)) {
+				discard(driver);
+				return false;
+			}
+			state = null;
+		}
+		if (state == null) {
+			currentState.remove();
+		} else {
+			currentState.set(state);
+		}
+		return true;
+	}
+
+	private WebDriver pollHealthy() {
+		WebDriver driver;
+		while ((driver = idle.pollFirst()) != null) {
+			if (isHealthy(driver)) {
+				return driver;
+			}
+			discard(driver);
+		}
+		return null;
+	}
+
+	private WebDriver waitForIdle(long deadline) {
+		long remaining = deadline - System.nanoTime();
+		if (remaining <= 0) {
+			throw new IllegalStateException("No WebDriver session became available within "
+					+ borrowTimeoutSeconds + "s (pool size " + maxSize + ")");
+		}
+		try {
+			// wake up periodically so a slot freed by discard() can be used for a new launch
+			WebDriver driver = idle.pollFirst(Math.min(remaining, TimeUnit.SECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+			if (driver != null && !isHealthy(driver)) {
+				discard(driver);
+				return null;
+			}
+			return driver;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for a WebDriver session", e);
+		}
+	}
+
+	private boolean reserveSlot() {
+		while (true) {
+			int count = created.get();
+			if (count >= maxSize) {
+				return false;
+			}
+			if (created.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private WebDriver launch() {
+		try {
+			WebDriver driver = factory.get();
+			all.add(driver);
+			return driver;
+		} catch (RuntimeException e) {
+			created.decrementAndGet();
+			throw e;
+		}
+	}
+
+	private void discard(WebDriver driver) {
+		if (all.remove(driver)) {
+			created.decrementAndGet();
+		}
+		idle.remove(driver);
+		states.remove(driver);
+		WaitEngine.forget(driver);
+		Readiness.forget(driver);
+		ScreenshotService.forget(driver);
+		NetworkControl.forget(driver);
+		PageSnapshot.forget(driver);
+		try {
+			driver.quit();
+		} catch (Exception e) {
+			LOG.warn("Failed to quit discarded WebDriver session: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * A session is healthy when the browser still answers a cheap command.
+	 */
+	boolean isHealthy(WebDriver driver) {
+		try {
+			driver.getWindowHandle();
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Clears cookies, web storage and extra windows so the next borrower sees a fresh browser,
+	 * and drops network rules and the script timeout the previous borrower changed.
+	 */
+	boolean reset(WebDriver driver) {
+		try {
+			leaveFrames(driver);
+			closeExtraWindows(driver);
+			driver.manage().deleteAllCookies();
+			if (driver instanceof JavascriptExecutor) {
+				((JavascriptExecutor) driver).executeScript(
+						"try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}");
+			}
+			driver.get("about:blank");
+			NetworkControl.reset(driver);
+			Readiness.restore(driver);
+			return true;
+		} catch (Exception e) {
+			LOG.warn("WebDriver session reset failed, discarding it: {}", e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Closes extra windows, drops network rules and restores the script timeout but keeps
+	 * cookies and storage, for a session that is released in a marked state.
+	 */
+	boolean tidy(WebDriver driver) {
+		try {
+			leaveFrames(driver);
+			closeExtraWindows(driver);
+			driver.get("about:blank");
+			NetworkControl.reset(driver);
+			Readiness.restore(driver);
+			return true;
+		} catch (Exception e) {
+			LOG.warn("WebDriver session tidy-up failed, discarding it: {}", e.getMessage());
+			return false;
+		}
+	}
+
+	// the clean-up must not run inside a frame the test left the session in; on a
+	// multiplexed session this also lets the other sessions of the browser go on
+	private static void leaveFrames(WebDriver driver) {
+		driver.switchTo().defaultContent();
+	}
+
+	private static void closeExtraWindows(WebDriver driver) {
+		String main = driver.getWindowHandle();
+		Set<String> handles = driver.getWindowHandles();
+		if (handles.size() > 1) {
+			for (String handle : handles) {
+				if (!handle.equals(main)) {
+					driver.switchTo().window(handle).close();
+				}
+			}
+			driver.switchTo().window(main);
+		}
+	}
+}
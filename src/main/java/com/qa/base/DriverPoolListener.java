@@ -0,0 +1,75 @@
+package com.qa.base;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Warms the shared {@link DriverPool} when a suite starts and quits all pooled
+ * sessions when it finishes. After each test it returns the session the test
+ * borrowed, so tests do not need to release it themselves and failure handlers
+ * such as {@link ScreenshotListener} still see the page the test ended on.
+ * It also tags the test thread's log lines with the test name (see {@link LogContext}).
+ * Register it in testng.xml under {@code <listeners>}.
+ */
+public class DriverPoolListener implements ISuiteListener, ITestListener {
+
+	private static final Logger LOG = LogManager.getLogger(DriverPoolListener.class);
+
+	@Override
+	public void onStart(ISuite suite) {
+		LogContext.configure();
+		FrameworkConfig config = FrameworkConfig.get();
+		if (config.browser() == null) {
+			LOG.info("Driver pool warm-up skipped: no browser configured");
+			return;
+		}
+		long start = System.currentTimeMillis();
+		int started = DriverManager.getPool().warmUp(config.poolWarmup());
+		LOG.info("Driver pool warmed up with {} session(s) in {} ms", started, System.currentTimeMillis() - start);
+	}
+
+	@Override
+	public void onTestStart(ITestResult result) {
+		LogContext.bindTest(result);
+	}
+
+	@Override
+	public void onTestSuccess(ITestResult result) {
+		finish();
+	}
+
+	@Override
+	public void onTestFailure(ITestResult result) {
+		finish();
+	}
+
+	@Override
+	public void onTestSkipped(ITestResult result) {
+		finish();
+	}
+
+	@Override
+	public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+		finish();
+	}
+
+	// returns the session and drops the test tag, so pooled threads do not log under a finished test
+	private static void finish() {
+		try {
+			new DriverManager().release_driver();
+		} finally {
+			LogContext.clearTest();
+		}
+	}
+
+	@Override
+	public void onFinish(ISuite suite) {
+		DriverManager.shutdown_pool();
+	}
+}
@@ -0,0 +1,69 @@
+package com.qa.base;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+
+/**
+ * Short-lived cache of element handles keyed by locator.
+ * <p>
+ * An entry is served until its time-to-live expires or the caller invalidates it
+ * after a {@code StaleElementReferenceException}. A zero TTL disables the cache.
+ * </p>
+ */
+final class ElementCache {
+
+	private final long ttlNanos;
+	private final Map<By, Entry> entries = new ConcurrentHashMap<>();
+
+	ElementCache(Duration ttl) {
+		this.ttlNanos = ttl.toNanos();
+	}
+
+	boolean isEnabled() {
+		return ttlNanos > 0;
+	}
+
+	WebElement get(By locator) {
+		if (!isEnabled()) {
+			return null;
+		}
+		Entry entry = entries.get(locator);
+		if (entry == null) {
+			return null;
+		}
+		if (System.nanoTime() - entry.storedAt > ttlNanos) {
+			entries.remove(locator, entry);
+			return null;
+		}
+		return entry.element;
+	}
+
+	void put(By locator, WebElement element) {
+		if (isEnabled()) {
+			entries.put(locator, new Entry(element, System.nanoTime()));
+		}
+	}
+
+	void invalidate(By locator) {
+		entries.remove(locator);
+	}
+
+	void clear() {
+		entries.clear();
+	}
+
+	private static final class Entry {
+
+		final WebElement element;
+		final long storedAt;
+
+		Entry(WebElement element, long storedAt) {
+			this.element = element;
+			this.storedAt = storedAt;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.qa.base;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.openqa.selenium.WebElement;
+
+/**
+ * Immutable copy of one element's text, visibility and requested attributes, read
+ * in bulk by {@link BatchQuery}. The live {@link WebElement} is kept so callers can
+ * still interact with the element they picked from the snapshot.
+ */
+public final class ElementSnapshot {
+
+	private final int index;
+	private final WebElement element;
+	private final String text;
+	private final boolean displayed;
+	private final Map<String, String> attributes;
+
+	ElementSnapshot(int index, WebElement element, String text, boolean displayed, Map<String, String> attributes) {
+		this.index = index;
+		this.element = element;
+		this.text = text;
+		this.displayed = displayed;
+		this.attributes = Collections.unmodifiableMap(attributes);
+	}
+
+	//Position of the element in the locator's match list
+	public int index() {
+		return index;
+	}
+
+	//The live element, for interactions after a snapshot-based lookup
+	public WebElement element() {
+		return element;
+	}
+
+	/**
+	 * Returns the rendered text of the element, or of its descendant selected with
+	 * {@link BatchQuery#textOf(String)}. Empty if that descendant does not exist or, as
+	 * with {@link WebElement#getText()}, is not displayed.
+	 *
+	 * @return the trimmed text, never {@code null}
+	 */
+	public String text() {
+		return text;
+	}
+
+	public boolean isDisplayed() {
+		return displayed;
+	}
+
+	/**
+	 * Returns the value of an attribute requested with {@link BatchQuery#attributes(String...)}.
+	 *
+	 * @param name the attribute name
+	 * @return the attribute value, or {@code null} if it is absent or was not requested
+	 */
+	public String attribute(String name) {
+		return attributes.get(name);
+	}
+
+	public Map<String, String> attributes() {
+		return attributes;
+	}
+
+	@Override
+	public String toString() {
+		return "ElementSnapshot[" + index + ", '" + text + "', displayed=" + displayed + ", " + attributes + "]";
+	}
+}
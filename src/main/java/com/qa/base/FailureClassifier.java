@@ -0,0 +1,95 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import org.openqa.selenium.ElementClickInterceptedException;
+import org.openqa.selenium.ElementNotInteractableException;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.SessionNotCreatedException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+
+/**
+ * Sorts test failures into categories so only the ones a rerun can fix are retried.
+ * <p>
+ * The exception and its causes are inspected from the outside in; the first one that
+ * identifies a category wins. Assertion failures always win, because a retry cannot change
+ * what the application returned.
+ * </p>
+ */
+public final class FailureClassifier {
+
+	public enum Category {
+		/** the browser, driver, grid or network failed, not the application */
+		INFRASTRUCTURE,
+		/** a wait ran out, or the element was not ready or was covered */
+		TIMING,
+		/** the page re-rendered under an element the test held */
+		STALE,
+		/** the application returned a wrong result */
+		ASSERTION,
+		/** anything else, such as a bug in the test code */
+		OTHER
+	}
+
+	// WebDriverException messages that mean the browser or the connection to it is gone
+	private static final String[] LOST_BROWSER = { "chrome not reachable", "disconnected", "target window already closed",
+			"session deleted", "connection refused", "tab crashed", "no such window" };
+
+	private FailureClassifier() {
+	}
+
+	/**
+	 * Classifies a test failure.
+	 *
+	 * @param failure what the test threw, may be null
+	 * @return the category
+	 */
+	public static Category classify(Throwable failure) {
+		for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+			if (t instanceof AssertionError) {
+				return Category.ASSERTION;
+			}
+		}
+		for (Throwable t = failure; t != null; t = t.getCause() == t ? null : t.getCause()) {
+			Category category = classifyOne(t);
+			if (category != null) {
+				return category;
+			}
+		}
+		return Category.OTHER;
+	}
+
+	private static Category classifyOne(Throwable t) {
+		if (t instanceof StaleElementReferenceException) {
+			return Category.STALE;
+		}
+		if (t instanceof TimeoutException || t instanceof ScriptTimeoutException
+				|| t instanceof ElementClickInterceptedException || t instanceof ElementNotInteractableException
+				|| t instanceof NoSuchElementException) {
+			return Category.TIMING;
+		}
+		if (t instanceof NoSuchSessionException || t instanceof SessionNotCreatedException
+				|| t instanceof UnreachableBrowserException || t instanceof IOException) {
+			return Category.INFRASTRUCTURE;
+		}
+		// DriverPool reports an exhausted pool this way
+		if (t instanceof IllegalStateException && String.valueOf(t.getMessage()).startsWith("No WebDriver session")) {
+			return Category.INFRASTRUCTURE;
+		}
+		if (t instanceof WebDriverException) {
+			String message = String.valueOf(t.getMessage()).toLowerCase(Locale.ROOT);
+			for (String lost : LOST_BROWSER) {
+				if (message.contains(lost)) {
+					return Category.INFRASTRUCTURE;
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,241 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+import org.testng.SkipException;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Brings the current thread's session to a {@link Checkpoint} by the cheapest path.
+ * <p>
+ * {@link #reach(Checkpoint, Map)} borrows a session from the {@link DriverPool}, preferring
+ * one that a previous test left in a reusable state of the requested chain
+ * ({@code flow.reuse}). If the checkpoint's resume function confirms the session is still
+ * in that state, the flow continues from there; otherwise the actions are replayed from
+ * the first state. The first state's own action can be cheap too: the shop's login step
+ * injects the cached {@link SessionBootstrap} session instead of typing credentials.
+ * </p>
+ * <p>
+ * When an action fails, the state is remembered as broken for its parameters and every
+ * later test that depends on it is skipped at once instead of failing the same way
+ * ({@code flow.failfast}). A retry of the test that hit the failure still runs, and a
+ * successful pass through the state clears the mark. Per-checkpoint counts and timings go
+ * to {@code target/metrics/flows.json}.
+ * </p>
+ */
+public final class FlowEngine {
+
+	private static final Logger LOG = LogManager.getLogger(FlowEngine.class);
+
+	private static final FlowEngine INSTANCE = new FlowEngine();
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+	private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+	private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+	private FlowEngine() {
+	}
+
+	public static FlowEngine get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Brings the calling thread's session to {@code target}, borrowing one if needed.
+	 *
+	 * @param target the state the test needs
+	 * @param params the flow parameters (user, product, ...) the actions read
+	 * @return the page object of the target state
+	 * @throws SkipException if a state on the way failed for the same parameters earlier
+	 */
+	public <T> T reach(Checkpoint<T> target, Map<String, String> params) {
+		FrameworkConfig config = FrameworkConfig.get();
+		List<Checkpoint<?>> chain = target.chain();
+		String test = currentTest();
+		if (config.flowFailFast()) {
+			for (Checkpoint<?> checkpoint : chain) {
+				Failure failure = failures.get(checkpoint.key(params));
+				if (failure != null && !failure.test.equals(test)) {
+					stats(checkpoint).skipped.increment();
+					throw new SkipException("Prerequisite " + checkpoint.key(params) + " failed in " + failure.test
+							+ ": " + failure.message);
+				}
+			}
+		}
+		List<String> reusable = new ArrayList<>();
+		if (config.flowReuse()) {
+			for (int i = chain.size() - 1; i >= 0; i--) {
+				if (chain.get(i).isReusable()) {
+					reusable.add(chain.get(i).key(params));
+				}
+			}
+		}
+		DriverPool pool = DriverManager.getPool();
+		WebDriver driver = pool.borrow(reusable);
+		Object page = null;
+		int next = 0;
+		String state = pool.state();
+		if (state != null) {
+			int index = indexOf(chain, state, params);
+			Object resumed = index < 0 ? null : resume(chain.get(index), driver);
+			if (resumed != null) {
+				stats(chain.get(index)).reused.increment();
+				page = resumed;
+				next = index + 1;
+			} else {
+				pool.markState(null);
+			}
+		}
+		for (int i = next; i < chain.size(); i++) {
+			Checkpoint<?> checkpoint = chain.get(i);
+			String key = checkpoint.key(params);
+			long start = System.nanoTime();
+			try {
+				page = checkpoint.run(driver, page, params);
+			} catch (RuntimeException | AssertionError e) {
+				stats(checkpoint).failed.increment();
+				if (config.flowFailFast()) {
+					failures.put(key, new Failure(test, e.getClass().getSimpleName() + ": " + firstLine(e.getMessage())));
+					LOG.warn("Flow state {} failed; tests that need it will be skipped", key);
+				}
+				throw e;
+			}
+			stats(checkpoint).replayed(System.nanoTime() - start);
+			failures.remove(key);
+			if (checkpoint.isReusable() && config.flowReuse()) {
+				pool.markState(key);
+			}
+		}
+		@SuppressWarnings("unchecked")
+		T result = (T) page;
+		return result;
+	}
+
+	public boolean isUsed() {
+		return !stats.isEmpty();
+	}
+
+	/**
+	 * Writes, per checkpoint, how often it was replayed, reused from a pooled session,
+	 * failed and skipped dependents, with the mean time of its action.
+	 *
+	 * @param file the JSON file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeReport(Path file) throws IOException {
+		JsonArray checkpoints = new JsonArray();
+		long replayed = 0;
+		long reused = 0;
+		long skipped = 0;
+		for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+			Stats value = entry.getValue();
+			JsonObject row = new JsonObject();
+			row.addProperty("checkpoint", entry.getKey());
+			row.addProperty("replayed", value.replayed.sum());
+			row.addProperty("reused", value.reused.sum());
+			row.addProperty("failed", value.failed.sum());
+			row.addProperty("skippedDependents", value.skipped.sum());
+			long count = value.replayed.sum();
+			row.addProperty("meanMs", count == 0 ? 0 : Math.round(value.nanos.sum() / 1e5 / count) / 10.0);
+			checkpoints.add(row);
+			replayed += value.replayed.sum();
+			reused += value.reused.sum();
+			skipped += value.skipped.sum();
+		}
+		JsonObject report = new JsonObject();
+		report.add("checkpoints", checkpoints);
+		JsonArray broken = new JsonArray();
+		failures.keySet().forEach(broken::add);
+		report.add("failedStates", broken);
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			GSON.toJson(report, out);
+		}
+		LOG.info("Flows: {} checkpoint action(s) replayed, {} reached by reusing a pooled session, {} test(s) skipped "
+				+ "after a failed prerequisite", replayed, reused, skipped);
+	}
+
+	private static int indexOf(List<Checkpoint<?>> chain, String state, Map<String, String> params) {
+		for (int i = chain.size() - 1; i >= 0; i--) {
+			if (chain.get(i).isReusable() && chain.get(i).key(params).equals(state)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static Object resume(Checkpoint<?> checkpoint, WebDriver driver) {
+		try {
+			return checkpoint.resume(driver);
+		} catch (RuntimeException e) {
+			LOG.info("Pooled session is no longer in state {}: {}", checkpoint.name(), firstLine(e.getMessage()));
+			return null;
+		}
+	}
+
+	// the same test method and parameters, so its own retries are not skipped
+	private static String currentTest() {
+		ITestResult result = Reporter.getCurrentTestResult();
+		if (result == null) {
+			return Thread.currentThread().getName();
+		}
+		return result.getMethod().getQualifiedName() + Arrays.toString(result.getParameters());
+	}
+
+	private static String firstLine(String message) {
+		if (message == null) {
+			return "";
+		}
+		int newline = message.indexOf('\n');
+		return newline < 0 ? message : message.substring(0, newline);
+	}
+
+	private Stats stats(Checkpoint<?> checkpoint) {
+		return stats.computeIfAbsent(checkpoint.name(), name -> new Stats());
+	}
+
+	private static final class Failure {
+		final String test;
+		final String message;
+
+		Failure(String test, String message) {
+			this.test = test;
+			this.message = message;
+		}
+	}
+
+	private static final class Stats {
+		final LongAdder replayed = new LongAdder();
+		final LongAdder reused = new LongAdder();
+		final LongAdder failed = new LongAdder();
+		final LongAdder skipped = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+
+		void replayed(long elapsed) {
+			replayed.increment();
+			nanos.add(elapsed);
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Writes the {@link FlowEngine} checkpoint counts to {@code target/metrics/flows.json}
+ * when the suite finishes, if any test reached a checkpoint. Register it in testng.xml
+ * under {@code <listeners>}.
+ */
+public class FlowEngineListener implements ISuiteListener {
+
+	private static final Logger LOG = LogManager.getLogger(FlowEngineListener.class);
+
+	@Override
+	public void onFinish(ISuite suite) {
+		if (!FlowEngine.get().isUsed()) {
+			return;
+		}
+		Path file = FrameworkConfig.get().metricsDir().resolve("flows.json");
+		try {
+			FlowEngine.get().writeReport(file);
+		} catch (IOException e) {
+			LOG.error("Could not write the flow report to {}: {}", file, e.getMessage());
+		}
+	}
+}
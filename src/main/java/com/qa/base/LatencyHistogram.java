@@ -0,0 +1,97 @@
+package com.qa.base;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram that many threads can record into without locking.
+ * Bucket bounds are in milliseconds and match the Prometheus {@code le} labels that
+ * {@link CommandMetrics} exports.
+ */
+public final class LatencyHistogram {
+
+	static final long[] BOUNDS_MS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MS.length + 1);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sumNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder errors = new LongAdder();
+
+	public void record(long nanos, boolean failed) {
+		int bucket = 0;
+		while (bucket < BOUNDS_MS.length && nanos > BOUNDS_MS[bucket] * 1_000_000) {
+			bucket++;
+		}
+		buckets.incrementAndGet(bucket);
+		count.increment();
+		sumNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+		if (failed) {
+			errors.increment();
+		}
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public long errors() {
+		return errors.sum();
+	}
+
+	public double sumMillis() {
+		return sumNanos.sum() / 1_000_000.0;
+	}
+
+	public double maxMillis() {
+		return maxNanos.get() / 1_000_000.0;
+	}
+
+	public double meanMillis() {
+		long n = count();
+		return n == 0 ? 0 : sumMillis() / n;
+	}
+
+	/**
+	 * Returns cumulative counts per upper bound, as Prometheus expects them.
+	 *
+	 * @return a map from bucket upper bound in milliseconds ({@code Long.MAX_VALUE} for +Inf)
+	 *         to the number of samples at or below it
+	 */
+	public Map<Long, Long> cumulativeBuckets() {
+		Map<Long, Long> result = new LinkedHashMap<>();
+		long running = 0;
+		for (int i = 0; i < BOUNDS_MS.length; i++) {
+			running += buckets.get(i);
+			result.put(BOUNDS_MS[i], running);
+		}
+		result.put(Long.MAX_VALUE, running + buckets.get(BOUNDS_MS.length));
+		return result;
+	}
+
+	/**
+	 * Returns the upper bucket bound below which the given share of samples falls.
+	 *
+	 * @param percentile a value between 0 and 100
+	 * @return the bound in milliseconds, or the observed maximum for the overflow bucket
+	 */
+	public double percentileMillis(double percentile) {
+		long n = count();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(n * percentile / 100.0);
+		long running = 0;
+		for (int i = 0; i < BOUNDS_MS.length; i++) {
+			running += buckets.get(i);
+			if (running >= rank) {
+				return Math.min(BOUNDS_MS[i], maxMillis());
+			}
+		}
+		return maxMillis();
+	}
+}
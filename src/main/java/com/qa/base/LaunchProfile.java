@@ -0,0 +1,418 @@
+package com.qa.base;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxDriverService;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.remote.Augmenter;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.http.ClientConfig;
+import org.openqa.selenium.remote.http.HttpClient;
+import org.openqa.selenium.remote.service.DriverFinder;
+import org.openqa.selenium.remote.service.DriverService;
+import org.openqa.selenium.safari.SafariDriver;
+import org.openqa.selenium.safari.SafariOptions;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Named set of browser launch options, selected with {@code browser.profile}.
+ * <ul>
+ * <li>{@code default}: a normal headed window, maximized, waiting for the full page load</li>
+ * <li>{@code headless}: headless (Chrome's new headless mode), fixed viewport, eager page
+ * loads, no extensions</li>
+ * <li>{@code ci}: {@code headless} plus no images, no downloaded web fonts and no use of
+ * /dev/shm, for containers with a small shared-memory mount</li>
+ * </ul>
+ * <p>
+ * {@code browser.viewport} (for example {@code 1366x768}) overrides the viewport of the
+ * headless profiles. The driver binary is resolved through Selenium Manager once per
+ * browser and reused for every later launch; {@code browser.driver.path} and
+ * {@code browser.binary.path} skip the resolution altogether. Every launch logs its
+ * startup time and, for a local browser on Linux, the resident memory of the driver and
+ * browser process tree (read from {@code /proc}).
+ * </p>
+ * <p>
+ * Commands go through Selenium's JDK HTTP client with the timeouts from
+ * {@code http.connect.timeout} and {@code http.read.timeout}: grid sessions are given
+ * {@link #HTTP_FACTORY} explicitly, and Selenium's own default for local drivers is the
+ * same client, whose driver constructors take no factory. That client blocks callers on
+ * {@code java.net.http} futures rather than inside synchronized code, so sessions driven
+ * from virtual threads (see {@link VirtualThreadExecutorFactory}) release their carrier
+ * thread while a command is in flight.
+ * </p>
+ */
+public final class LaunchProfile {
+
+	private static final Logger LOG = LogManager.getLogger(LaunchProfile.class);
+
+	private static final Map<String, Binaries> BINARIES = new ConcurrentHashMap<>();
+
+	static final HttpClient.Factory HTTP_FACTORY = HttpClient.Factory.create("jdk-http-client");
+
+	private final String name;
+	private final boolean headless;
+	private final boolean eager;
+	private final boolean lean;
+	private final Dimension viewport;
+
+	private LaunchProfile(String name, boolean headless, boolean eager, boolean lean, Dimension viewport) {
+		this.name = name;
+		this.headless = headless;
+		this.eager = eager;
+		this.lean = lean;
+		this.viewport = viewport;
+	}
+
+	/**
+	 * Returns the profile selected in the configuration.
+	 *
+	 * @return the active profile
+	 * @throws IllegalStateException if {@code browser.profile} names an unknown profile
+	 */
+	public static LaunchProfile active() {
+		FrameworkConfig config = FrameworkConfig.get();
+		return named(config.browserProfile(), parseViewport(config.browserViewport()));
+	}
+
+	static LaunchProfile named(String name, Dimension viewport) {
+		switch (name.toLowerCase(Locale.ROOT)) {
+		case "default":
+			return new LaunchProfile("default", false, false, false, null);
+		case "headless":
+			return new LaunchProfile("headless", true, true, false, viewport);
+		case "ci":
+			return new LaunchProfile("ci", true, true, true, viewport);
+		default:
+			throw new IllegalStateException("Unknown browser.profile: " + name + " (expected default, headless or ci)");
+		}
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * Starts a browser with this profile's options.
+	 *
+	 * @param browserName chrome, firefox or safari
+	 * @return the new session
+	 */
+	public WebDriver launch(String browserName) {
+		long start = System.nanoTime();
+		WebDriver driver;
+		DriverService service = null;
+		if (!"off".equals(FrameworkConfig.get().gridMode())) {
+			driver = remote(browserName);
+
+		} else if ("chrome".equalsIgnoreCase(browserName)) {
+			ChromeOptions options = chromeOptions();
+			service = service("chrome", options);
+			driver = new ChromeDriver((ChromeDriverService) service, options, clientConfig());
+
+		} else if ("firefox".equalsIgnoreCase(browserName)) {
+			FirefoxOptions options = firefoxOptions();
+			service = service("firefox", options);
+			driver = new FirefoxDriver((FirefoxDriverService) service, options, clientConfig());
+
+		} else if ("safari".equalsIgnoreCase(browserName)) {
+			SafariOptions options = new SafariOptions();
+			if (eager) {
+				options.setPageLoadStrategy(PageLoadStrategy.EAGER);
+			}
+			driver = new SafariDriver(options);
+
+		} else {
+			throw new RuntimeException("Unsupported browser in config.properties: " + browserName);
+		}
+
+		if (viewport == null || !headless) {
+			driver.manage().window().maximize();
+		}
+		long startupMs = (System.nanoTime() - start) / 1_000_000;
+		LOG.info("Launched {} with profile {} in {} ms{}", browserName.toLowerCase(Locale.ROOT), name, startupMs,
+				footprint(service));
+		return driver;
+	}
+
+	// grid.mode=local routes through the LocalGrid of this JVM, grid.mode=remote through grid.url
+	private WebDriver remote(String browserName) {
+		FrameworkConfig config = FrameworkConfig.get();
+		URL url;
+		if ("local".equals(config.gridMode())) {
+			url = LocalGrid.get(browserName).url();
+		} else if ("remote".equals(config.gridMode())) {
+			try {
+				url = new URL(config.require("grid.url"));
+			} catch (MalformedURLException e) {
+				throw new IllegalStateException("grid.url is not a valid URL: " + e.getMessage(), e);
+			}
+		} else {
+			throw new IllegalStateException("Unknown grid.mode: " + config.gridMode() + " (expected off, local or remote)");
+		}
+		WebDriver driver = new RemoteWebDriver(
+				new HttpCommandExecutor(Collections.emptyMap(), clientConfig().baseUrl(url), HTTP_FACTORY),
+				options(browserName));
+		// adds HasDevTools when the grid reports a CDP endpoint
+		return new Augmenter().augment(driver);
+	}
+
+	Capabilities options(String browserName) {
+		if ("chrome".equalsIgnoreCase(browserName)) {
+			return chromeOptions();
+		}
+		if ("firefox".equalsIgnoreCase(browserName)) {
+			return firefoxOptions();
+		}
+		throw new IllegalStateException("Only chrome and firefox can run on a grid, not " + browserName);
+	}
+
+	/**
+	 * Creates a driver service for a browser, for hosts that start sessions themselves such
+	 * as the {@link LocalGrid} nodes.
+	 *
+	 * @param browserName chrome or firefox
+	 * @return the service, not yet started
+	 */
+	DriverService service(String browserName) {
+		return service(browserName.toLowerCase(Locale.ROOT), options(browserName));
+	}
+
+	/**
+	 * Gives a window opened after the launch the size of the first one: maximized, or the
+	 * configured viewport in the headless profiles.
+	 *
+	 * @param driver the session, switched to the new window
+	 */
+	void sizeWindow(WebDriver driver) {
+		if (viewport == null || !headless) {
+			driver.manage().window().maximize();
+		} else {
+			driver.manage().window().setSize(viewport);
+		}
+	}
+
+	ChromeOptions chromeOptions() {
+		ChromeOptions options = new ChromeOptions();
+		if (FrameworkConfig.get().poolContexts() > 1) {
+			// SessionMultiplexer opens its contexts over BiDi and drives them from background windows
+			options.setCapability("webSocketUrl", true);
+			options.addArguments("--disable-background-timer-throttling", "--disable-backgrounding-occluded-windows",
+					"--disable-renderer-backgrounding");
+		}
+		if (headless) {
+			options.addArguments("--headless=new");
+		}
+		if (viewport != null && headless) {
+			options.addArguments("--window-size=" + viewport.getWidth() + "," + viewport.getHeight());
+		}
+		if (headless || lean) {
+			options.addArguments("--disable-extensions");
+		}
+		if (lean) {
+			options.addArguments("--blink-settings=imagesEnabled=false", "--disable-remote-fonts",
+					"--disable-dev-shm-usage");
+		}
+		if (eager) {
+			options.setPageLoadStrategy(PageLoadStrategy.EAGER);
+		}
+		// a remote grid has browsers of its own
+		String binary = "remote".equals(FrameworkConfig.get().gridMode()) ? null : binaries("chrome", options).browserPath;
+		if (binary != null) {
+			options.setBinary(binary);
+		}
+		return options;
+	}
+
+	FirefoxOptions firefoxOptions() {
+		FirefoxOptions options = new FirefoxOptions();
+		if (FrameworkConfig.get().poolContexts() > 1) {
+			options.setCapability("webSocketUrl", true);
+		}
+		if (headless) {
+			options.addArguments("-headless");
+		}
+		if (viewport != null && headless) {
+			options.addArguments("--width=" + viewport.getWidth(), "--height=" + viewport.getHeight());
+		}
+		if (lean) {
+			options.addPreference("permissions.default.image", 2);
+			options.addPreference("browser.display.use_document_fonts", 0);
+		}
+		if (eager) {
+			options.setPageLoadStrategy(PageLoadStrategy.EAGER);
+		}
+		// a remote grid has browsers of its own
+		String binary = "remote".equals(FrameworkConfig.get().gridMode()) ? null : binaries("firefox", options).browserPath;
+		if (binary != null) {
+			options.setBinary(binary);
+		}
+		return options;
+	}
+
+	/**
+	 * Returns the HTTP client settings for WebDriver commands.
+	 *
+	 * @return the client configuration
+	 */
+	public static ClientConfig clientConfig() {
+		FrameworkConfig config = FrameworkConfig.get();
+		return ClientConfig.defaultConfig()
+				.connectionTimeout(config.httpConnectTimeout())
+				.readTimeout(config.httpReadTimeout());
+	}
+
+	// a service with an explicit executable keeps the driver constructor from running Selenium Manager again
+	private static DriverService service(String browser, Capabilities options) {
+		File executable = new File(binaries(browser, options).driverPath);
+		if ("chrome".equals(browser)) {
+			return new ChromeDriverService.Builder().usingDriverExecutable(executable).build();
+		}
+		return new GeckoDriverService.Builder().usingDriverExecutable(executable).build();
+	}
+
+	private static Binaries binaries(String browser, Capabilities options) {
+		Binaries binaries = BINARIES.get(browser);
+		if (binaries == null) {
+			binaries = BINARIES.computeIfAbsent(browser, b -> resolve(b, options));
+		}
+		return binaries;
+	}
+
+	private static Binaries resolve(String browser, Capabilities options) {
+		FrameworkConfig config = FrameworkConfig.get();
+		String driverPath = config.browserDriverPath();
+		String browserPath = config.browserBinaryPath();
+		if (driverPath != null) {
+			return new Binaries(driverPath, browserPath);
+		}
+		long start = System.nanoTime();
+		DriverService service = "chrome".equals(browser) ? ChromeDriverService.createDefaultService()
+				: GeckoDriverService.createDefaultService();
+		DriverFinder finder = new DriverFinder(service, options);
+		driverPath = finder.getDriverPath();
+		if (browserPath == null && finder.hasBrowserPath()) {
+			browserPath = finder.getBrowserPath();
+		}
+		LOG.info("Resolved {} driver {} in {} ms; reusing it for later launches", browser, driverPath,
+				(System.nanoTime() - start) / 1_000_000);
+		return new Binaries(driverPath, browserPath);
+	}
+
+	// resident memory of the driver started on the service's port and every process below it
+	// (browser, renderers, GPU and utility processes); only Linux exposes this through /proc
+	private static String footprint(DriverService service) {
+		Path proc = Paths.get("/proc");
+		if (service == null || !Files.isDirectory(proc)) {
+			return "";
+		}
+		try {
+			String portFlag = "--port=" + service.getUrl().getPort();
+			Map<Long, List<Long>> children = new HashMap<>();
+			Long root = null;
+			try (DirectoryStream<Path> processes = Files.newDirectoryStream(proc, "[0-9]*")) {
+				for (Path process : processes) {
+					long pid = Long.parseLong(process.getFileName().toString());
+					try {
+						children.computeIfAbsent(parentPid(process), parent -> new ArrayList<>()).add(pid);
+						if (root == null && commandLine(process).contains(portFlag)) {
+							root = pid;
+						}
+					} catch (IOException | RuntimeException e) {
+						// the process exited while the table was read
+					}
+				}
+			}
+			if (root == null) {
+				return "";
+			}
+			long residentKb = 0;
+			int count = 0;
+			Deque<Long> tree = new ArrayDeque<>();
+			tree.push(root);
+			while (!tree.isEmpty()) {
+				long pid = tree.pop();
+				residentKb += residentKb(proc.resolve(String.valueOf(pid)));
+				count++;
+				tree.addAll(children.getOrDefault(pid, Collections.<Long>emptyList()));
+			}
+			return String.format(Locale.ROOT, ", %d process(es) using %.1f MB resident", count, residentKb / 1024.0);
+		} catch (IOException | RuntimeException e) {
+			// the footprint is informational only
+			return "";
+		}
+	}
+
+	// /proc/<pid>/stat is "pid (comm) state ppid ..."; comm may itself contain spaces and parentheses
+	private static long parentPid(Path process) throws IOException {
+		String stat = new String(Files.readAllBytes(process.resolve("stat")), StandardCharsets.UTF_8);
+		return Long.parseLong(stat.substring(stat.lastIndexOf(')') + 2).split(" ")[1]);
+	}
+
+	private static List<String> commandLine(Path process) throws IOException {
+		String cmdline = new String(Files.readAllBytes(process.resolve("cmdline")), StandardCharsets.UTF_8);
+		return Arrays.asList(cmdline.split("\0"));
+	}
+
+	private static long residentKb(Path process) {
+		try {
+			for (String line : Files.readAllLines(process.resolve("status"), StandardCharsets.UTF_8)) {
+				if (line.startsWith("VmRSS:")) {
+					return Long.parseLong(line.substring(6).trim().split("\\s+")[0]);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// exited, or a kernel thread without memory of its own
+		}
+		return 0;
+	}
+
+	private static Dimension parseViewport(String value) {
+		String[] parts = value.toLowerCase(Locale.ROOT).split("x");
+		if (parts.length != 2) {
+			throw new IllegalStateException("browser.viewport must look like 1920x1080: " + value);
+		}
+		return new Dimension(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+	}
+
+	private static final class Binaries {
+
+		final String driverPath;
+		final String browserPath;
+
+		Binaries(String driverPath, String browserPath) {
+			this.driverPath = driverPath;
+			this.browserPath = browserPath;
+		}
+	}
+}
@@ -0,0 +1,625 @@
+package com.qa.base;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.remote.service.DriverService;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.qa.config.FrameworkConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small Selenium Grid stand-in that runs inside the test JVM, selected with
+ * {@code grid.mode=local}.
+ * <p>
+ * It starts {@code grid.nodes} local driver services (chromedriver or geckodriver), each
+ * allowed {@code grid.node.sessions} concurrent browsers, and listens on the loopback
+ * interface ({@code grid.port}, 0 for any free port). {@link LaunchProfile} then opens
+ * every session as a {@code RemoteWebDriver} against it.
+ * </p>
+ * <ul>
+ * <li>New session requests wait in a first-come, first-served queue until a node has a
+ * free slot, for at most {@code grid.queue.timeout.seconds}.</li>
+ * <li>A request goes to the node with the lowest share of busy slots, ties broken by the
+ * fewest sessions served.</li>
+ * <li>Every later command of a session is forwarded to the node that created it, so a
+ * test keeps its browser for its whole lifetime; deleting the session frees the slot.</li>
+ * <li>A session without a command for {@code grid.session.timeout.seconds} is deleted on
+ * its node and its slot freed, so a client that never quits (a killed test JVM, a lost
+ * {@code quit()}) cannot hold a slot for the rest of the run.</li>
+ * <li>With {@code grid.node.headless} (the default) the browsers run headless whatever
+ * the launch profile says.</li>
+ * <li>Chrome sessions are returned with {@code se:cdp}, so DevTools features such as
+ * {@link NetworkControl} keep working over the grid.</li>
+ * </ul>
+ * <p>
+ * {@code GET /status} reports the nodes and the queue, and {@link #writeReport(Path)} saves
+ * the queue wait times and each node's utilisation (busy slot time over available slot
+ * time). A growing queue wait means the run is capacity-bound and needs more nodes.
+ * </p>
+ */
+public final class LocalGrid {
+
+	private static final Logger LOG = LogManager.getLogger(LocalGrid.class);
+
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+	private static final String JSON = "application/json; charset=utf-8";
+	private static final Pattern SESSION_ID = Pattern.compile("\"sessionId\"\\s*:\\s*\"([^\"]+)\"");
+
+	private static LocalGrid instance;
+
+	private final String browserName;
+	private final List<Node> nodes = new ArrayList<>();
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private final Deque<Object> queue = new ArrayDeque<>();
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	private final LongAdder queueTimeouts = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+	private final long startNanos = System.nanoTime();
+	private final HttpClient client;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final ScheduledExecutorService reaper;
+	private int maxQueue;
+
+	private LocalGrid(String browserName, List<DriverService> services) throws IOException {
+		this.browserName = browserName;
+		FrameworkConfig config = FrameworkConfig.get();
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(config.httpConnectTimeout()).build();
+		for (DriverService service : services) {
+			nodes.add(new Node("node-" + (nodes.size() + 1), service, config.gridNodeSessions()));
+		}
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "local-grid-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), config.gridPort()), 0);
+		server.createContext("/", this::handle);
+		server.setExecutor(executor);
+		server.start();
+		long period = Math.max(1, config.gridSessionTimeout().getSeconds() / 4);
+		this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "local-grid-reaper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		reaper.scheduleWithFixedDelay(this::expireIdleSessions, period, period, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Returns the running grid, starting it with its nodes on first use.
+	 *
+	 * @param browserName chrome or firefox
+	 * @return the grid
+	 * @throws IllegalStateException if the grid cannot start or already serves another browser
+	 */
+	public static synchronized LocalGrid get(String browserName) {
+		if (instance == null) {
+			List<DriverService> services = new ArrayList<>();
+			try {
+				for (int i = 0; i < FrameworkConfig.get().gridNodes(); i++) {
+					DriverService service = LaunchProfile.active().service(browserName);
+					services.add(service);
+					service.start();
+				}
+				instance = new LocalGrid(browserName.toLowerCase(Locale.ROOT), services);
+			} catch (IOException e) {
+				services.forEach(DriverService::stop);
+				throw new IllegalStateException("Could not start the local grid: " + e.getMessage(), e);
+			}
+			Runtime.getRuntime().addShutdownHook(new Thread(instance::stop, "local-grid-shutdown"));
+			LOG.info("Local grid listening on {} with {} {} node(s) of {} session(s) each", instance.url(),
+					instance.nodes.size(), instance.browserName, FrameworkConfig.get().gridNodeSessions());
+		} else if (!instance.browserName.equalsIgnoreCase(browserName)) {
+			throw new IllegalStateException("The local grid serves " + instance.browserName + ", not " + browserName);
+		}
+		return instance;
+	}
+
+	/**
+	 * @return the grid started in this JVM, or null if none was
+	 */
+	public static synchronized LocalGrid running() {
+		return instance;
+	}
+
+	public URL url() {
+		try {
+			return new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String path = exchange.getRequestURI().getRawPath();
+			String method = exchange.getRequestMethod();
+			byte[] body = read(exchange.getRequestBody());
+			Reply reply;
+			if (path.equals("/status")) {
+				JsonObject value = report();
+				value.addProperty("ready", true);
+				value.addProperty("message", "Local grid ready");
+				reply = new Reply(200, wrap(value));
+			} else if (path.equals("/session") && method.equals("POST")) {
+				reply = newSession(body);
+			} else if (path.startsWith("/session/")) {
+				String id = path.substring("/session/".length()).split("/", 2)[0];
+				Session session = sessions.get(id);
+				if (session == null) {
+					reply = error(404, "invalid session id", "No session " + id + " on the local grid");
+				} else {
+					String query = exchange.getRequestURI().getRawQuery();
+					session.begin();
+					try {
+						reply = forward(session.node, method, path + (query == null ? "" : "?" + query), body);
+					} finally {
+						session.end();
+					}
+					if (method.equals("DELETE") && path.equals("/session/" + id) && sessions.remove(id, session)) {
+						release(session.node);
+					}
+				}
+			} else {
+				reply = error(404, "unknown command", method + " " + path + " is not supported by the local grid");
+			}
+			respond(exchange, reply);
+		} catch (Exception e) {
+			respond(exchange, error(500, "unknown error", "Local grid failed: " + e));
+		}
+	}
+
+	private Reply newSession(byte[] body) throws IOException, InterruptedException {
+		FrameworkConfig config = FrameworkConfig.get();
+		long queued = System.nanoTime();
+		Node node = acquire(queued + config.gridQueueTimeout().toNanos());
+		long waited = System.nanoTime() - queued;
+		if (node == null) {
+			queueTimeouts.increment();
+			queueWait.record(waited, true);
+			return error(500, "session not created", "No local grid node became free within "
+					+ config.gridQueueTimeout().getSeconds() + " s");
+		}
+		queueWait.record(waited, false);
+		boolean created = false;
+		try {
+			JsonObject payload = JsonParser.parseString(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+			if (config.gridNodeHeadless()) {
+				headless(payload);
+			}
+			Reply reply = forward(node, "POST", "/session", GSON.toJson(payload).getBytes(StandardCharsets.UTF_8));
+			if (reply.status != 200) {
+				return reply;
+			}
+			try {
+				JsonObject response = JsonParser.parseString(new String(reply.body, StandardCharsets.UTF_8)).getAsJsonObject();
+				JsonObject value = response.getAsJsonObject("value");
+				String id = value.get("sessionId").getAsString();
+				addCdpEndpoint(value.getAsJsonObject("capabilities"));
+				byte[] out = GSON.toJson(response).getBytes(StandardCharsets.UTF_8);
+				sessions.put(id, new Session(node));
+				created = true;
+				synchronized (this) {
+					node.served++;
+				}
+				return new Reply(200, out);
+			} catch (RuntimeException e) {
+				// the node started a browser the client will never hear of
+				deleteOnNode(node, reply.body);
+				throw e;
+			}
+		} finally {
+			if (!created) {
+				release(node);
+			}
+		}
+	}
+
+	private void deleteOnNode(Node node, byte[] created) {
+		Matcher id = SESSION_ID.matcher(new String(created, StandardCharsets.UTF_8));
+		if (!id.find()) {
+			LOG.warn("Local grid could not read the session {} created; its browser stays open until the node stops",
+					node.name);
+			return;
+		}
+		try {
+			forward(node, "DELETE", "/session/" + id.group(1), new byte[0]);
+		} catch (IOException e) {
+			LOG.warn("Local grid could not delete session {} on {}: {}", id.group(1), node.name, e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// deletes the sessions nobody has sent a command within grid.session.timeout.seconds
+	private void expireIdleSessions() {
+		long timeout = FrameworkConfig.get().gridSessionTimeout().toNanos();
+		long now = System.nanoTime();
+		for (Map.Entry<String, Session> entry : sessions.entrySet()) {
+			Session session = entry.getValue();
+			if (!session.idleFor(now, timeout) || !sessions.remove(entry.getKey(), session)) {
+				continue;
+			}
+			LOG.warn("Local grid deleting session {} on {}: no command for {} s", entry.getKey(), session.node.name,
+					TimeUnit.NANOSECONDS.toSeconds(timeout));
+			expired.increment();
+			try {
+				forward(session.node, "DELETE", "/session/" + entry.getKey(), new byte[0]);
+			} catch (IOException e) {
+				LOG.warn("Local grid could not delete session {}: {}", entry.getKey(), e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				release(session.node);
+			}
+		}
+	}
+
+	// first come, first served: only the head of the queue may take a free slot
+	private synchronized Node acquire(long deadline) throws InterruptedException {
+		Object ticket = new Object();
+		queue.addLast(ticket);
+		maxQueue = Math.max(maxQueue, queue.size());
+		try {
+			while (true) {
+				if (queue.peekFirst() == ticket) {
+					Node node = leastLoaded();
+					if (node != null) {
+						node.take();
+						return node;
+					}
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return null;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+		} finally {
+			queue.remove(ticket);
+			notifyAll();
+		}
+	}
+
+	private synchronized void release(Node node) {
+		node.free();
+		notifyAll();
+	}
+
+	private Node leastLoaded() {
+		Node best = null;
+		for (Node node : nodes) {
+			if (node.active >= node.capacity) {
+				continue;
+			}
+			if (best == null || node.active * best.capacity < best.active * node.capacity
+					|| node.active * best.capacity == best.active * node.capacity && node.served < best.served) {
+				best = node;
+			}
+		}
+		return best;
+	}
+
+	private Reply forward(Node node, String method, String pathAndQuery, byte[] body)
+			throws IOException, InterruptedException {
+		HttpRequest.BodyPublisher publisher = body.length == 0 ? HttpRequest.BodyPublishers.noBody()
+				: HttpRequest.BodyPublishers.ofByteArray(body);
+		HttpRequest request = HttpRequest.newBuilder(URI.create(node.url + pathAndQuery))
+				.timeout(FrameworkConfig.get().httpReadTimeout())
+				.header("Content-Type", JSON)
+				.method(method, publisher)
+				.build();
+		HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+		return new Reply(response.statusCode(), response.body());
+	}
+
+	private void headless(JsonObject payload) {
+		String key = browserName.equals("chrome") ? "goog:chromeOptions" : "moz:firefoxOptions";
+		String flag = browserName.equals("chrome") ? "--headless=new" : "-headless";
+		JsonObject capabilities = payload.getAsJsonObject("capabilities");
+		if (capabilities == null) {
+			return;
+		}
+		// W3C forbids a key in both alwaysMatch and firstMatch, so add the flag where the options already are
+		boolean found = false;
+		List<JsonObject> candidates = new ArrayList<>();
+		if (capabilities.has("alwaysMatch")) {
+			candidates.add(capabilities.getAsJsonObject("alwaysMatch"));
+		}
+		if (capabilities.has("firstMatch")) {
+			for (JsonElement match : capabilities.getAsJsonArray("firstMatch")) {
+				candidates.add(match.getAsJsonObject());
+			}
+		}
+		for (JsonObject candidate : candidates) {
+			if (candidate.has(key)) {
+				addFlag(candidate.getAsJsonObject(key), flag);
+				found = true;
+			}
+		}
+		if (!found) {
+			if (!capabilities.has("alwaysMatch")) {
+				capabilities.add("alwaysMatch", new JsonObject());
+			}
+			JsonObject options = new JsonObject();
+			addFlag(options, flag);
+			capabilities.getAsJsonObject("alwaysMatch").add(key, options);
+		}
+	}
+
+	private static void addFlag(JsonObject options, String flag) {
+		if (!options.has("args")) {
+			options.add("args", new JsonArray());
+		}
+		JsonArray args = options.getAsJsonArray("args");
+		for (JsonElement arg : args) {
+			if (arg.getAsString().startsWith("--headless") || arg.getAsString().equals("-headless")) {
+				return;
+			}
+		}
+		args.add(flag);
+	}
+
+	// chromedriver only reports the debugger address; Selenium's Augmenter needs the browser's websocket
+	private void addCdpEndpoint(JsonObject capabilities) {
+		JsonObject chrome = capabilities == null ? null : capabilities.getAsJsonObject("goog:chromeOptions");
+		if (chrome == null || !chrome.has("debuggerAddress") || capabilities.has("se:cdp")) {
+			return;
+		}
+		try {
+			HttpRequest request = HttpRequest.newBuilder(
+					URI.create("http://" + chrome.get("debuggerAddress").getAsString() + "/json/version"))
+					.timeout(Duration.ofSeconds(10)).build();
+			JsonObject version = JsonParser.parseString(client.send(request, HttpResponse.BodyHandlers.ofString()).body())
+					.getAsJsonObject();
+			capabilities.addProperty("se:cdp", version.get("webSocketDebuggerUrl").getAsString());
+			String browser = version.get("Browser").getAsString();
+			capabilities.addProperty("se:cdpVersion", browser.substring(browser.indexOf('/') + 1));
+		} catch (IOException | RuntimeException e) {
+			LOG.warn("Local grid could not find the DevTools endpoint of a session: {}", e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the queue and node figures reported by {@code /status}.
+	 *
+	 * @return the figures as JSON
+	 */
+	public synchronized JsonObject report() {
+		long now = System.nanoTime();
+		JsonObject json = new JsonObject();
+		JsonObject wait = new JsonObject();
+		wait.addProperty("requests", queueWait.count());
+		wait.addProperty("timeouts", queueTimeouts.sum());
+		wait.addProperty("waiting", queue.size());
+		wait.addProperty("maxWaiting", maxQueue);
+		wait.addProperty("meanMs", round(queueWait.meanMillis()));
+		wait.addProperty("p50Ms", round(queueWait.percentileMillis(50)));
+		wait.addProperty("p95Ms", round(queueWait.percentileMillis(95)));
+		wait.addProperty("maxMs", round(queueWait.maxMillis()));
+		json.add("queue", wait);
+		json.addProperty("expiredSessions", expired.sum());
+		JsonArray nodeList = new JsonArray();
+		for (Node node : nodes) {
+			JsonObject entry = new JsonObject();
+			entry.addProperty("name", node.name);
+			entry.addProperty("url", node.url);
+			entry.addProperty("capacity", node.capacity);
+			entry.addProperty("active", node.active);
+			entry.addProperty("served", node.served);
+			entry.addProperty("utilisation", round(node.utilisation(now, startNanos)));
+			nodeList.add(entry);
+		}
+		json.add("nodes", nodeList);
+		return json;
+	}
+
+	/**
+	 * Writes {@link #report()} to a file and prints a one-line summary.
+	 *
+	 * @param file the JSON file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeReport(Path file) throws IOException {
+		JsonObject report = report();
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			GSON.toJson(report, out);
+		}
+		JsonObject wait = report.getAsJsonObject("queue");
+		StringBuilder summary = new StringBuilder("Local grid: " + wait.get("requests") + " session request(s), queue wait p95 "
+				+ wait.get("p95Ms") + " ms, max " + wait.get("maxMs") + " ms, " + wait.get("timeouts") + " timed out, "
+				+ report.get("expiredSessions") + " idle session(s) expired; utilisation");
+		for (JsonElement node : report.getAsJsonArray("nodes")) {
+			summary.append(' ').append(node.getAsJsonObject().get("name").getAsString()).append('=')
+					.append(Math.round(node.getAsJsonObject().get("utilisation").getAsDouble() * 100)).append('%');
+		}
+		LOG.info("{}", summary);
+	}
+
+	private void stop() {
+		// the driver pool quits its sessions through the grid in its own shutdown hook
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!sessions.isEmpty() && System.nanoTime() < deadline) {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		reaper.shutdownNow();
+		for (Map.Entry<String, Session> session : sessions.entrySet()) {
+			try {
+				forward(session.getValue().node, "DELETE", "/session/" + session.getKey(), new byte[0]);
+			} catch (IOException | InterruptedException e) {
+				// the node is stopped next, which ends its browsers as well
+			}
+		}
+		server.stop(0);
+		for (Node node : nodes) {
+			node.service.stop();
+		}
+		executor.shutdownNow();
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static void respond(HttpExchange exchange, Reply reply) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		exchange.sendResponseHeaders(reply.status, reply.body.length == 0 ? -1 : reply.body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(reply.body);
+		}
+	}
+
+	private static Reply error(int status, String error, String message) {
+		JsonObject value = new JsonObject();
+		value.addProperty("error", error);
+		value.addProperty("message", message);
+		value.addProperty("stacktrace", "");
+		return new Reply(status, wrap(value));
+	}
+
+	private static byte[] wrap(JsonObject value) {
+		JsonObject json = new JsonObject();
+		json.add("value", value);
+		return GSON.toJson(json).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static double round(double value) {
+		return Math.round(value * 100) / 100.0;
+	}
+
+	private static final class Reply {
+		final int status;
+		final byte[] body;
+
+		Reply(int status, byte[] body) {
+			this.status = status;
+			this.body = body;
+		}
+	}
+
+	// a session created through the grid and when its last command ended
+	private static final class Session {
+		final Node node;
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private volatile long lastUsed = System.nanoTime();
+
+		Session(Node node) {
+			this.node = node;
+		}
+
+		void begin() {
+			inFlight.incrementAndGet();
+			lastUsed = System.nanoTime();
+		}
+
+		void end() {
+			lastUsed = System.nanoTime();
+			inFlight.decrementAndGet();
+		}
+
+		boolean idleFor(long now, long nanos) {
+			return inFlight.get() == 0 && now - lastUsed > nanos;
+		}
+	}
+
+	// one local driver service; its counters are guarded by the grid's monitor
+	private static final class Node {
+		final String name;
+		final DriverService service;
+		final String url;
+		final int capacity;
+		int active;
+		long served;
+		private long busySlotNanos;
+		private long lastChange = System.nanoTime();
+
+		Node(String name, DriverService service, int capacity) {
+			this.name = name;
+			this.service = service;
+			this.url = service.getUrl().toString().replaceAll("/$", "");
+			this.capacity = capacity;
+		}
+
+		void take() {
+			account();
+			active++;
+		}
+
+		void free() {
+			account();
+			active--;
+		}
+
+		double utilisation(long now, long since) {
+			long elapsed = now - since;
+			long busy = busySlotNanos + active * (now - lastChange);
+			return elapsed <= 0 ? 0 : (double) busy / ((double) elapsed * capacity);
+		}
+
+		private void account() {
+			long now = System.nanoTime();
+			busySlotNanos += active * (now - lastChange);
+			lastChange = now;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Writes the {@link LocalGrid} queue and node figures to {@code target/metrics/grid.json}
+ * when the suite finishes, if the grid ran. Register it in testng.xml under
+ * {@code <listeners>}.
+ */
+public class LocalGridListener implements ISuiteListener {
+
+	private static final Logger LOG = LogManager.getLogger(LocalGridListener.class);
+
+	@Override
+	public void onFinish(ISuite suite) {
+		LocalGrid grid = LocalGrid.running();
+		if (grid == null) {
+			return;
+		}
+		Path file = FrameworkConfig.get().metricsDir().resolve("grid.json");
+		try {
+			grid.writeReport(file);
+		} catch (IOException e) {
+			LOG.error("Could not write the local grid report to {}: {}", file, e.getMessage());
+		}
+	}
+}
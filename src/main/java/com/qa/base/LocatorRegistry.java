@@ -0,0 +1,452 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Health index of every {@link By} locator the tests resolve.
+ * <p>
+ * The {@link #listener()} that {@link DriverManager} attaches to every session reports each
+ * {@code findElement}/{@code findElements} call here with its latency and number of
+ * matches. {@link BatchQuery} and {@link PageSnapshot} resolve their locators inside a
+ * script and report them through {@link #recordScript(WebDriver, By, List, long)}. Misses
+ * (no such element, empty lists) and stale element errors on elements a locator returned
+ * are counted per locator; inside a {@link WaitEngine} wait, failed polls count as one
+ * miss, and only if the wait gives up. At the end of the suite
+ * {@link LocatorRegistryListener} merges the run into the index file ({@code locator.index})
+ * through {@link #writeIndex(Path)}, so the numbers accumulate across runs.
+ * {@code locator.enabled=false} turns the tracking off.
+ * </p>
+ * <p>
+ * Locators are flagged as {@code slow} (p95 above {@code locator.slow.ms}), {@code xpath}
+ * (positional or class-matching XPath), {@code broad} (CSS made of classes and tags only
+ * that matches more elements than the test uses) or {@code stale}. The first time a
+ * suspicious locator matches in a run, the matched elements are inspected in the page and
+ * cheaper unique selectors built from ids, data attributes and other stable attributes are
+ * stored as suggestions. {@code locator.suggest=false} turns the inspection off.
+ * </p>
+ */
+public final class LocatorRegistry {
+
+	private static final Logger LOG = LogManager.getLogger(LocatorRegistry.class);
+
+	private static final LocatorRegistry INSTANCE = new LocatorRegistry();
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+	// weight of this run's p95 when blending with the stored one
+	private static final double NEW_RUN_WEIGHT = 0.5;
+	private static final Pattern GENERIC_CSS = Pattern.compile("[\\w-]*(\\.[\\w-]+)*(\\s+[\\w-]*(\\.[\\w-]+)*)*");
+	private static final Pattern FRAGILE_XPATH = Pattern.compile("contains\\(\\s*@class|\\)\\s*\\[\\d+\\]|\\[\\d+\\]$");
+
+	// returns how many elements the locator matches in the document (or scope) and selectors
+	// built from stable attributes that match exactly the same elements
+	private static final String PROBE = "var kind = arguments[0], value = arguments[1], found = arguments[2];"
+			+ "var scope = arguments[3] || document;"
+			+ "function all(sel) { try { return scope.querySelectorAll(sel); } catch (e) { return null; } }"
+			+ "function same(list) { if (!list || list.length !== found.length) return false;"
+			+ "  for (var i = 0; i < found.length; i++) { if (Array.prototype.indexOf.call(list, found[i]) < 0) return false; }"
+			+ "  return true; }"
+			+ "var count = -1;"
+			+ "if (kind === 'xpath') { try { count = document.evaluate(value, scope, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null).snapshotLength; } catch (e) {} }"
+			+ "else if (kind === 'cssSelector') { var m = all(value); count = m ? m.length : -1; }"
+			+ "var first = found[0], tag = first.tagName.toLowerCase(), tried = [];"
+			+ "if (found.length === 1 && first.id && !/\\d{3,}|[0-9a-f]{8,}/i.test(first.id)) { tried.push('#' + CSS.escape(first.id)); }"
+			+ "var stable = ['name', 'aria-label', 'placeholder', 'formcontrolname', 'routerlink', 'role', 'title', 'type'];"
+			+ "for (var a = 0; a < first.attributes.length; a++) {"
+			+ "  var attr = first.attributes[a];"
+			+ "  if (attr.name.indexOf('data-') !== 0 && stable.indexOf(attr.name) < 0) continue;"
+			+ "  var selector = tag + '[' + attr.name + '=\"' + attr.value.replace(/\\\\/g, '\\\\\\\\').replace(/\"/g, '\\\\\"') + '\"]';"
+			+ "  if (attr.name.indexOf('data-') === 0) { tried.unshift(selector); } else { tried.push(selector); } }"
+			+ "for (var c = 0; c < first.classList.length; c++) { tried.push(tag + '.' + CSS.escape(first.classList[c])); }"
+			+ "var out = [];"
+			+ "for (var t = 0; t < tried.length && out.length < 3; t++) {"
+			+ "  if (tried[t] !== value && out.indexOf(tried[t]) < 0 && same(all(tried[t]))) out.push(tried[t]); }"
+			+ "return { count: count, candidates: out };";
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private final Map<WebElement, Entry> origins = Collections.synchronizedMap(new WeakHashMap<>());
+	private final Finds finds = new Finds();
+	// locators that missed during the waits running on this thread, innermost first
+	private final ThreadLocal<Deque<Set<Entry>>> waits = ThreadLocal.withInitial(ArrayDeque::new);
+
+	private LocatorRegistry() {
+	}
+
+	public static LocatorRegistry get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Adds the locator tracking to a driver that is being decorated; see
+	 * {@link DriverManager#createDriver(String)}.
+	 *
+	 * @return the listener, or null when {@code locator.enabled=false}
+	 */
+	static WebDriverListener listener() {
+		return FrameworkConfig.get().locatorEnabled() ? INSTANCE.finds : null;
+	}
+
+	/**
+	 * Records a locator that a script resolved in the page instead of a
+	 * {@code findElement(s)} call.
+	 *
+	 * @param driver  the session the script ran on
+	 * @param locator the locator
+	 * @param found   the elements the script matched
+	 * @param nanos   how long the script took
+	 */
+	static void recordScript(WebDriver driver, By locator, List<WebElement> found, long nanos) {
+		if (FrameworkConfig.get().locatorEnabled()) {
+			INSTANCE.recordFind(driver, locator, found, nanos, null, CommandOrigin.current()[0]);
+		}
+	}
+
+	/**
+	 * Starts deferring misses on this thread until the matching {@link #endWait(boolean)}.
+	 */
+	static void startWait() {
+		INSTANCE.waits.get().push(ConcurrentHashMap.newKeySet());
+	}
+
+	/**
+	 * Ends the innermost wait on this thread; its locators that missed count one miss each
+	 * if the wait gave up.
+	 *
+	 * @param gaveUp whether the wait timed out
+	 */
+	static void endWait(boolean gaveUp) {
+		Deque<Set<Entry>> open = INSTANCE.waits.get();
+		Set<Entry> missed = open.poll();
+		if (open.isEmpty()) {
+			INSTANCE.waits.remove();
+		}
+		if (gaveUp && missed != null) {
+			for (Entry entry : missed) {
+				entry.misses.increment();
+			}
+		}
+	}
+
+	/**
+	 * Records one locator resolution.
+	 *
+	 * @param target  the driver or element the locator was resolved on
+	 * @param locator the locator
+	 * @param result  the element or list of elements found, or null if the call threw
+	 * @param nanos   how long the call took
+	 * @param error   the exception the call threw, or null
+	 * @param page    the page class that issued the call
+	 */
+	void recordFind(Object target, By locator, Object result, long nanos, Throwable error, String page) {
+		Entry entry = entries.computeIfAbsent(locator.toString(), Entry::new);
+		entry.histogram.record(nanos, error != null);
+		entry.pages.add(page);
+		List<WebElement> found = new ArrayList<>();
+		if (result instanceof WebElement) {
+			found.add((WebElement) result);
+		} else if (result instanceof List) {
+			for (Object element : (List<?>) result) {
+				if (element instanceof WebElement) {
+					found.add((WebElement) element);
+				}
+			}
+		}
+		if (found.isEmpty() || error instanceof NoSuchElementException) {
+			Set<Entry> missed = waits.get().peek();
+			if (missed == null) {
+				entry.misses.increment();
+			} else {
+				missed.add(entry);
+			}
+			return;
+		}
+		entry.hits.increment();
+		entry.matches.add(found.size());
+		for (WebElement element : found) {
+			origins.put(element, entry);
+		}
+		boolean slow = nanos > FrameworkConfig.get().locatorSlow().toNanos();
+		if ((slow || entry.suspicious()) && !entry.probed && FrameworkConfig.get().locatorSuggest()) {
+			entry.probed = true;
+			probe(target, entry, found);
+		}
+	}
+
+	/**
+	 * Counts a stale element error against the locator that returned the element.
+	 *
+	 * @param element the element the failed call was made on
+	 * @param error   the exception the call threw
+	 */
+	void recordError(Object element, Throwable error) {
+		if (error instanceof StaleElementReferenceException && element instanceof WebElement) {
+			Entry entry = origins.get(element);
+			if (entry != null) {
+				entry.stale.increment();
+			}
+		}
+	}
+
+	private static void probe(Object target, Entry entry, List<WebElement> found) {
+		Object driver = target instanceof WrapsDriver ? ((WrapsDriver) target).getWrappedDriver() : target;
+		if (!(driver instanceof JavascriptExecutor)) {
+			return;
+		}
+		try {
+			Object scope = target instanceof WebElement ? target : null;
+			Object result = ((JavascriptExecutor) driver).executeScript(PROBE, entry.kind, entry.value, found, scope);
+			if (result instanceof Map) {
+				Object count = ((Map<?, ?>) result).get("count");
+				if (count instanceof Number) {
+					entry.domMatches = ((Number) count).intValue();
+				}
+				Object candidates = ((Map<?, ?>) result).get("candidates");
+				if (candidates instanceof List) {
+					for (Object candidate : (List<?>) candidates) {
+						entry.suggestions.add(String.valueOf(candidate));
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			// suggestions are best effort; the page may have navigated away
+		}
+	}
+
+	/**
+	 * Merges the lookups recorded since the last call into the index file, prints the flagged
+	 * locators and starts a new run. Several JVMs
+	 * (for example shards) may write the same file; the merge holds a lock on
+	 * {@code <index>.lock}.
+	 *
+	 * @param file the index file
+	 * @throws IOException if the index cannot be read or written
+	 */
+	public void writeIndex(Path file) throws IOException {
+		if (entries.isEmpty()) {
+			return;
+		}
+		Path absolute = file.toAbsolutePath();
+		Files.createDirectories(absolute.getParent());
+		Path lockFile = absolute.resolveSibling(absolute.getFileName() + ".lock");
+		try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock lock = channel.lock();
+			try {
+				mergeInto(absolute);
+			} finally {
+				lock.release();
+			}
+		}
+		entries.clear();
+	}
+
+	private void mergeInto(Path absolute) throws IOException {
+		Map<String, JsonObject> index = read(absolute);
+		for (Entry entry : entries.values()) {
+			index.put(entry.locator, entry.merge(index.get(entry.locator)));
+		}
+		List<JsonObject> rows = new ArrayList<>(index.values());
+		rows.sort(Comparator.comparingDouble((JsonObject row) -> row.get("p95Ms").getAsDouble()).reversed());
+		JsonArray locators = new JsonArray();
+		rows.forEach(locators::add);
+		JsonObject json = new JsonObject();
+		json.addProperty("updated", Instant.now().toString());
+		json.add("locators", locators);
+		try (Writer out = Files.newBufferedWriter(absolute, StandardCharsets.UTF_8)) {
+			GSON.toJson(json, out);
+		}
+		for (JsonObject row : rows) {
+			if (row.getAsJsonArray("flags").size() > 0 && entries.containsKey(row.get("locator").getAsString())) {
+				LOG.warn("Locator {} flagged {}, p95 {} ms{}", row.get("locator").getAsString(), row.get("flags"),
+						row.get("p95Ms").getAsLong(),
+						row.getAsJsonArray("suggestions").size() > 0 ? "; try " + row.get("suggestions") : "");
+			}
+		}
+	}
+
+	private static Map<String, JsonObject> read(Path file) throws IOException {
+		Map<String, JsonObject> index = new TreeMap<>();
+		if (!Files.exists(file) || Files.size(file) == 0) {
+			return index;
+		}
+		try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			for (JsonElement row : JsonParser.parseReader(in).getAsJsonObject().getAsJsonArray("locators")) {
+				JsonObject object = row.getAsJsonObject();
+				index.put(object.get("locator").getAsString(), object);
+			}
+		} catch (RuntimeException e) {
+			throw new IOException("Cannot read locator index " + file + ": " + e.getMessage(), e);
+		}
+		return index;
+	}
+
+	// times the locator lookups and spots stale errors on the elements they returned
+	private final class Finds implements WebDriverListener {
+
+		private final ThreadLocal<Deque<Long>> started = ThreadLocal.withInitial(ArrayDeque::new);
+
+		@Override
+		public void beforeAnyCall(Object target, Method method, Object[] args) {
+			if (isFind(method, args)) {
+				started.get().push(System.nanoTime());
+			}
+		}
+
+		@Override
+		public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+			if (isFind(method, args)) {
+				finish(target, (By) args[0], result, null);
+			}
+		}
+
+		@Override
+		public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+			Throwable error = e.getCause() != null ? e.getCause() : e;
+			if (isFind(method, args)) {
+				finish(target, (By) args[0], null, error);
+			} else {
+				recordError(target, error);
+			}
+		}
+
+		private void finish(Object target, By locator, Object result, Throwable error) {
+			Long start = started.get().poll();
+			if (start != null) {
+				recordFind(target, locator, result, System.nanoTime() - start, error, CommandOrigin.current()[0]);
+			}
+		}
+
+		private boolean isFind(Method method, Object[] args) {
+			return args != null && args.length == 1 && args[0] instanceof By
+					&& (method.getName().equals("findElement") || method.getName().equals("findElements"));
+		}
+	}
+
+	private static final class Entry {
+
+		final String locator;
+		final String kind;
+		final String value;
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final LongAdder hits = new LongAdder();
+		final LongAdder matches = new LongAdder();
+		final LongAdder misses = new LongAdder();
+		final LongAdder stale = new LongAdder();
+		final Set<String> pages = ConcurrentHashMap.newKeySet();
+		final List<String> suggestions = Collections.synchronizedList(new ArrayList<>());
+		volatile boolean probed;
+		volatile int domMatches = -1;
+
+		// By.toString() is "By.<kind>: <value>"
+		Entry(String locator) {
+			this.locator = locator;
+			int colon = locator.indexOf(": ");
+			this.kind = colon < 0 ? locator : locator.substring(locator.startsWith("By.") ? 3 : 0, colon);
+			this.value = colon < 0 ? "" : locator.substring(colon + 2);
+		}
+
+		boolean suspicious() {
+			return ("xpath".equals(kind) && FRAGILE_XPATH.matcher(value).find())
+					|| ("cssSelector".equals(kind) && GENERIC_CSS.matcher(value.trim()).matches());
+		}
+
+		JsonObject merge(JsonObject previous) {
+			long finds = histogram.count();
+			double p95 = histogram.percentileMillis(95);
+			long matched = hits.sum();
+			JsonObject row = new JsonObject();
+			row.addProperty("locator", locator);
+			row.addProperty("kind", kind);
+			Set<String> allPages = new TreeSet<>(pages);
+			if (previous != null) {
+				previous.getAsJsonArray("pages").forEach(page -> allPages.add(page.getAsString()));
+				finds += previous.get("finds").getAsLong();
+				p95 = NEW_RUN_WEIGHT * p95 + (1 - NEW_RUN_WEIGHT) * previous.get("p95Ms").getAsDouble();
+			}
+			JsonArray pageArray = new JsonArray();
+			allPages.forEach(pageArray::add);
+			row.add("pages", pageArray);
+			row.addProperty("runs", 1 + (previous == null ? 0 : previous.get("runs").getAsLong()));
+			row.addProperty("finds", finds);
+			row.addProperty("misses", misses.sum() + (previous == null ? 0 : previous.get("misses").getAsLong()));
+			row.addProperty("stale", stale.sum() + (previous == null ? 0 : previous.get("stale").getAsLong()));
+			row.addProperty("totalMs", Math.round(histogram.sumMillis())
+					+ (previous == null ? 0 : previous.get("totalMs").getAsLong()));
+			row.addProperty("p95Ms", Math.round(p95));
+			row.addProperty("maxMs", Math.round(Math.max(histogram.maxMillis(),
+					previous == null ? 0 : previous.get("maxMs").getAsDouble())));
+			double meanMatches = matched == 0 ? 0 : (double) matches.sum() / matched;
+			row.addProperty("meanMatches", Math.round(meanMatches * 10) / 10.0);
+			int inDocument = domMatches >= 0 || previous == null ? domMatches : previous.get("domMatches").getAsInt();
+			row.addProperty("domMatches", inDocument);
+
+			JsonArray flags = new JsonArray();
+			if (p95 > FrameworkConfig.get().locatorSlow().toMillis()) {
+				flags.add("slow");
+			}
+			if ("xpath".equals(kind) && FRAGILE_XPATH.matcher(value).find()) {
+				flags.add("xpath");
+			}
+			if ("cssSelector".equals(kind) && GENERIC_CSS.matcher(value.trim()).matches()
+					&& inDocument > Math.max(1, Math.round(meanMatches))) {
+				flags.add("broad");
+			}
+			if (row.get("stale").getAsLong() > 0) {
+				flags.add("stale");
+			}
+			row.add("flags", flags);
+			JsonArray suggested = new JsonArray();
+			if (!suggestions.isEmpty()) {
+				synchronized (suggestions) {
+					suggestions.forEach(suggested::add);
+				}
+			} else if (previous != null && previous.has("suggestions")) {
+				suggested = previous.getAsJsonArray("suggestions");
+			}
+			row.add("suggestions", suggested);
+			return row;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Merges the locator lookups of the suite into the {@link LocatorRegistry} index
+ * ({@code locator.index}) when the suite finishes. Register it in testng.xml under
+ * {@code <listeners>}.
+ */
+public class LocatorRegistryListener implements ISuiteListener {
+
+	private static final Logger LOG = LogManager.getLogger(LocatorRegistryListener.class);
+
+	@Override
+	public void onFinish(ISuite suite) {
+		Path file = FrameworkConfig.get().locatorIndex();
+		try {
+			LocatorRegistry.get().writeIndex(file);
+		} catch (IOException e) {
+			LOG.error("Could not update the locator index {}: {}", file, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.qa.base;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.testng.ITestResult;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Tags the log lines of a thread with the test it runs and the WebDriver session it holds.
+ * <p>
+ * The framework logs through log4j2 ({@code src/main/resources/log4j2.xml}): messages are
+ * parameterized, so nothing is formatted below the configured level, and lines are written
+ * by an async appender instead of the test thread. {@link DriverPoolListener} binds the
+ * test name and {@link DriverPool} the session id into the thread context, where the
+ * layout prints them as {@code test=} and {@code session=}. {@code log.level} sets the
+ * level of the {@code com.qa} loggers.
+ * </p>
+ */
+public final class LogContext {
+
+	public static final String TEST = "test";
+	public static final String SESSION = "session";
+
+	private static final AtomicBoolean CONFIGURED = new AtomicBoolean();
+
+	private LogContext() {
+	}
+
+	/**
+	 * Applies {@code log.level}; later calls do nothing.
+	 */
+	public static void configure() {
+		if (CONFIGURED.compareAndSet(false, true)) {
+			Configurator.setLevel("com.qa", Level.toLevel(FrameworkConfig.get().logLevel(), Level.INFO));
+		}
+	}
+
+	public static void bindTest(ITestResult result) {
+		ThreadContext.put(TEST, result.getTestClass().getRealClass().getSimpleName() + "." + result.getMethod().getMethodName());
+	}
+
+	public static void clearTest() {
+		ThreadContext.remove(TEST);
+	}
+
+	public static void bindSession(WebDriver driver) {
+		String id = sessionId(driver);
+		if (id != null) {
+			ThreadContext.put(SESSION, id);
+		}
+	}
+
+	public static void clearSession() {
+		ThreadContext.remove(SESSION);
+	}
+
+	private static String sessionId(WebDriver driver) {
+		while (driver instanceof WrapsDriver && !(driver instanceof RemoteWebDriver)) {
+			driver = ((WrapsDriver) driver).getWrappedDriver();
+		}
+		if (driver instanceof RemoteWebDriver && ((RemoteWebDriver) driver).getSessionId() != null) {
+			return ((RemoteWebDriver) driver).getSessionId().toString();
+		}
+		return null;
+	}
+}
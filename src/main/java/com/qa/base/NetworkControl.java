@@ -0,0 +1,407 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonInput;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Blocks, stubs and times the browser's network traffic through the Chrome DevTools
+ * Protocol.
+ * <p>
+ * Block patterns ({@code network.block}, CDP wildcards such as {@code *analytics*}) are
+ * handed to {@code Network.setBlockedURLs}, so the browser drops those requests itself.
+ * Stubs ({@code network.stub.<name>.url}, {@code .status}, {@code .type} and {@code .body}
+ * or {@code .file}) enable {@code Fetch} interception for their patterns only and answer
+ * the paused request with the canned response; all other traffic is never paused.
+ * With {@code network.timing} every request is timed from {@code requestWillBeSent} to
+ * {@code loadingFinished}, grouped by endpoint, and {@link #writeReport(Path)} lists the
+ * endpoints by total time.
+ * </p>
+ * <p>
+ * Only Chromium sessions support this; other browsers are left untouched.
+ * </p>
+ */
+public final class NetworkControl {
+
+	private static final Logger LOG = LogManager.getLogger(NetworkControl.class);
+
+	private static final Function<JsonInput, Map<String, Object>> AS_MAP = input -> input.read(Json.MAP_TYPE);
+	private static final Pattern ID_SEGMENT = Pattern.compile("/(?:[0-9]+|[0-9a-fA-F]{24}|[0-9a-fA-F-]{36})(?=/|$)");
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+	private static final Map<WebDriver, NetworkControl> CONTROLS = new ConcurrentHashMap<>();
+	private static final Map<String, Endpoint> ENDPOINTS = new ConcurrentHashMap<>();
+	private static final Map<String, LongAdder> BLOCKED = new ConcurrentHashMap<>();
+
+	private final DevTools devTools;
+	private final List<String> configuredBlocks;
+	private final List<Stub> configuredStubs;
+	private final List<String> blocks = new CopyOnWriteArrayList<>();
+	private final List<Stub> stubs = new CopyOnWriteArrayList<>();
+	private final Map<String, Pending> inFlight = new ConcurrentHashMap<>();
+
+	private NetworkControl(DevTools devTools, List<String> blocks, List<Stub> stubs) {
+		this.devTools = devTools;
+		this.configuredBlocks = blocks;
+		this.configuredStubs = stubs;
+	}
+
+	/**
+	 * Applies the configured block list, stubs and timing to a new session.
+	 *
+	 * @param driver the session
+	 * @return the same driver
+	 */
+	public static WebDriver install(WebDriver driver) {
+		FrameworkConfig config = FrameworkConfig.get();
+		List<String> blocks = config.networkBlockList();
+		List<Stub> stubs = configuredStubs(config);
+		boolean timing = config.networkTiming();
+		if (blocks.isEmpty() && stubs.isEmpty() && !timing) {
+			return driver;
+		}
+		// multiplexed sessions implement HasDevTools but have no connection of their own
+		Optional<DevTools> connection = driver instanceof HasDevTools ? ((HasDevTools) driver).maybeGetDevTools()
+				: Optional.empty();
+		if (!connection.isPresent()) {
+			LOG.info("Network control skipped: the session does not support DevTools");
+			return driver;
+		}
+		DevTools devTools = connection.get();
+		devTools.createSessionIfThereIsNotOne();
+		NetworkControl control = new NetworkControl(devTools, blocks, stubs);
+		devTools.send(new Command<>("Network.enable", Collections.<String, Object>emptyMap()));
+		devTools.addListener(new Event<>("Fetch.requestPaused", AS_MAP), control::onRequestPaused);
+		devTools.addListener(new Event<>("Network.loadingFailed", AS_MAP), control::onLoadingFailed);
+		if (timing) {
+			devTools.addListener(new Event<>("Network.requestWillBeSent", AS_MAP), control::onRequestWillBeSent);
+			devTools.addListener(new Event<>("Network.responseReceived", AS_MAP), control::onResponseReceived);
+			devTools.addListener(new Event<>("Network.loadingFinished", AS_MAP), control::onLoadingFinished);
+		}
+		control.reset();
+		CONTROLS.put(driver, control);
+		return driver;
+	}
+
+	/**
+	 * Returns the network control of a session, or null if it has none.
+	 *
+	 * @param driver the session
+	 * @return its network control
+	 */
+	public static NetworkControl of(WebDriver driver) {
+		return CONTROLS.get(driver);
+	}
+
+	static void forget(WebDriver driver) {
+		CONTROLS.remove(driver);
+	}
+
+	/**
+	 * Adds URL patterns to block for the rest of this session's current borrow.
+	 *
+	 * @param patterns CDP URL patterns, {@code *} matching any characters
+	 */
+	public void block(String... patterns) {
+		Collections.addAll(blocks, patterns);
+		applyBlocks();
+	}
+
+	/**
+	 * Answers requests matching {@code pattern} with a canned response for the rest of
+	 * this session's current borrow.
+	 *
+	 * @param pattern     CDP URL pattern
+	 * @param status      HTTP status
+	 * @param contentType response content type
+	 * @param body        response body
+	 */
+	public void stub(String pattern, int status, String contentType, String body) {
+		stubs.add(0, new Stub(pattern, status, contentType, body.getBytes(StandardCharsets.UTF_8)));
+		applyStubs();
+	}
+
+	// restores the configured rules; called when a pooled session is handed back
+	void reset() {
+		blocks.clear();
+		blocks.addAll(configuredBlocks);
+		stubs.clear();
+		stubs.addAll(configuredStubs);
+		inFlight.clear();
+		applyBlocks();
+		applyStubs();
+	}
+
+	static void reset(WebDriver driver) {
+		NetworkControl control = CONTROLS.get(driver);
+		if (control != null) {
+			control.reset();
+		}
+	}
+
+	private void applyBlocks() {
+		devTools.send(new Command<>("Network.setBlockedURLs", Collections.<String, Object>singletonMap("urls", new ArrayList<>(blocks))));
+	}
+
+	private void applyStubs() {
+		if (stubs.isEmpty()) {
+			devTools.send(new Command<>("Fetch.disable", Collections.<String, Object>emptyMap()));
+			return;
+		}
+		List<Map<String, Object>> patterns = new ArrayList<>();
+		for (Stub stub : stubs) {
+			Map<String, Object> pattern = new HashMap<>();
+			pattern.put("urlPattern", stub.pattern);
+			pattern.put("requestStage", "Request");
+			patterns.add(pattern);
+		}
+		devTools.send(new Command<>("Fetch.enable", Collections.<String, Object>singletonMap("patterns", patterns)));
+	}
+
+	private void onRequestPaused(Map<String, Object> event) {
+		String requestId = (String) event.get("requestId");
+		String url = (String) ((Map<?, ?>) event.get("request")).get("url");
+		Map<String, Object> params = new HashMap<>();
+		params.put("requestId", requestId);
+		for (Stub stub : stubs) {
+			if (stub.matches(url)) {
+				params.put("responseCode", stub.status);
+				params.put("responseHeaders", Collections.singletonList(header("Content-Type", stub.contentType)));
+				params.put("body", Base64.getEncoder().encodeToString(stub.body));
+				devTools.send(new Command<>("Fetch.fulfillRequest", params));
+				return;
+			}
+		}
+		devTools.send(new Command<>("Fetch.continueRequest", params));
+	}
+
+	private void onRequestWillBeSent(Map<String, Object> event) {
+		Map<?, ?> request = (Map<?, ?>) event.get("request");
+		inFlight.put((String) event.get("requestId"), new Pending((String) request.get("method"),
+				(String) request.get("url"), (String) event.get("type"), number(event.get("timestamp"))));
+	}
+
+	private void onResponseReceived(Map<String, Object> event) {
+		Pending pending = inFlight.get(event.get("requestId"));
+		if (pending != null) {
+			pending.status = (int) number(((Map<?, ?>) event.get("response")).get("status"));
+		}
+	}
+
+	private void onLoadingFinished(Map<String, Object> event) {
+		Pending pending = inFlight.remove(event.get("requestId"));
+		if (pending != null) {
+			pending.finish(number(event.get("timestamp")), pending.status >= 400);
+		}
+	}
+
+	private void onLoadingFailed(Map<String, Object> event) {
+		Pending pending = inFlight.remove(event.get("requestId"));
+		Object blockedReason = event.get("blockedReason");
+		if (blockedReason != null) {
+			String host = pending == null ? "unknown" : host(pending.url);
+			BLOCKED.computeIfAbsent(host, h -> new LongAdder()).increment();
+		} else if (pending != null) {
+			pending.finish(number(event.get("timestamp")), true);
+		}
+	}
+
+	/**
+	 * Writes the request timings of all sessions as JSON, slowest endpoints first, together
+	 * with the number of blocked requests per host.
+	 *
+	 * @param file the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeReport(Path file) throws IOException {
+		if (ENDPOINTS.isEmpty() && BLOCKED.isEmpty()) {
+			return;
+		}
+		List<Map.Entry<String, Endpoint>> entries = new ArrayList<>(ENDPOINTS.entrySet());
+		entries.sort(Comparator.comparingDouble(
+				(Map.Entry<String, Endpoint> e) -> e.getValue().histogram.sumMillis()).reversed());
+		JsonArray endpoints = new JsonArray();
+		for (Map.Entry<String, Endpoint> entry : entries) {
+			LatencyHistogram histogram = entry.getValue().histogram;
+			JsonObject row = new JsonObject();
+			row.addProperty("endpoint", entry.getKey());
+			row.addProperty("type", entry.getValue().type);
+			row.addProperty("count", histogram.count());
+			row.addProperty("failures", histogram.errors());
+			row.addProperty("totalMs", Math.round(histogram.sumMillis()));
+			row.addProperty("meanMs", Math.round(histogram.meanMillis()));
+			row.addProperty("p95Ms", Math.round(histogram.percentileMillis(95)));
+			row.addProperty("maxMs", Math.round(histogram.maxMillis()));
+			endpoints.add(row);
+		}
+		JsonObject blocked = new JsonObject();
+		new TreeMap<>(BLOCKED).forEach((host, count) -> blocked.addProperty(host, count.sum()));
+		JsonObject json = new JsonObject();
+		json.add("endpoints", endpoints);
+		json.add("blocked", blocked);
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			GSON.toJson(json, out);
+		}
+	}
+
+	private static List<Stub> configuredStubs(FrameworkConfig config) {
+		Map<String, String> settings = config.withPrefix("network.stub.");
+		List<Stub> stubs = new ArrayList<>();
+		for (Map.Entry<String, String> entry : settings.entrySet()) {
+			if (!entry.getKey().endsWith(".url")) {
+				continue;
+			}
+			String name = entry.getKey().substring(0, entry.getKey().length() - ".url".length());
+			String file = settings.get(name + ".file");
+			byte[] body;
+			try {
+				body = file != null ? Files.readAllBytes(Paths.get(file))
+						: settings.getOrDefault(name + ".body", "").getBytes(StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot read network.stub." + name + ".file " + file, e);
+			}
+			stubs.add(new Stub(entry.getValue(), Integer.parseInt(settings.getOrDefault(name + ".status", "200")),
+					settings.getOrDefault(name + ".type", "application/json"), body));
+		}
+		return stubs;
+	}
+
+	// METHOD host/path with query and id-like path segments removed
+	private static String endpoint(String method, String url) {
+		try {
+			URI uri = URI.create(url);
+			String path = uri.getRawPath() == null ? "" : ID_SEGMENT.matcher(uri.getRawPath()).replaceAll("/:id");
+			return method + " " + uri.getHost() + path;
+		} catch (IllegalArgumentException e) {
+			return method + " " + url;
+		}
+	}
+
+	private static String host(String url) {
+		try {
+			String host = URI.create(url).getHost();
+			return host == null ? url : host;
+		} catch (IllegalArgumentException e) {
+			return url;
+		}
+	}
+
+	private static Map<String, Object> header(String name, String value) {
+		Map<String, Object> header = new HashMap<>();
+		header.put("name", name);
+		header.put("value", value);
+		return header;
+	}
+
+	private static double number(Object value) {
+		return value instanceof Number ? ((Number) value).doubleValue() : 0;
+	}
+
+	private static final class Stub {
+
+		final String pattern;
+		final Pattern regex;
+		final int status;
+		final String contentType;
+		final byte[] body;
+
+		Stub(String pattern, int status, String contentType, byte[] body) {
+			this.pattern = pattern;
+			this.regex = glob(pattern);
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+		}
+
+		boolean matches(String url) {
+			return regex.matcher(url).matches();
+		}
+
+		// CDP URL patterns: * any characters, ? one character, backslash escapes
+		private static Pattern glob(String pattern) {
+			StringBuilder regex = new StringBuilder();
+			for (int i = 0; i < pattern.length(); i++) {
+				char c = pattern.charAt(i);
+				if (c == '\\' && i + 1 < pattern.length()) {
+					regex.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+				} else if (c == '*') {
+					regex.append(".*");
+				} else if (c == '?') {
+					regex.append('.');
+				} else {
+					regex.append(Pattern.quote(String.valueOf(c)));
+				}
+			}
+			return Pattern.compile(regex.toString());
+		}
+	}
+
+	private static final class Endpoint {
+
+		final String type;
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		Endpoint(String type) {
+			this.type = type;
+		}
+	}
+
+	private static final class Pending {
+
+		final String method;
+		final String url;
+		final String type;
+		final double startSeconds;
+		volatile int status;
+
+		Pending(String method, String url, String type, double startSeconds) {
+			this.method = method;
+			this.url = url;
+			this.type = type;
+			this.startSeconds = startSeconds;
+		}
+
+		void finish(double endSeconds, boolean failed) {
+			long nanos = (long) ((endSeconds - startSeconds) * 1_000_000_000L);
+			ENDPOINTS.computeIfAbsent(endpoint(method, url), e -> new Endpoint(type)).histogram
+					.record(Math.max(nanos, 0), failed);
+		}
+	}
+}
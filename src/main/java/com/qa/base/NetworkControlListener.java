@@ -0,0 +1,31 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Writes the {@link NetworkControl} request timings and blocked-request counts to
+ * {@code target/metrics/network_requests.json} when the suite finishes. Register it in
+ * testng.xml under {@code <listeners>}.
+ */
+public class NetworkControlListener implements ISuiteListener {
+
+	private static final Logger LOG = LogManager.getLogger(NetworkControlListener.class);
+
+	@Override
+	public void onFinish(ISuite suite) {
+		Path file = FrameworkConfig.get().metricsDir().resolve("network_requests.json");
+		try {
+			NetworkControl.writeReport(file);
+		} catch (IOException e) {
+			LOG.error("Could not write network timings to {}: {}", file, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.qa.base;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsElement;
+import org.openqa.selenium.interactions.Locatable;
+import org.openqa.selenium.support.FindAll;
+import org.openqa.selenium.support.FindBy;
+import org.openqa.selenium.support.FindBys;
+import org.openqa.selenium.support.pagefactory.AbstractAnnotations;
+import org.openqa.selenium.support.pagefactory.Annotations;
+import org.openqa.selenium.support.pagefactory.DefaultElementLocator;
+import org.openqa.selenium.support.pagefactory.ElementLocator;
+import org.openqa.selenium.support.pagefactory.internal.LocatingElementHandler;
+import org.openqa.selenium.support.pagefactory.internal.LocatingElementListHandler;
+
+/**
+ * Drop-in replacement for {@code PageFactory.initElements(driver, page)}.
+ * <p>
+ * {@code PageFactory} walks the class hierarchy and re-parses every {@code @FindBy}
+ * annotation each time a page is constructed. Here the fields, their {@link By}
+ * locators and lookup-caching flags are resolved once per page class and reused,
+ * so constructing a page only allocates the element proxies. The resulting fields
+ * behave exactly like the ones {@code PageFactory} creates.
+ * </p>
+ */
+public final class PageElements {
+
+	private static final Map<Class<?>, List<Binding>> BINDINGS = new ConcurrentHashMap<>();
+
+	private PageElements() {
+	}
+
+	/**
+	 * Sets every locatable {@link WebElement} and annotated {@code List<WebElement>} field of
+	 * {@code page} to a lazy proxy that looks the element up in {@code searchContext}.
+	 *
+	 * @param searchContext the driver (or element) the proxies search in
+	 * @param page          the page object to populate
+	 */
+	public static void initElements(SearchContext searchContext, Object page) {
+		ClassLoader loader = page.getClass().getClassLoader();
+		for (Binding binding : bindingsFor(page.getClass())) {
+			ElementLocator locator = new DefaultElementLocator(searchContext, binding);
+			Object value = binding.list ? proxyForList(loader, locator) : proxyForElement(loader, locator);
+			try {
+				binding.field.set(page, value);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException("Cannot initialise page field " + binding.field, e);
+			}
+		}
+	}
+
+	static List<Binding> bindingsFor(Class<?> pageClass) {
+		List<Binding> bindings = BINDINGS.get(pageClass);
+		if (bindings == null) {
+			bindings = BINDINGS.computeIfAbsent(pageClass, PageElements::scan);
+		}
+		return bindings;
+	}
+
+	private static List<Binding> scan(Class<?> pageClass) {
+		List<Binding> bindings = new ArrayList<>();
+		for (Class<?> type = pageClass; type != null && type != Object.class; type = type.getSuperclass()) {
+			for (Field field : type.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+					continue;
+				}
+				boolean list = isDecoratableList(field);
+				if (!list && !WebElement.class.isAssignableFrom(field.getType())) {
+					continue;
+				}
+				field.setAccessible(true);
+				Annotations annotations = new Annotations(field);
+				bindings.add(new Binding(field, annotations.buildBy(), annotations.isLookupCached(), list));
+			}
+		}
+		return Collections.unmodifiableList(bindings);
+	}
+
+	private static boolean isDecoratableList(Field field) {
+		if (!List.class.isAssignableFrom(field.getType())) {
+			return false;
+		}
+		Type generic = field.getGenericType();
+		if (!(generic instanceof ParameterizedType)
+				|| ((ParameterizedType) generic).getActualTypeArguments()[0] != WebElement.class) {
+			return false;
+		}
+		return field.getAnnotation(FindBy.class) != null || field.getAnnotation(FindBys.class) != null
+				|| field.getAnnotation(FindAll.class) != null;
+	}
+
+	private static WebElement proxyForElement(ClassLoader loader, ElementLocator locator) {
+		InvocationHandler handler = new LocatingElementHandler(locator);
+		return (WebElement) Proxy.newProxyInstance(loader,
+				new Class<?>[] { WebElement.class, WrapsElement.class, Locatable.class }, handler);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<WebElement> proxyForList(ClassLoader loader, ElementLocator locator) {
+		InvocationHandler handler = new LocatingElementListHandler(locator);
+		return (List<WebElement>) Proxy.newProxyInstance(loader, new Class<?>[] { List.class }, handler);
+	}
+
+	/**
+	 * Pre-resolved locator metadata for one page field.
+	 */
+	static final class Binding extends AbstractAnnotations {
+
+		final Field field;
+		final By by;
+		final boolean cached;
+		final boolean list;
+
+		Binding(Field field, By by, boolean cached, boolean list) {
+			this.field = field;
+			this.by = by;
+			this.cached = cached;
+			this.list = list;
+		}
+
+		@Override
+		public By buildBy() {
+			return by;
+		}
+
+		@Override
+		public boolean isLookupCached() {
+			return cached;
+		}
+	}
+}
@@ -0,0 +1,421 @@
+package com.qa.base;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.json.JsonInput;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Immutable copy of a page subtree (tags, attributes, text and visibility) read with a
+ * single {@code executeScript} call, so read-only lookups and assertions on it cost no
+ * further WebDriver round-trips.
+ * <p>
+ * {@link #current(WebDriver, By)} hands out the last snapshot of a subtree for as long as
+ * the page cannot have changed and takes a new one otherwise. A snapshot goes out of date
+ * <ul>
+ * <li>when the test sends the session a command that can change the page: navigation,
+ * clicks, typing, frame or window switches and scripts other than the framework's own
+ * read-only ones;</li>
+ * <li>when the DOM changes by itself, reported by a {@code MutationObserver} the snapshot
+ * script installs in the page. On Chromium the observer calls a DevTools binding, so the
+ * change is known without asking the page; other browsers are asked for the observer's
+ * change counter, one cheap round-trip per {@code current} call.</li>
+ * </ul>
+ * Notifications arrive asynchronously, so a snapshot reflects the page as of the last
+ * command; waits should use {@link #take(WebDriver, By)}, which always reads the page.
+ * Lookups use {@link SnapshotSelector}'s CSS subset and see only the snapshot's subtree.
+ * Changes to computed styles that do not touch the DOM (a late style sheet, a media query)
+ * are not observed. {@code snapshot.enabled=false} makes {@code current} read the page
+ * every time, {@code snapshot.max.nodes} caps the size of a subtree.
+ * </p>
+ *
+ * <pre>
+ * boolean inCart = PageSnapshot.current(driver, By.cssSelector(".cart")).texts("h3").contains("ZARA COAT 3");
+ * </pre>
+ */
+public final class PageSnapshot {
+
+	private static final Logger LOG = LogManager.getLogger(PageSnapshot.class);
+
+	static final String SCRIPT = String.join("\n",
+			"var using = arguments[0], value = arguments[1], given = arguments[2];",
+			"var max = arguments[3], binding = arguments[4];",
+			"var w = window, s = w.__qaSnapshot;",
+			"if (!s) {",
+			"  s = w.__qaSnapshot = { doc: Math.random().toString(36).slice(2), version: 0, reported: true };",
+			"  new MutationObserver(function () {",
+			"    s.version++;",
+			"    if (!s.reported) {",
+			"      s.reported = true;",
+			"      if (typeof w[binding] === 'function') w[binding](s.doc + ':' + s.version);",
+			"    }",
+			"  }).observe(document, { childList: true, subtree: true, attributes: true, characterData: true });",
+			"}",
+			"s.reported = false;",
+			"var state = [s.doc, s.version];",
+			"if (!using && !given) return state;",
+			"var found;",
+			"if (given) found = given;",
+			"else if (using === 'css selector') found = document.querySelectorAll(value);",
+			"else if (using === 'tag name') found = document.getElementsByTagName(value);",
+			"else {",
+			"  var r = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);",
+			"  found = [];",
+			"  for (var i = 0; i < r.snapshotLength; i++) found.push(r.snapshotItem(i));",
+			"}",
+			"var shown = function (el) {",
+			"  if (!el.getClientRects().length) return false;",
+			"  var st = window.getComputedStyle(el);",
+			"  return st.visibility !== 'hidden' && st.display !== 'none' && parseFloat(st.opacity) !== 0;",
+			"};",
+			"var textFor = function (el) {",
+			"  var t = el.tagName === 'OPTION' ? el.text : (el.innerText !== undefined ? el.innerText : el.textContent);",
+			"  return (t || '').trim();",
+			"};",
+			"var between = function (node) {",
+			"  var t = '';",
+			"  for (; node && node.nodeType !== 1; node = node.nextSibling) if (node.nodeType === 3) t += node.nodeValue;",
+			"  return t;",
+			"};",
+			"var nodes = [], roots = [], over = false;",
+			"var visit = function (el, parent) {",
+			"  if (nodes.length >= max) { over = true; return; }",
+			"  var attrs = {};",
+			"  for (var a = 0; a < el.attributes.length; a++) attrs[el.attributes[a].name] = el.attributes[a].value;",
+			"  var leaf = !el.firstElementChild, vis = shown(el);",
+			"  var text = leaf ? (vis ? textFor(el) : '') : between(el.firstChild);",
+			"  nodes.push([el.tagName.toLowerCase(), parent, attrs, text, between(el.nextSibling), vis]);",
+			"  var index = nodes.length - 1;",
+			"  for (var c = el.firstElementChild; c; c = c.nextElementSibling) visit(c, index);",
+			"};",
+			"for (var k = 0; k < found.length; k++) {",
+			"  roots.push([nodes.length, found[k]]);",
+			"  visit(found[k], -1);",
+			"}",
+			"return state.concat([nodes, roots, over]);");
+
+	static final String BINDING = "__qaSnapshotChanged";
+
+	private static final Function<JsonInput, Map<String, Object>> AS_MAP = input -> input.read(Json.MAP_TYPE);
+
+	// bumped by commands whose target cannot be traced back to a session, e.g. navigate().back()
+	private static final AtomicLong GLOBAL = new AtomicLong();
+	private static final Map<WebDriver, Tracker> TRACKERS = new ConcurrentHashMap<>();
+	private static final Invalidator INVALIDATOR = new Invalidator();
+
+	private final By root;
+	private final Tracker tracker;
+	private final long generation;
+	private final long global;
+	private final String document;
+	private final long version;
+	private final List<SnapshotNode> nodes;
+	private final List<SnapshotNode> roots;
+
+	private PageSnapshot(By root, Tracker tracker, long generation, long global, String document, long version,
+			List<SnapshotNode> nodes, List<SnapshotNode> roots) {
+		this.root = root;
+		this.tracker = tracker;
+		this.generation = generation;
+		this.global = global;
+		this.document = document;
+		this.version = version;
+		this.nodes = Collections.unmodifiableList(nodes);
+		this.roots = Collections.unmodifiableList(roots);
+	}
+
+	/**
+	 * Reads every element matched by {@code root}, with all their descendants, from the
+	 * current page.
+	 *
+	 * @param driver the session to read
+	 * @param root   the locator of the subtree roots; several matches give several roots
+	 * @return the snapshot; without roots if nothing matched
+	 * @throws IllegalStateException if the subtree has more than {@code snapshot.max.nodes} elements
+	 */
+	@SuppressWarnings("unchecked")
+	public static PageSnapshot take(WebDriver driver, By root) {
+		Tracker tracker = tracker(driver);
+		long generation = tracker.generation.get();
+		long global = GLOBAL.get();
+		String using = null;
+		Object value = null;
+		List<WebElement> given = null;
+		if (root instanceof By.Remotable) {
+			By.Remotable.Parameters parameters = ((By.Remotable) root).getRemoteParameters();
+			using = parameters.using();
+			value = parameters.value();
+		}
+		if (!"css selector".equals(using) && !"xpath".equals(using) && !"tag name".equals(using)) {
+			using = null;
+			given = driver.findElements(root);
+		}
+		int max = FrameworkConfig.get().snapshotMaxNodes();
+		long start = System.nanoTime();
+		List<Object> result = (List<Object>) ((JavascriptExecutor) driver).executeScript(SCRIPT, using, value, given,
+				max, BINDING);
+		long nanos = System.nanoTime() - start;
+		List<SnapshotNode> nodes = new ArrayList<>();
+		List<SnapshotNode> roots = new ArrayList<>();
+		if (result.size() > 2) {
+			if (Boolean.TRUE.equals(result.get(4))) {
+				throw new IllegalStateException("The subtree of " + root + " has more than " + max
+						+ " elements; narrow the locator or raise snapshot.max.nodes");
+			}
+			Map<Integer, WebElement> elements = new LinkedHashMap<>();
+			for (List<Object> row : (List<List<Object>>) result.get(3)) {
+				elements.put(((Number) row.get(0)).intValue(), (WebElement) row.get(1));
+			}
+			for (List<Object> row : (List<List<Object>>) result.get(2)) {
+				int parent = ((Number) row.get(1)).intValue();
+				Map<String, String> attributes = new LinkedHashMap<>();
+				((Map<String, Object>) row.get(2)).forEach((name, attribute) -> attributes.put(name, String.valueOf(attribute)));
+				SnapshotNode node = new SnapshotNode(nodes.size(), (String) row.get(0), attributes,
+						String.valueOf(row.get(3)), String.valueOf(row.get(4)), Boolean.TRUE.equals(row.get(5)),
+						parent < 0 ? null : nodes.get(parent), elements.get(nodes.size()));
+				nodes.add(node);
+				if (parent < 0) {
+					roots.add(node);
+				}
+			}
+		}
+		if (given == null) {
+			List<WebElement> found = new ArrayList<>(roots.size());
+			for (SnapshotNode node : roots) {
+				found.add(node.element());
+			}
+			LocatorRegistry.recordScript(driver, root, found, nanos);
+		}
+		PageSnapshot snapshot = new PageSnapshot(root, tracker, generation, global, (String) result.get(0),
+				((Number) result.get(1)).longValue(), nodes, roots);
+		tracker.cache.put(root, snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Returns the last snapshot of {@code root} taken on this session if the page cannot
+	 * have changed since, otherwise takes a new one.
+	 *
+	 * @param driver the session to read
+	 * @param root   the locator of the subtree roots
+	 * @return an up-to-date snapshot
+	 */
+	public static PageSnapshot current(WebDriver driver, By root) {
+		if (FrameworkConfig.get().snapshotEnabled()) {
+			PageSnapshot cached = tracker(driver).cache.get(root);
+			if (cached != null && cached.isCurrent(driver)) {
+				return cached;
+			}
+		}
+		return take(driver, root);
+	}
+
+	/**
+	 * Tells whether the page may have changed since this snapshot was taken. Costs a
+	 * round-trip only on browsers without DevTools change notifications.
+	 *
+	 * @param driver the session the snapshot was taken on
+	 * @return true if the snapshot still describes the page
+	 */
+	public boolean isCurrent(WebDriver driver) {
+		if (tracker.generation.get() != generation || GLOBAL.get() != global) {
+			return false;
+		}
+		if (tracker.observed) {
+			return true;
+		}
+		List<?> state = (List<?>) ((JavascriptExecutor) driver).executeScript(SCRIPT, null, null, null, 0, BINDING);
+		return document.equals(state.get(0)) && version == ((Number) state.get(1)).longValue();
+	}
+
+	public By root() {
+		return root;
+	}
+
+	//The elements matched by the root locator, in document order
+	public List<SnapshotNode> roots() {
+		return roots;
+	}
+
+	//Every element of the subtree, in document order
+	public List<SnapshotNode> nodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the elements of the subtree that match a CSS selector, the roots included.
+	 * Ancestors above the roots are not part of the snapshot and never match.
+	 *
+	 * @param cssSelector the selector, limited to what {@link SnapshotSelector} supports
+	 * @return the matches in document order
+	 * @throws IllegalArgumentException if the selector is not supported
+	 */
+	public List<SnapshotNode> select(String cssSelector) {
+		SnapshotSelector selector = SnapshotSelector.parse(cssSelector);
+		List<SnapshotNode> matches = new ArrayList<>();
+		for (SnapshotNode node : nodes) {
+			if (selector.matches(node)) {
+				matches.add(node);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * @param cssSelector the selector
+	 * @return the texts of all matches, in document order
+	 */
+	public List<String> texts(String cssSelector) {
+		List<String> texts = new ArrayList<>();
+		for (SnapshotNode node : select(cssSelector)) {
+			texts.add(node.text());
+		}
+		return texts;
+	}
+
+	/**
+	 * @param cssSelector the selector
+	 * @return the text of the first match, or an empty string if nothing matches
+	 */
+	public String text(String cssSelector) {
+		List<SnapshotNode> matches = select(cssSelector);
+		return matches.isEmpty() ? "" : matches.get(0).text();
+	}
+
+	public boolean exists(String cssSelector) {
+		return !select(cssSelector).isEmpty();
+	}
+
+	/**
+	 * Adds the snapshot invalidation to a driver that is being decorated; see
+	 * {@link DriverManager#createDriver(String)}.
+	 *
+	 * @return the listener, or null when {@code snapshot.enabled=false}
+	 */
+	static WebDriverListener listener() {
+		return FrameworkConfig.get().snapshotEnabled() ? INVALIDATOR : null;
+	}
+
+	static void forget(WebDriver driver) {
+		TRACKERS.remove(unwrap(driver));
+	}
+
+	// the pages hold the decorated driver while the listener sees the original one
+	private static WebDriver unwrap(WebDriver driver) {
+		return driver instanceof WrapsDriver ? ((WrapsDriver) driver).getWrappedDriver() : driver;
+	}
+
+	private static Tracker tracker(WebDriver driver) {
+		Tracker tracker = TRACKERS.get(unwrap(driver));
+		if (tracker == null) {
+			tracker = TRACKERS.computeIfAbsent(unwrap(driver), d -> new Tracker());
+			tracker.observe(driver);
+		}
+		return tracker;
+	}
+
+	// change tracking of one session
+	private static final class Tracker {
+		final AtomicLong generation = new AtomicLong();
+		final Map<By, PageSnapshot> cache = new ConcurrentHashMap<>();
+		volatile boolean observed;
+		private boolean installed;
+
+		synchronized void observe(WebDriver driver) {
+			if (installed) {
+				return;
+			}
+			installed = true;
+			if (!FrameworkConfig.get().snapshotEnabled() || !FrameworkConfig.get().snapshotObserve()
+					|| !(driver instanceof HasDevTools)) {
+				return;
+			}
+			try {
+				DevTools devTools = ((HasDevTools) driver).getDevTools();
+				devTools.createSessionIfThereIsNotOne();
+				devTools.send(new Command<>("Runtime.enable", Collections.<String, Object>emptyMap()));
+				devTools.send(new Command<>("Page.enable", Collections.<String, Object>emptyMap()));
+				devTools.send(new Command<>("Runtime.addBinding", Collections.<String, Object>singletonMap("name", BINDING)));
+				devTools.addListener(new Event<>("Runtime.bindingCalled", AS_MAP), event -> {
+					if (BINDING.equals(event.get("name"))) {
+						generation.incrementAndGet();
+					}
+				});
+				devTools.addListener(new Event<>("Page.frameNavigated", AS_MAP), event -> generation.incrementAndGet());
+				observed = true;
+			} catch (RuntimeException e) {
+				LOG.info("Page snapshots will ask the page for changes: DevTools is not available ({})",
+						e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Tells whether a WebDriver call may change the page. Lookups, state queries, getters
+	 * and the framework's own read-only scripts do not.
+	 *
+	 * @param method the called method
+	 * @param args   its arguments
+	 * @return false if the call certainly leaves the page as it was
+	 */
+	static boolean mayChangePage(Method method, Object[] args) {
+		String name = method.getName();
+		if (Invalidator.READ_ONLY.contains(name) || name.startsWith("get") && name.length() > 3) {
+			return false;
+		}
+		return !((name.equals("executeScript") || name.equals("executeAsyncScript")) && args != null
+				&& args.length > 0 && Invalidator.READ_ONLY_SCRIPTS.contains(args[0]));
+	}
+
+	// marks the snapshots of a session out of date whenever a command may change its page
+	private static final class Invalidator implements WebDriverListener {
+
+		private static final Set<String> READ_ONLY = new HashSet<>(Arrays.asList("findElement", "findElements",
+				"isDisplayed", "isEnabled", "isSelected", "manage", "navigate", "switchTo", "timeouts", "window",
+				"logs", "implicitlyWait", "scriptTimeout", "pageLoadTimeout", "equals", "hashCode", "toString"));
+		private static final Set<String> READ_ONLY_SCRIPTS = new HashSet<>(Arrays.asList(SCRIPT, BatchQuery.SCRIPT,
+				Readiness.PROBE, Readiness.POLL));
+
+		@Override
+		public void beforeAnyCall(Object target, Method method, Object[] args) {
+			if (!mayChangePage(method, args)) {
+				return;
+			}
+			WebDriver driver = target instanceof WebDriver ? (WebDriver) target
+					: target instanceof WrapsDriver ? ((WrapsDriver) target).getWrappedDriver() : null;
+			if (driver == null) {
+				GLOBAL.incrementAndGet();
+				return;
+			}
+			Tracker tracker = TRACKERS.get(driver);
+			if (tracker != null) {
+				tracker.generation.incrementAndGet();
+			}
+		}
+	}
+}
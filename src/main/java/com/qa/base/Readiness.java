@@ -0,0 +1,174 @@
+package com.qa.base;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Waits for a page to settle using a single asynchronous script instead of
+ * WebDriver-side polling.
+ * <p>
+ * The injected probe tracks pending XHR and fetch calls, Angular zone stability,
+ * running CSS animations and transitions, scrolling and {@code document.readyState},
+ * and resolves once all of them have been quiet for {@link #QUIET_PERIOD}. Animations
+ * that repeat forever are ignored. The instrumentation is installed on the first call per
+ * document and reused afterwards.
+ * </p>
+ * <p>
+ * With {@code pool.contexts} above 1 the browser is shared by several sessions and runs one
+ * command at a time (see {@link SessionMultiplexer}), so the probe is evaluated by short
+ * synchronous polls through the {@link WaitEngine} instead; the shared script timeout is
+ * then left alone.
+ * </p>
+ */
+public final class Readiness {
+
+	// readiness.quiet.ms, 50 ms by default
+	public static final Duration QUIET_PERIOD = FrameworkConfig.get().readinessQuietPeriod();
+
+	// installs the instrumentation and defines busy(), which returns why the page is not idle
+	private static final String BUSY = String.join("\n",
+			"var quietMs = arguments[0];",
+			"var w = window, d = document;",
+			"var p = w.__qaReadiness;",
+			"if (!p) {",
+			"  p = w.__qaReadiness = { pending: 0, last: Date.now(), scrolledAt: 0 };",
+			"  var touch = function () { p.last = Date.now(); };",
+			"  var send = XMLHttpRequest.prototype.send;",
+			"  XMLHttpRequest.prototype.send = function () {",
+			"    p.pending++; touch();",
+			"    this.addEventListener('loadend', function () { p.pending--; touch(); });",
+			"    return send.apply(this, arguments);",
+			"  };",
+			"  if (w.fetch) {",
+			"    var fetch = w.fetch;",
+			"    w.fetch = function () {",
+			"      p.pending++; touch();",
+			"      var settle = function () { p.pending--; touch(); };",
+			"      var r = fetch.apply(this, arguments);",
+			"      r.then(settle, settle);",
+			"      return r;",
+			"    };",
+			"  }",
+			"  ['animationstart', 'animationend', 'transitionrun', 'transitionend'].forEach(function (e) {",
+			"    d.addEventListener(e, touch, true);",
+			"  });",
+			"  w.addEventListener('scroll', function () { p.scrolledAt = Date.now(); touch(); }, true);",
+			"}",
+			"var busy = function () {",
+			"  if (d.readyState !== 'complete') return 'document.readyState=' + d.readyState;",
+			"  if (p.pending > 0) return p.pending + ' pending XHR/fetch call(s)';",
+			"  if (w.getAllAngularTestabilities && !w.getAllAngularTestabilities().every(function (t) { return t.isStable(); }))",
+			"    return 'Angular zone not stable';",
+			"  if (d.getAnimations && d.getAnimations().some(function (a) {",
+			"    // an endless animation (spinner, carousel) never finishes, so it cannot be waited for",
+			"    return a.playState === 'running' && !(a.effect && a.effect.getComputedTiming().iterations === Infinity);",
+			"  }))",
+			"    return 'CSS animation running';",
+			"  if (Date.now() - p.scrolledAt < quietMs) return 'scrolling';",
+			"  if (Date.now() - p.last < quietMs) return 'recent activity';",
+			"  return null;",
+			"};");
+
+	static final String PROBE = String.join("\n", BUSY,
+			"var done = arguments[arguments.length - 1], budgetMs = arguments[1];",
+			"var start = Date.now();",
+			"(function check() {",
+			"  var reason = busy();",
+			"  if (reason === null) { done(null); return; }",
+			"  if (Date.now() - start >= budgetMs) { done(reason); return; }",
+			"  setTimeout(check, 10);",
+			"})();");
+
+	// one synchronous check, for browsers shared by several sessions
+	static final String POLL = BUSY + "\nreturn busy();";
+
+	private static final Map<WebDriver, ScriptTimeout> SCRIPT_TIMEOUTS = new ConcurrentHashMap<>();
+
+	private Readiness() {
+	}
+
+	/**
+	 * Waits until the page has no pending network calls, a stable Angular zone, no running
+	 * animations and no scrolling. The wait happens inside the browser, so it costs one
+	 * WebDriver round-trip regardless of how long the page takes to settle.
+	 *
+	 * @param driver  the session to probe
+	 * @param timeout the maximum time to wait, capped by the current {@link Step}
+	 * @throws TimeoutException if the page is still busy when the time is up
+	 */
+	public static void awaitIdle(WebDriver driver, Duration timeout) {
+		long budgetMs = TimeUnit.NANOSECONDS.toMillis(Step.deadlineFor(timeout) - System.nanoTime());
+		if (budgetMs <= 0) {
+			throw new TimeoutException("No time left to wait for the page to become idle");
+		}
+		if (FrameworkConfig.get().poolContexts() > 1) {
+			pollIdle(driver, budgetMs);
+			return;
+		}
+		ensureScriptTimeout(driver, budgetMs);
+		Object reason = ((JavascriptExecutor) driver).executeAsyncScript(PROBE, QUIET_PERIOD.toMillis(), budgetMs);
+		if (reason != null) {
+			throw new TimeoutException("Page did not become idle within " + budgetMs + " ms: " + reason);
+		}
+	}
+
+	private static void pollIdle(WebDriver driver, long budgetMs) {
+		Object[] reason = new Object[1];
+		try {
+			WaitEngine.of(driver).until(d -> {
+				reason[0] = ((JavascriptExecutor) d).executeScript(POLL, QUIET_PERIOD.toMillis());
+				return reason[0] == null;
+			}, Duration.ofMillis(budgetMs));
+		} catch (TimeoutException e) {
+			throw new TimeoutException("Page did not become idle within " + budgetMs + " ms: " + reason[0], e);
+		}
+	}
+
+	// the async probe must be allowed to outlive its own budget, so raise the session's
+	// script timeout once per borrow instead of querying it on every call
+	private static void ensureScriptTimeout(WebDriver driver, long budgetMs) {
+		ScriptTimeout current = SCRIPT_TIMEOUTS.get(driver);
+		if (current == null || current.raisedMs <= budgetMs) {
+			WebDriver.Timeouts timeouts = driver.manage().timeouts();
+			Duration original = current == null ? timeouts.getScriptTimeout() : current.original;
+			long timeout = Math.max(budgetMs, WaitEngine.DEFAULT_TIMEOUT.toMillis()) + 5000;
+			timeouts.scriptTimeout(Duration.ofMillis(timeout));
+			SCRIPT_TIMEOUTS.put(driver, new ScriptTimeout(original, timeout));
+		}
+	}
+
+	/**
+	 * Puts back the script timeout the session had before the probe raised it, so the next
+	 * borrower of a pooled session starts with the configured one.
+	 *
+	 * @param driver the session being returned to the pool
+	 */
+	static void restore(WebDriver driver) {
+		ScriptTimeout raised = SCRIPT_TIMEOUTS.remove(driver);
+		if (raised != null) {
+			driver.manage().timeouts().scriptTimeout(raised.original);
+		}
+	}
+
+	static void forget(WebDriver driver) {
+		SCRIPT_TIMEOUTS.remove(driver);
+	}
+
+	private static final class ScriptTimeout {
+		final Duration original;
+		final long raisedMs;
+
+		ScriptTimeout(Duration original, long raisedMs) {
+			this.original = original;
+			this.raisedMs = raisedMs;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Appends every test result to an NDJSON journal ({@code report.journal}) as soon as the
+ * test finishes.
+ * <p>
+ * Each line is a self-contained JSON object: {@code suite-start}, one {@code result} per
+ * test invocation (status, timings, parameters, error, retry attempt and failure category,
+ * command totals and the paths of the metrics file, failure screenshot and trace) and
+ * {@code suite-end} with the counts. A failed attempt that {@link SmartRetryAnalyzer}
+ * reran has the status {@code RETRY}. Nothing is kept in memory after a line is written,
+ * and each line goes to the file in a single append, so a crashed JVM loses at most the
+ * test that was running and several JVMs (for example shards) can share one journal.
+ * {@code report.fsync=true} also forces each line to disk. HTML is rendered from the
+ * journal afterwards by {@link com.qa.utilities.ReportRenderer}.
+ * </p>
+ * <p>
+ * Register it after {@link CommandMetricsListener}, which attaches the command statistics
+ * this listener reads.
+ * </p>
+ */
+public class ResultJournal implements ITestListener, ISuiteListener {
+
+	private static final Logger LOG = LogManager.getLogger(ResultJournal.class);
+
+	// identifies the lines of one JVM when several runs or shards append to the same journal
+	private static final String RUN = UUID.randomUUID().toString().substring(0, 8);
+	private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+	private static final int TOP_COMMANDS = 5;
+
+	private static final ReentrantLock LOCK = new ReentrantLock();
+	private static FileChannel channel;
+
+	private final LongAdder passed = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder retried = new LongAdder();
+
+	@Override
+	public void onStart(ISuite suite) {
+		JsonObject line = line("suite-start", suite.getName());
+		line.addProperty("startMillis", System.currentTimeMillis());
+		line.addProperty("jvm", ManagementFactory.getRuntimeMXBean().getName());
+		line.addProperty("browser", FrameworkConfig.get().browser());
+		append(line);
+	}
+
+	@Override
+	public void onTestSuccess(ITestResult result) {
+		passed.increment();
+		append(result(result, "PASS"));
+	}
+
+	@Override
+	public void onTestFailure(ITestResult result) {
+		failed.increment();
+		append(result(result, "FAIL"));
+	}
+
+	@Override
+	public void onTestSkipped(ITestResult result) {
+		if (result.wasRetried()) {
+			retried.increment();
+			append(result(result, "RETRY"));
+		} else {
+			skipped.increment();
+			append(result(result, "SKIP"));
+		}
+	}
+
+	@Override
+	public void onTestFailedButWithinSuccessPercentage(ITestResult result) {
+		passed.increment();
+		append(result(result, "PASS"));
+	}
+
+	@Override
+	public void onFinish(ISuite suite) {
+		JsonObject line = line("suite-end", suite.getName());
+		line.addProperty("endMillis", System.currentTimeMillis());
+		line.addProperty("passed", passed.sum());
+		line.addProperty("failed", failed.sum());
+		line.addProperty("skipped", skipped.sum());
+		line.addProperty("retried", retried.sum());
+		append(line);
+	}
+
+	private static JsonObject result(ITestResult result, String status) {
+		JsonObject line = line("result", result.getTestContext().getSuite().getName());
+		line.addProperty("test", result.getTestContext().getName());
+		line.addProperty("class", result.getTestClass().getName());
+		line.addProperty("method", result.getMethod().getMethodName());
+		line.addProperty("status", status);
+		line.addProperty("startMillis", result.getStartMillis());
+		line.addProperty("endMillis", result.getEndMillis());
+		line.addProperty("durationMs", result.getEndMillis() - result.getStartMillis());
+		line.addProperty("thread", Thread.currentThread().getName());
+		Object attempt = result.getAttribute(SmartRetryAnalyzer.ATTEMPT);
+		if (attempt != null) {
+			line.addProperty("attempt", (Integer) attempt);
+		}
+		addString(line, "category", result.getAttribute(SmartRetryAnalyzer.CATEGORY));
+		JsonArray parameters = new JsonArray();
+		for (Object parameter : result.getParameters()) {
+			parameters.add(String.valueOf(parameter));
+		}
+		line.add("parameters", parameters);
+		Throwable error = result.getThrowable();
+		if (error != null) {
+			JsonObject json = new JsonObject();
+			json.addProperty("type", error.getClass().getName());
+			json.addProperty("message", String.valueOf(error.getMessage()));
+			StackTraceElement[] trace = error.getStackTrace();
+			if (trace.length > 0) {
+				json.addProperty("at", trace[0].toString());
+			}
+			line.add("error", json);
+		}
+		Object stats = result.getAttribute(CommandMetricsListener.RESULT_ATTRIBUTE);
+		if (stats instanceof CommandStats) {
+			JsonObject full = ((CommandStats) stats).toJson();
+			JsonObject commands = new JsonObject();
+			commands.add("count", full.get("commands"));
+			commands.add("totalMs", full.get("totalMs"));
+			JsonArray top = new JsonArray();
+			JsonArray byCommand = full.getAsJsonArray("byCommand");
+			for (int i = 0; i < Math.min(TOP_COMMANDS, byCommand.size()); i++) {
+				top.add(byCommand.get(i));
+			}
+			commands.add("top", top);
+			line.add("commands", commands);
+		}
+		addString(line, "metrics", result.getAttribute(CommandMetricsListener.FILE_ATTRIBUTE));
+		addString(line, "screenshot", result.getAttribute(ScreenshotListener.RESULT_ATTRIBUTE));
+		addString(line, "trace", result.getAttribute(TraceListener.RESULT_ATTRIBUTE));
+		return line;
+	}
+
+	private static JsonObject line(String type, String suite) {
+		JsonObject line = new JsonObject();
+		line.addProperty("type", type);
+		line.addProperty("run", RUN);
+		line.addProperty("suite", suite);
+		return line;
+	}
+
+	private static void addString(JsonObject line, String name, Object value) {
+		if (value != null) {
+			line.addProperty(name, value.toString());
+		}
+	}
+
+	private static void append(JsonObject line) {
+		byte[] bytes = (GSON.toJson(line) + "\n").getBytes(StandardCharsets.UTF_8);
+		LOCK.lock();
+		try {
+			FileChannel out = open();
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.hasRemaining()) {
+				out.write(buffer);
+			}
+			if (FrameworkConfig.get().reportFsync()) {
+				out.force(false);
+			}
+		} catch (IOException e) {
+			LOG.error("Could not append to the result journal: {}", e.getMessage());
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	private static FileChannel open() throws IOException {
+		if (channel == null) {
+			Path file = FrameworkConfig.get().reportJournal().toAbsolutePath();
+			Files.createDirectories(file.getParent());
+			channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND);
+			Runtime.getRuntime().addShutdownHook(new Thread(ResultJournal::close, "result-journal-close"));
+		}
+		return channel;
+	}
+
+	private static void close() {
+		LOCK.lock();
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// the JVM is exiting; every line has already been written
+		} finally {
+			LOCK.unlock();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.qa.base;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriver;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestResult;
+
+/**
+ * Captures the browser of a failed test through {@link ScreenshotService} and waits for
+ * pending screenshots to be written when the suite finishes. The capture runs right
+ * after the test method returns, before {@link DriverPoolListener} hands the session
+ * back to the pool, so the screenshot shows the page the test failed on.
+ */
+public class ScreenshotListener implements IInvokedMethodListener, ISuiteListener {
+
+	private static final Logger LOG = LogManager.getLogger(ScreenshotListener.class);
+
+	public static final String RESULT_ATTRIBUTE = "screenshot";
+
+	@Override
+	public void afterInvocation(IInvokedMethod method, ITestResult result) {
+		if (!method.isTestMethod() || (result.getStatus() != ITestResult.FAILURE && result.getThrowable() == null)) {
+			return;
+		}
+		WebDriver driver = DriverManager.getDriver();
+		if (driver == null) {
+			return;
+		}
+		try {
+			Path file = ScreenshotService.get().captureFailure(driver,
+					result.getMethod().getQualifiedName() + "-" + result.getStartMillis());
+			if (file != null) {
+				result.setAttribute(RESULT_ATTRIBUTE, file.toString());
+			}
+		} catch (RuntimeException e) {
+			LOG.error("Could not capture failure screenshot: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public void onFinish(ISuite suite) {
+		if (!ScreenshotService.get().flush(Duration.ofSeconds(30))) {
+			LOG.warn("Some screenshots were still being written when the suite finished");
+		}
+	}
+}
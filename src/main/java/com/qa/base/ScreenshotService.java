@@ -0,0 +1,283 @@
+package com.qa.base;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Takes screenshots on the test thread and writes them on a background thread.
+ * <p>
+ * The test thread only asks the browser for the PNG bytes and queues them. A single
+ * daemon writer creates the parent directories and writes the file through NIO; targets
+ * ending in {@code .jpg} or {@code .jpeg} are re-encoded as JPEG on the writer thread.
+ * The queue is bounded by {@code screenshot.queue.size}; when it is full the frame is
+ * written on the calling thread instead of being dropped. A frame identical to the last
+ * one written for the same session is linked to (or copied from) that file rather than
+ * written again.
+ * </p>
+ * <p>
+ * {@code screenshot.mode} selects what is captured: {@code always} (explicit captures
+ * and failures, the default), {@code failure} (failures only) or {@code off}.
+ * </p>
+ */
+public final class ScreenshotService {
+
+	private static final Logger LOG = LogManager.getLogger(ScreenshotService.class);
+
+	public enum Mode {
+		ALWAYS, FAILURE, OFF
+	}
+
+	// created on first use, so a bad screenshot.mode fails that call instead of the class
+	private static volatile ScreenshotService instance;
+
+	private final Mode mode;
+	private final Path directory;
+	private final BlockingQueue<Frame> queue;
+	private final Map<WebDriver, Frame> lastFrames = new ConcurrentHashMap<>();
+	private final Object idle = new Object();
+	private int pending;
+
+	ScreenshotService(Mode mode, Path directory, int queueSize) {
+		this.mode = mode;
+		this.directory = directory;
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+		Thread writer = new Thread(this::drain, "screenshot-writer");
+		writer.setDaemon(true);
+		writer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(Duration.ofSeconds(10)), "screenshot-flush"));
+	}
+
+	public static ScreenshotService get() {
+		ScreenshotService result = instance;
+		if (result == null) {
+			synchronized (ScreenshotService.class) {
+				result = instance;
+				if (result == null) {
+					FrameworkConfig config = FrameworkConfig.get();
+					result = new ScreenshotService(Mode.valueOf(config.screenshotMode().toUpperCase(Locale.ROOT)),
+							config.screenshotDir(), config.screenshotQueueSize());
+					instance = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	public Mode mode() {
+		return mode;
+	}
+
+	/**
+	 * Captures the current browser window to {@code target} unless captures are limited
+	 * to failures or switched off. The file is written asynchronously; call
+	 * {@link #flush(Duration)} to wait for it.
+	 *
+	 * @param driver the session to capture
+	 * @param target the file to write
+	 * @return the target, or null if nothing was captured
+	 */
+	public Path capture(WebDriver driver, Path target) {
+		return mode == Mode.ALWAYS ? submit(driver, target) : null;
+	}
+
+	/**
+	 * Captures the current browser window for a failed test into the screenshot
+	 * directory, unless screenshots are switched off.
+	 *
+	 * @param driver the session to capture
+	 * @param name the file name without extension
+	 * @return the target file, or null if nothing was captured
+	 */
+	public Path captureFailure(WebDriver driver, String name) {
+		if (mode == Mode.OFF) {
+			return null;
+		}
+		return submit(driver, directory.resolve(name.replaceAll("[^A-Za-z0-9._-]", "_") + ".png"));
+	}
+
+	/**
+	 * Waits until every queued frame has been written.
+	 *
+	 * @param timeout the longest time to wait
+	 * @return true if the queue drained in time
+	 */
+	public boolean flush(Duration timeout) {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		synchronized (idle) {
+			while (pending > 0) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				try {
+					TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	static void forget(WebDriver driver) {
+		ScreenshotService service = instance;
+		if (service != null) {
+			service.lastFrames.remove(driver);
+		}
+	}
+
+	private Path submit(WebDriver driver, Path target) {
+		byte[] png = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+		Frame frame = new Frame(png, target, digest(png));
+		Frame previous = lastFrames.put(driver, frame);
+		if (previous != null && Arrays.equals(previous.digest, frame.digest)) {
+			frame.duplicateOf = previous;
+		}
+		synchronized (idle) {
+			pending++;
+		}
+		if (!queue.offer(frame)) {
+			write(frame);
+		}
+		return target;
+	}
+
+	private void drain() {
+		while (true) {
+			try {
+				write(queue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private void write(Frame frame) {
+		try {
+			Path parent = frame.target.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			if (frame.duplicateOf == null || !reuse(frame)) {
+				replace(frame.target, encode(frame));
+			}
+			frame.written = true;
+			frame.png = null;
+		} catch (IOException | RuntimeException e) {
+			LOG.error("Could not write screenshot {}: {}", frame.target, e.getMessage());
+		} finally {
+			synchronized (idle) {
+				pending--;
+				idle.notifyAll();
+			}
+		}
+	}
+
+	// a duplicate frame becomes a hard link to the previous file, or a copy where links are not supported
+	private boolean reuse(Frame frame) throws IOException {
+		Frame source = frame.duplicateOf;
+		frame.duplicateOf = null;
+		if (!source.written || source.target.equals(frame.target) || !sameFormat(source.target, frame.target)) {
+			return false;
+		}
+		Files.deleteIfExists(frame.target);
+		try {
+			Files.createLink(frame.target, source.target);
+		} catch (IOException | UnsupportedOperationException e) {
+			Files.copy(source.target, frame.target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return true;
+	}
+
+	// writes a new file and moves it into place, so a file that is hard-linked to the target
+	// by an earlier duplicate frame keeps its content
+	private static void replace(Path target, byte[] bytes) throws IOException {
+		Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temp, bytes);
+			try {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static byte[] encode(Frame frame) throws IOException {
+		if (!isJpeg(frame.target)) {
+			return frame.png;
+		}
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(frame.png));
+		BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = rgb.createGraphics();
+		graphics.drawImage(image, 0, 0, Color.WHITE, null);
+		graphics.dispose();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(frame.png.length / 2);
+		ImageIO.write(rgb, "jpg", out);
+		return out.toByteArray();
+	}
+
+	private static boolean sameFormat(Path a, Path b) {
+		return isJpeg(a) == isJpeg(b);
+	}
+
+	private static boolean isJpeg(Path file) {
+		String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+		return name.endsWith(".jpg") || name.endsWith(".jpeg");
+	}
+
+	private static byte[] digest(byte[] png) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(png);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Frame {
+
+		final Path target;
+		final byte[] digest;
+		// released once written so the last frame kept per session holds only its digest
+		volatile byte[] png;
+		volatile Frame duplicateOf;
+		volatile boolean written;
+
+		Frame(byte[] png, Path target, byte[] digest) {
+			this.png = png;
+			this.target = target;
+			this.digest = digest;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Logs each user in once and replays the resulting session into other browsers.
+ * <p>
+ * With {@code session.login.mode=api} the user is authenticated by posting the
+ * credentials to {@code session.login.url}; the returned token is stored in
+ * localStorage the way the application's own login does. With {@code ui} the first
+ * test of a user logs in through the page and its cookies and localStorage are
+ * captured. Sessions are cached per user for {@code session.ttl.minutes}; {@code off}
+ * disables the bootstrap so every test logs in through the UI.
+ * </p>
+ */
+public final class SessionBootstrap {
+
+	private static final Logger LOG = LogManager.getLogger(SessionBootstrap.class);
+
+	private static final int HTTP_TIMEOUT_MS = 30_000;
+
+	private static final String READ_STORAGE = "var s = {}; for (var i = 0; i < localStorage.length; i++) {"
+			+ " var k = localStorage.key(i); s[k] = localStorage.getItem(k); } return s;";
+	private static final String WRITE_STORAGE = "var s = arguments[0]; for (var k in s) { localStorage.setItem(k, s[k]); }";
+
+	private static final SessionBootstrap INSTANCE = new SessionBootstrap();
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	// a lock rather than synchronized: a virtual thread blocked on the login request inside
+	// a synchronized block would pin its carrier thread
+	private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+	private SessionBootstrap() {
+	}
+
+	public static SessionBootstrap get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Makes the browser authenticated as the given user. The browser is left on a page
+	 * of the application's origin with the session's cookies and localStorage in place;
+	 * the caller then navigates to the page it needs. Cached sessions are injected on the
+	 * configured {@code url}, which must therefore be on the same origin.
+	 *
+	 * @param driver   the browser to authenticate
+	 * @param username the user to log in as
+	 * @param password the user's password
+	 * @param uiLogin  logs in through the login page of {@code driver}; used in {@code ui}
+	 *                 mode when no cached session exists
+	 * @return false if the bootstrap is switched off and the caller has to log in itself
+	 */
+	public boolean authenticate(WebDriver driver, String username, String password, Runnable uiLogin) {
+		FrameworkConfig config = FrameworkConfig.get();
+		String mode = config.sessionLoginMode();
+		if ("off".equalsIgnoreCase(mode)) {
+			return false;
+		}
+		Session session = sessions.get(username);
+		if (session == null || session.isExpired()) {
+			ReentrantLock lock = locks.computeIfAbsent(username, u -> new ReentrantLock());
+			lock.lock();
+			try {
+				session = sessions.get(username);
+				if (session == null || session.isExpired()) {
+					long start = System.currentTimeMillis();
+					boolean ui = "ui".equalsIgnoreCase(mode);
+					session = ui ? loginThroughUi(driver, uiLogin) : loginThroughApi(username, password);
+					sessions.put(username, session);
+					LOG.info("Logged in {} through the {} in {} ms; session cached for {} min", username, ui ? "UI" : "API",
+							System.currentTimeMillis() - start, config.sessionTtl().toMinutes());
+					if (ui) {
+						// this browser performed the login itself and already holds the session
+						return true;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		// cookies and localStorage can only be set on a page of the application's origin
+		driver.get(config.baseUrl());
+		for (Cookie cookie : session.cookies) {
+			driver.manage().addCookie(cookie);
+		}
+		if (!session.storage.isEmpty()) {
+			((JavascriptExecutor) driver).executeScript(WRITE_STORAGE, session.storage);
+		}
+		return true;
+	}
+
+	/**
+	 * Drops the cached session of a user, for example after the application rejected it.
+	 *
+	 * @param username the user
+	 */
+	public void invalidate(String username) {
+		sessions.remove(username);
+	}
+
+	private Session loginThroughUi(WebDriver driver, Runnable uiLogin) {
+		String loginUrl = FrameworkConfig.get().baseUrl();
+		driver.get(loginUrl);
+		uiLogin.run();
+		WaitEngine.of(driver).until(d -> !loginUrl.equals(d.getCurrentUrl()), WaitEngine.DEFAULT_TIMEOUT);
+		Readiness.awaitIdle(driver, WaitEngine.DEFAULT_TIMEOUT);
+		@SuppressWarnings("unchecked")
+		Map<String, String> storage = (Map<String, String>) ((JavascriptExecutor) driver).executeScript(READ_STORAGE);
+		return new Session(new ArrayList<>(driver.manage().getCookies()), storage);
+	}
+
+	private Session loginThroughApi(String username, String password) {
+		JsonObject body = new JsonObject();
+		body.addProperty("userEmail", username);
+		body.addProperty("userPassword", password);
+		String url = FrameworkConfig.get().sessionLoginUrl();
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+			connection.setConnectTimeout(HTTP_TIMEOUT_MS);
+			connection.setReadTimeout(HTTP_TIMEOUT_MS);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/json");
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.toString().getBytes(StandardCharsets.UTF_8));
+			}
+			int status = connection.getResponseCode();
+			// a bare 401 or 5xx has no error body at all
+			String response = read(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+			JsonElement token = status < 400 ? token(response) : null;
+			if (token == null || token.isJsonNull()) {
+				throw new IllegalStateException("Login API rejected " + username + " with HTTP " + status
+						+ (response.isEmpty() ? "" : ": " + response));
+			}
+			Map<String, String> storage = new HashMap<>();
+			storage.put("token", token.getAsString());
+			return new Session(Collections.<Cookie>emptyList(), storage);
+		} catch (IOException e) {
+			throw new IllegalStateException("Login API call to " + url + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	private static String read(InputStream stream) throws IOException {
+		if (stream == null) {
+			return "";
+		}
+		StringBuilder text = new StringBuilder();
+		char[] buffer = new char[4096];
+		try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+			int n;
+			while ((n = reader.read(buffer)) > 0) {
+				text.append(buffer, 0, n);
+			}
+		}
+		return text.toString().trim();
+	}
+
+	private static JsonElement token(String response) {
+		try {
+			JsonElement json = JsonParser.parseString(response);
+			return json.isJsonObject() ? json.getAsJsonObject().get("token") : null;
+		} catch (JsonParseException e) {
+			return null;
+		}
+	}
+
+	private static final class Session {
+
+		final List<Cookie> cookies;
+		final Map<String, String> storage;
+		final long expiresAt;
+
+		Session(List<Cookie> cookies, Map<String, String> storage) {
+			this.cookies = cookies;
+			this.storage = storage;
+			this.expiresAt = System.currentTimeMillis() + FrameworkConfig.get().sessionTtl().toMillis();
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() >= expiresAt;
+		}
+	}
+}
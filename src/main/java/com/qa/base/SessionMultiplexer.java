@@ -0,0 +1,405 @@
+package com.qa.base;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.NoSuchFrameException;
+import org.openqa.selenium.NoSuchWindowException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WindowType;
+import org.openqa.selenium.bidi.BiDiException;
+import org.openqa.selenium.bidi.browsingcontext.BrowsingContext;
+import org.openqa.selenium.bidi.browsingcontext.CreateContextParameters;
+import org.openqa.selenium.bidi.module.Browser;
+import org.openqa.selenium.devtools.DevToolsException;
+import org.openqa.selenium.support.decorators.Decorated;
+import org.openqa.selenium.support.decorators.WebDriverDecorator;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Hosts several isolated sessions in one browser process.
+ * <p>
+ * With {@code pool.contexts} above 1, {@link DriverManager} asks the multiplexer instead of
+ * {@link LaunchProfile} for each pooled session. Every session gets its own BiDi user
+ * context (separate cookies, storage and cache) with its own window, and is handed out as
+ * a {@link WebDriver} view of the shared browser; up to {@code pool.contexts} views share a
+ * browser before the next one is launched. Memory per concurrent test drops accordingly.
+ * </p>
+ * <p>
+ * A browser runs one WebDriver command at a time, so the views of a browser take turns:
+ * each command locks the browser and first switches to the view's window if another view
+ * used it last. Tests mostly wait for the application, which keeps the turns short;
+ * {@link Readiness} polls with short scripts instead of one long asynchronous script for
+ * the same reason. While a view is inside a frame the other views wait, since switching
+ * windows would lose the frame; navigating or returning to the top-level document ends
+ * the wait, and so does {@code pool.frame.pin.timeout} without a command from that view.
+ * A view whose frame was taken that way gets a {@link NoSuchFrameException} on its next
+ * command inside the frame. Window handles opened by a view (pop-ups) become its own when
+ * it first lists them. Timeouts are per browser and therefore shared by its views, and
+ * DevTools is not offered on a view, so {@link NetworkControl} and the
+ * {@link PageSnapshot} change notifications are skipped for multiplexed sessions.
+ * </p>
+ */
+public final class SessionMultiplexer {
+
+	private static final Logger LOG = LogManager.getLogger(SessionMultiplexer.class);
+
+	private static final SessionMultiplexer INSTANCE = new SessionMultiplexer();
+
+	private final List<Host> hosts = new ArrayList<>();
+
+	private SessionMultiplexer() {
+	}
+
+	public static SessionMultiplexer get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Opens a new isolated session in a browser that has room for it, launching a browser
+	 * when all are full.
+	 *
+	 * @param browserName chrome or firefox; the browser must support BiDi user contexts
+	 * @return a view that behaves like a browser of its own; {@code quit()} closes only the view
+	 */
+	public WebDriver open(String browserName) {
+		Host host = reserve(browserName);
+		try {
+			return host.open();
+		} catch (RuntimeException e) {
+			release(host);
+			throw e;
+		}
+	}
+
+	private synchronized Host reserve(String browserName) {
+		int capacity = FrameworkConfig.get().poolContexts();
+		for (Host host : hosts) {
+			if (host.browserName.equals(browserName) && host.views < capacity) {
+				host.views++;
+				return host;
+			}
+		}
+		Host host = new Host(browserName);
+		host.views++;
+		hosts.add(host);
+		return host;
+	}
+
+	private void release(Host host) {
+		boolean last;
+		synchronized (this) {
+			host.views--;
+			last = host.views == 0;
+			if (last) {
+				hosts.remove(host);
+			}
+		}
+		if (last) {
+			host.quit();
+		}
+	}
+
+	/**
+	 * @return the number of browser processes currently hosting views
+	 */
+	public synchronized int browsers() {
+		return hosts.size();
+	}
+
+	// one shared browser process
+	private final class Host {
+		final String browserName;
+		final ReentrantLock lock = new ReentrantLock();
+		final Condition unpinned = lock.newCondition();
+		final List<View> live = new ArrayList<>();
+		int views;
+		private WebDriver browser;
+		private String home;
+		// the window the browser's commands currently go to
+		String active;
+		// the view inside a frame, which the others wait for, and when its pin runs out
+		private View pinned;
+		private long pinExpiry;
+
+		Host(String browserName) {
+			this.browserName = browserName;
+		}
+
+		WebDriver open() {
+			synchronized (this) {
+				if (browser == null) {
+					browser = LaunchProfile.active().launch(browserName);
+					home = browser.getWindowHandle();
+					active = home;
+				}
+			}
+			View view;
+			lock.lock();
+			try {
+				String userContext = new Browser(browser).createUserContext();
+				String window = new BrowsingContext(browser,
+						new CreateContextParameters(WindowType.WINDOW).userContext(userContext)).getId();
+				view = new View(this, userContext, window);
+				live.add(view);
+			} finally {
+				lock.unlock();
+			}
+			WebDriver driver = view.attach(browser);
+			try {
+				LaunchProfile.active().sizeWindow(driver);
+			} catch (RuntimeException e) {
+				forget(view);
+				throw e;
+			}
+			return driver;
+		}
+
+		void close(View view) {
+			forget(view);
+			release(this);
+		}
+
+		private void forget(View view) {
+			lock.lock();
+			try {
+				try {
+					// removing the user context closes its windows
+					new Browser(browser).removeUserContext(view.userContext);
+				} catch (RuntimeException e) {
+					LOG.warn("Failed to remove browser context {}: {}", view.userContext, e.getMessage());
+				}
+				if (view.handles.contains(active)) {
+					active = null;
+				}
+				live.remove(view);
+				view.frameDepth = 0;
+				pin(view);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		// called with the lock held: waits while another view is inside a frame, taking the
+		// browser from it once its pin has run out
+		void awaitTurn(View view) {
+			while (pinned != null && pinned != view) {
+				long left = pinExpiry - System.nanoTime();
+				if (left <= 0) {
+					LOG.warn("Browser context {} stayed in a frame for {} s without a command; releasing it",
+							pinned.userContext, FrameworkConfig.get().poolFramePinTimeout().getSeconds());
+					pinned.frameDepth = 0;
+					pinned.frameLost = true;
+					pinned = null;
+					return;
+				}
+				try {
+					unpinned.awaitNanos(left);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new WebDriverException("Interrupted while waiting for the shared browser", e);
+				}
+			}
+		}
+
+		// called with the lock held after each command of the view
+		void pin(View view) {
+			if (view.frameDepth > 0) {
+				pinned = view;
+				pinExpiry = System.nanoTime() + FrameworkConfig.get().poolFramePinTimeout().toNanos();
+			} else if (pinned == view) {
+				pinned = null;
+				unpinned.signalAll();
+			}
+		}
+
+		boolean ownedByOther(View view, String window) {
+			lock.lock();
+			try {
+				for (View other : live) {
+					if (other != view && other.handles.contains(window)) {
+						return true;
+					}
+				}
+				return window.equals(home);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		// windows no view has claimed yet, e.g. a pop-up one of them opened
+		Set<String> unclaimed(Set<String> all) {
+			Set<String> free = new LinkedHashSet<>(all);
+			free.remove(home);
+			for (View view : live) {
+				free.removeAll(view.handles);
+			}
+			return free;
+		}
+
+		void quit() {
+			try {
+				if (browser != null) {
+					browser.quit();
+				}
+			} catch (Exception e) {
+				LOG.warn("Failed to quit multiplexed browser: {}", e.getMessage());
+			}
+		}
+	}
+
+	// one isolated session: a user context and the windows opened in it
+	private final class View extends WebDriverDecorator<WebDriver> {
+		final Host host;
+		final String userContext;
+		final Set<String> handles = new LinkedHashSet<>();
+		String current;
+		int frameDepth;
+		boolean frameLost;
+		private WebDriver proxy;
+		private boolean closed;
+
+		View(Host host, String userContext, String window) {
+			this.host = host;
+			this.userContext = userContext;
+			this.current = window;
+			this.handles.add(window);
+		}
+
+		WebDriver attach(WebDriver browser) {
+			proxy = decorate(browser);
+			return proxy;
+		}
+
+		@Override
+		public Object call(Decorated<?> target, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			boolean onDriver = target.getOriginal() == host.browser;
+			if (onDriver) {
+				switch (name) {
+				case "quit":
+					if (!closed) {
+						closed = true;
+						host.close(this);
+					}
+					return null;
+				case "getDevTools":
+					throw new DevToolsException("DevTools is not available on a multiplexed session");
+				case "getBiDi":
+					throw new BiDiException("BiDi is not available on a multiplexed session");
+				case "maybeGetDevTools":
+				case "maybeGetBiDi":
+					return Optional.empty();
+				case "equals":
+				case "hashCode":
+				case "toString":
+					return super.call(target, method, args);
+				default:
+					break;
+				}
+			}
+			if (target.getOriginal() instanceof WebDriver.TargetLocator && name.equals("newWindow")) {
+				return newWindow((WindowType) args[0]);
+			}
+			if (target.getOriginal() instanceof WebDriver.TargetLocator && name.equals("window")
+					&& host.ownedByOther(this, (String) args[0])) {
+				throw new NoSuchWindowException("Window " + args[0] + " belongs to another multiplexed session");
+			}
+			host.lock.lock();
+			try {
+				host.awaitTurn(this);
+				if (frameLost) {
+					frameLost = false;
+					if (!leavesFrame(target.getOriginal(), name)) {
+						throw new NoSuchFrameException("The frame was released after pool.frame.pin.timeout so other "
+								+ "sessions could use the browser; switch to it again");
+					}
+				}
+				activate();
+				if (onDriver && name.equals("getWindowHandles")) {
+					return windowHandles();
+				}
+				Object result = super.call(target, method, args);
+				track(target.getOriginal(), name, args);
+				return result;
+			} finally {
+				host.pin(this);
+				host.lock.unlock();
+			}
+		}
+
+		private boolean leavesFrame(Object target, String name) {
+			return target instanceof WebDriver.TargetLocator || target instanceof WebDriver.Navigation
+					|| target == host.browser && (name.equals("get") || name.equals("close"));
+		}
+
+		private void activate() {
+			if (!current.equals(host.active)) {
+				host.browser.switchTo().window(current);
+				host.active = current;
+				frameDepth = 0;
+			}
+		}
+
+		// follows the window and frame the browser is switched to after a command
+		private void track(Object target, String name, Object[] args) {
+			if (target instanceof WebDriver.TargetLocator) {
+				if (name.equals("window")) {
+					current = (String) args[0];
+					handles.add(current);
+					host.active = current;
+					frameDepth = 0;
+				} else if (name.equals("frame")) {
+					frameDepth++;
+				} else if (name.equals("parentFrame")) {
+					frameDepth = Math.max(0, frameDepth - 1);
+				} else if (name.equals("defaultContent")) {
+					frameDepth = 0;
+				}
+			} else if (target instanceof WebDriver.Navigation || target == host.browser && name.equals("get")) {
+				// navigating goes back to the top-level document
+				frameDepth = 0;
+			} else if (target == host.browser && name.equals("close")) {
+				handles.remove(current);
+				host.active = null;
+				frameDepth = 0;
+			}
+		}
+
+		private Set<String> windowHandles() {
+			Set<String> all = host.browser.getWindowHandles();
+			handles.retainAll(all);
+			handles.addAll(host.unclaimed(all));
+			return new LinkedHashSet<>(handles);
+		}
+
+		private WebDriver newWindow(WindowType type) {
+			host.lock.lock();
+			try {
+				host.awaitTurn(this);
+				frameLost = false;
+				String window = new BrowsingContext(host.browser,
+						new CreateContextParameters(type).userContext(userContext)).getId();
+				handles.add(window);
+				current = window;
+				activate();
+				// the new window is a top-level document, so a frame pin ends here
+				frameDepth = 0;
+			} finally {
+				host.pin(this);
+				host.lock.unlock();
+			}
+			return proxy;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.qa.base;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IRetryAnalyzer;
+import org.testng.ITestResult;
+
+import com.qa.base.FailureClassifier.Category;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Retries a failed test at once when {@link FailureClassifier} says a rerun can fix it.
+ * <p>
+ * Only the categories in {@code retry.categories} are retried (infrastructure, timing and
+ * stale element failures by default), each invocation at most {@code retry.max} times, and
+ * the whole JVM at most {@code retry.budget.attempts} times and for at most
+ * {@code retry.budget.seconds} of rerun time, so a broken environment cannot double the
+ * length of the run. Before a retry the test's browser session is discarded, so the rerun
+ * borrows a fresh or differently used session from the pool.
+ * </p>
+ * <p>
+ * {@link SmartRetryListener} installs this analyzer on every test and charges the cost of
+ * each rerun to the budget. Each result carries the {@link #ATTEMPT} and, for failures, the
+ * {@link #CATEGORY} attribute.
+ * </p>
+ */
+public class SmartRetryAnalyzer implements IRetryAnalyzer {
+
+	private static final Logger LOG = LogManager.getLogger(SmartRetryAnalyzer.class);
+
+	public static final String ATTEMPT = "attempt";
+	public static final String CATEGORY = "failureCategory";
+
+	private static final AtomicInteger BUDGET_USED = new AtomicInteger();
+	private static final LongAdder RERUN_MILLIS = new LongAdder();
+
+	// TestNG keeps one analyzer per test method and parameter set
+	private final AtomicInteger retries = new AtomicInteger();
+
+	@Override
+	public boolean retry(ITestResult result) {
+		FrameworkConfig config = FrameworkConfig.get();
+		Category category = FailureClassifier.classify(result.getThrowable());
+		String test = result.getMethod().getQualifiedName();
+		if (!config.retryEnabled() || !retriable(config).contains(category)) {
+			return false;
+		}
+		if (retries.get() >= config.retryMax()) {
+			LOG.info("Not retrying {} ({}): already retried {} time(s)", test, category, retries.get());
+			return false;
+		}
+		long spent = RERUN_MILLIS.sum();
+		if (spent >= config.retryBudgetTime().toMillis() || !takeBudget(config.retryBudgetAttempts())) {
+			LOG.info("Not retrying {} ({}): retry budget used up ({} attempt(s), {} s)", test, category,
+					BUDGET_USED.get(), spent / 1000);
+			return false;
+		}
+		int attempt = retries.incrementAndGet() + 1;
+		LOG.info("Retrying {} after a {} failure (attempt {}): {}", test, category, attempt,
+				result.getThrowable().getClass().getSimpleName());
+		// a fresh session rules out a browser left in a bad state by the failed attempt
+		if (DriverManager.getDriver() != null) {
+			DriverManager.getPool().discardCurrent();
+		}
+		return true;
+	}
+
+	/**
+	 * @return the attempt the next result of this test belongs to, counting from 1
+	 */
+	int currentAttempt() {
+		return retries.get() + 1;
+	}
+
+	static void chargeRerun(long millis) {
+		RERUN_MILLIS.add(millis);
+	}
+
+	static int budgetUsed() {
+		return BUDGET_USED.get();
+	}
+
+	static long rerunMillis() {
+		return RERUN_MILLIS.sum();
+	}
+
+	private static boolean takeBudget(int limit) {
+		while (true) {
+			int used = BUDGET_USED.get();
+			if (used >= limit) {
+				return false;
+			}
+			if (BUDGET_USED.compareAndSet(used, used + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private static Set<Category> retriable(FrameworkConfig config) {
+		Set<Category> categories = EnumSet.noneOf(Category.class);
+		for (String name : config.retryCategories()) {
+			try {
+				categories.add(Category.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalStateException("Unknown failure category in retry.categories: " + name, e);
+			}
+		}
+		return categories;
+	}
+}
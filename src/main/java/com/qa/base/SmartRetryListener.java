@@ -0,0 +1,81 @@
+package com.qa.base;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IAnnotationTransformer;
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.IRetryAnalyzer;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestResult;
+import org.testng.annotations.ITestAnnotation;
+import org.testng.internal.annotations.DisabledRetryAnalyzer;
+
+/**
+ * Puts {@link SmartRetryAnalyzer} on every test that has no retry analyzer of its own,
+ * tags each result with its attempt number and failure category, charges reruns to the
+ * retry budget and prints a summary when the suite finishes. Register it in testng.xml
+ * under {@code <listeners>}; annotation transformers cannot be added any other way.
+ */
+public class SmartRetryListener implements IAnnotationTransformer, IInvokedMethodListener, ISuiteListener {
+
+	private static final Logger LOG = LogManager.getLogger(SmartRetryListener.class);
+
+	private final Map<String, LongAdder> failuresByCategory = new ConcurrentHashMap<>();
+	private final LongAdder passedOnRetry = new LongAdder();
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+		Class<? extends IRetryAnalyzer> current = annotation.getRetryAnalyzerClass();
+		if (current == null || current == DisabledRetryAnalyzer.class) {
+			annotation.setRetryAnalyzer(SmartRetryAnalyzer.class);
+		}
+	}
+
+	// runs before the retry decision and before the ITestListeners, so every listener sees the attributes
+	@Override
+	public void afterInvocation(IInvokedMethod method, ITestResult result) {
+		if (!method.isTestMethod()) {
+			return;
+		}
+		IRetryAnalyzer analyzer = result.getMethod().getRetryAnalyzer(result);
+		if (!(analyzer instanceof SmartRetryAnalyzer)) {
+			return;
+		}
+		int attempt = ((SmartRetryAnalyzer) analyzer).currentAttempt();
+		result.setAttribute(SmartRetryAnalyzer.ATTEMPT, attempt);
+		if (result.getThrowable() != null) {
+			result.setAttribute(SmartRetryAnalyzer.CATEGORY, FailureClassifier.classify(result.getThrowable()).name());
+		}
+		if (attempt > 1) {
+			SmartRetryAnalyzer.chargeRerun(result.getEndMillis() - result.getStartMillis());
+			if (result.getStatus() == ITestResult.SUCCESS) {
+				passedOnRetry.increment();
+			}
+		}
+		if (result.getStatus() == ITestResult.FAILURE && result.getThrowable() != null) {
+			failuresByCategory.computeIfAbsent(FailureClassifier.classify(result.getThrowable()).name(),
+					c -> new LongAdder()).increment();
+		}
+	}
+
+	@Override
+	public void onFinish(ISuite suite) {
+		if (SmartRetryAnalyzer.budgetUsed() == 0) {
+			return;
+		}
+		Map<String, Long> failures = new TreeMap<>();
+		failuresByCategory.forEach((category, count) -> failures.put(category, count.sum()));
+		LOG.info("Retried {} time(s), {} s of reruns, {} test(s) passed on retry; failed attempts by category: {}",
+				SmartRetryAnalyzer.budgetUsed(), SmartRetryAnalyzer.rerunMillis() / 1000, passedOnRetry.sum(), failures);
+	}
+}
@@ -0,0 +1,138 @@
+package com.qa.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.openqa.selenium.WebElement;
+
+/**
+ * One element of a {@link PageSnapshot}: its tag, attributes, text and visibility as they
+ * were when the snapshot was taken. Reading it never talks to the browser.
+ */
+public final class SnapshotNode {
+
+	private final int index;
+	private final String tag;
+	private final Map<String, String> attributes;
+	private final String text;
+	private final String tail;
+	private final boolean displayed;
+	private final SnapshotNode parent;
+	private final WebElement element;
+	private final List<SnapshotNode> children = new ArrayList<>();
+	private final List<SnapshotNode> childrenView = Collections.unmodifiableList(children);
+
+	// text is the whole rendered text for elements without child elements and the text in
+	// front of the first child element otherwise; tail is the text between this element and
+	// its next sibling element
+	SnapshotNode(int index, String tag, Map<String, String> attributes, String text, String tail, boolean displayed,
+			SnapshotNode parent, WebElement element) {
+		this.index = index;
+		this.tag = tag;
+		this.attributes = Collections.unmodifiableMap(attributes);
+		this.text = text;
+		this.tail = tail;
+		this.displayed = displayed;
+		this.parent = parent;
+		this.element = element;
+		if (parent != null) {
+			parent.children.add(this);
+		}
+	}
+
+	//Position of the element in the snapshot, in document order
+	public int index() {
+		return index;
+	}
+
+	//Lower-case tag name
+	public String tag() {
+		return tag;
+	}
+
+	public String id() {
+		return attributes.get("id");
+	}
+
+	/**
+	 * @param name the class name
+	 * @return true if the element's {@code class} attribute lists it
+	 */
+	public boolean hasClass(String name) {
+		String classes = attributes.get("class");
+		if (classes == null) {
+			return false;
+		}
+		for (String candidate : classes.trim().split("\\s+")) {
+			if (candidate.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param name the attribute name
+	 * @return the attribute value, or {@code null} if the element does not have it
+	 */
+	public String attribute(String name) {
+		return attributes.get(name);
+	}
+
+	public Map<String, String> attributes() {
+		return attributes;
+	}
+
+	/**
+	 * Returns the rendered text of the element, empty when it is hidden. For an element
+	 * without child elements this is exactly what {@link WebElement#getText()} returned at
+	 * snapshot time; for other elements the text of the displayed descendants is joined on
+	 * one line.
+	 *
+	 * @return the trimmed text, never {@code null}
+	 */
+	public String text() {
+		if (!displayed) {
+			return "";
+		}
+		if (children.isEmpty()) {
+			return text;
+		}
+		StringBuilder joined = new StringBuilder(text);
+		for (SnapshotNode child : children) {
+			joined.append(' ').append(child.text()).append(' ').append(child.tail);
+		}
+		return joined.toString().replaceAll("\\s+", " ").trim();
+	}
+
+	public boolean isDisplayed() {
+		return displayed;
+	}
+
+	//The parent element, or null for a snapshot root
+	public SnapshotNode parent() {
+		return parent;
+	}
+
+	public List<SnapshotNode> children() {
+		return childrenView;
+	}
+
+	/**
+	 * Returns the live element behind a snapshot root, for interactions after a lookup.
+	 * Only roots carry one, so a snapshot does not hold a reference to every element.
+	 *
+	 * @return the live element, or {@code null} if this node is not a root
+	 */
+	public WebElement element() {
+		return element;
+	}
+
+	@Override
+	public String toString() {
+		return "SnapshotNode[" + index + ", " + tag + ", '" + text() + "', displayed=" + displayed + ", " + attributes
+				+ "]";
+	}
+}
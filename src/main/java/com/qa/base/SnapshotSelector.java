@@ -0,0 +1,264 @@
+package com.qa.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Matches {@link SnapshotNode}s against the subset of CSS that page objects use for
+ * read-only checks: type ({@code h3}, {@code *}), {@code #id}, {@code .class} and
+ * attribute selectors ({@code [a]}, {@code [a=v]}, {@code [a~=v]}, {@code [a^=v]},
+ * {@code [a$=v]}, {@code [a*=v]}), the descendant and {@code >} combinators and
+ * comma-separated lists. Anything else is rejected, so a lookup never silently matches
+ * less than the browser would.
+ */
+final class SnapshotSelector {
+
+	private final String source;
+	private final List<Complex> alternatives;
+
+	private SnapshotSelector(String source, List<Complex> alternatives) {
+		this.source = source;
+		this.alternatives = alternatives;
+	}
+
+	/**
+	 * @param css the selector
+	 * @return the parsed selector
+	 * @throws IllegalArgumentException if the selector uses syntax outside the supported subset
+	 */
+	static SnapshotSelector parse(String css) {
+		List<Complex> alternatives = new ArrayList<>();
+		Parser parser = new Parser(css);
+		do {
+			alternatives.add(parser.complex());
+		} while (parser.skip(','));
+		parser.end();
+		return new SnapshotSelector(css, alternatives);
+	}
+
+	boolean matches(SnapshotNode node) {
+		for (Complex complex : alternatives) {
+			if (complex.matches(node, complex.compounds.size() - 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return source;
+	}
+
+	// compounds joined by combinators, matched from the right
+	private static final class Complex {
+		final List<Compound> compounds = new ArrayList<>();
+		final List<Boolean> childOf = new ArrayList<>();
+
+		boolean matches(SnapshotNode node, int i) {
+			if (!compounds.get(i).matches(node)) {
+				return false;
+			}
+			if (i == 0) {
+				return true;
+			}
+			if (childOf.get(i - 1)) {
+				return node.parent() != null && matches(node.parent(), i - 1);
+			}
+			for (SnapshotNode ancestor = node.parent(); ancestor != null; ancestor = ancestor.parent()) {
+				if (matches(ancestor, i - 1)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static final class Compound {
+		String tag;
+		final List<String> ids = new ArrayList<>();
+		final List<String> classes = new ArrayList<>();
+		final List<String[]> attributes = new ArrayList<>();
+
+		boolean matches(SnapshotNode node) {
+			if (tag != null && !tag.equals(node.tag())) {
+				return false;
+			}
+			for (String id : ids) {
+				if (!id.equals(node.id())) {
+					return false;
+				}
+			}
+			for (String name : classes) {
+				if (!node.hasClass(name)) {
+					return false;
+				}
+			}
+			for (String[] attribute : attributes) {
+				String actual = node.attribute(attribute[0]);
+				if (actual == null || !matches(attribute[1], actual, attribute[2])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean matches(String operator, String actual, String expected) {
+			switch (operator) {
+			case "":
+				return true;
+			case "=":
+				return actual.equals(expected);
+			case "~=":
+				return !expected.isEmpty() && Arrays.asList(actual.trim().split("\\s+")).contains(expected);
+			case "^=":
+				return !expected.isEmpty() && actual.startsWith(expected);
+			case "$=":
+				return !expected.isEmpty() && actual.endsWith(expected);
+			default:
+				return !expected.isEmpty() && actual.contains(expected);
+			}
+		}
+	}
+
+	private static final class Parser {
+		private final String css;
+		private int pos;
+
+		Parser(String css) {
+			this.css = css;
+		}
+
+		Complex complex() {
+			Complex complex = new Complex();
+			skipSpace();
+			complex.compounds.add(compound());
+			while (true) {
+				boolean space = skipSpace();
+				if (skip('>')) {
+					skipSpace();
+					complex.childOf.add(true);
+				} else if (space && pos < css.length() && css.charAt(pos) != ',') {
+					complex.childOf.add(false);
+				} else {
+					return complex;
+				}
+				complex.compounds.add(compound());
+			}
+		}
+
+		Compound compound() {
+			Compound compound = new Compound();
+			int start = pos;
+			if (skip('*')) {
+				// matches any tag
+			} else if (pos < css.length() && isNameChar(css.charAt(pos))) {
+				compound.tag = name().toLowerCase(Locale.ROOT);
+			}
+			while (pos < css.length()) {
+				char c = css.charAt(pos);
+				if (c == '#') {
+					pos++;
+					compound.ids.add(name());
+				} else if (c == '.') {
+					pos++;
+					compound.classes.add(name());
+				} else if (c == '[') {
+					pos++;
+					compound.attributes.add(attribute());
+				} else {
+					break;
+				}
+			}
+			if (pos == start) {
+				throw unsupported();
+			}
+			return compound;
+		}
+
+		private String[] attribute() {
+			skipSpace();
+			String name = name().toLowerCase(Locale.ROOT);
+			skipSpace();
+			String operator = "";
+			String value = "";
+			if (!skip(']')) {
+				for (String candidate : new String[] { "=", "~=", "^=", "$=", "*=" }) {
+					if (css.startsWith(candidate, pos)) {
+						operator = candidate;
+					}
+				}
+				if (operator.isEmpty()) {
+					throw unsupported();
+				}
+				pos += operator.length();
+				skipSpace();
+				value = value();
+				skipSpace();
+				if (!skip(']')) {
+					throw unsupported();
+				}
+			}
+			return new String[] { name, operator, value };
+		}
+
+		private String value() {
+			if (pos < css.length() && (css.charAt(pos) == '"' || css.charAt(pos) == '\'')) {
+				char quote = css.charAt(pos);
+				int end = css.indexOf(quote, pos + 1);
+				if (end < 0) {
+					throw unsupported();
+				}
+				String value = css.substring(pos + 1, end);
+				pos = end + 1;
+				return value;
+			}
+			return name();
+		}
+
+		private String name() {
+			int start = pos;
+			while (pos < css.length() && isNameChar(css.charAt(pos))) {
+				pos++;
+			}
+			if (pos == start) {
+				throw unsupported();
+			}
+			return css.substring(start, pos);
+		}
+
+		private static boolean isNameChar(char c) {
+			return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+		}
+
+		boolean skip(char c) {
+			if (pos < css.length() && css.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		boolean skipSpace() {
+			int start = pos;
+			while (pos < css.length() && Character.isWhitespace(css.charAt(pos))) {
+				pos++;
+			}
+			return pos > start;
+		}
+
+		void end() {
+			skipSpace();
+			if (pos < css.length()) {
+				throw unsupported();
+			}
+		}
+
+		private IllegalArgumentException unsupported() {
+			return new IllegalArgumentException("Selector '" + css + "' is not supported by PageSnapshot at position "
+					+ pos + "; use a live lookup or BatchQuery for it");
+		}
+	}
+}
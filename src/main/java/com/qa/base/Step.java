@@ -0,0 +1,155 @@
+package com.qa.base;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * A named helper step with a deadline that nested steps share.
+ * <p>
+ * Opening a step while another one is active on the same thread never extends the
+ * outer deadline, so a chain such as {@code doClick -> waitForElementPresent} spends
+ * one time budget instead of stacking independent timeouts. Steps are closed with
+ * try-with-resources, or opened and closed around a body by {@link #call} and {@link #run}.
+ * </p>
+ */
+public final class Step implements AutoCloseable {
+
+	private static final ThreadLocal<Step> CURRENT = new ThreadLocal<>();
+
+	private final Class<?> owner;
+	private final String name;
+	private final long deadlineNanos;
+	private final Step parent;
+
+	private Step(Class<?> owner, String name, long deadlineNanos, Step parent) {
+		this.owner = owner;
+		this.name = name;
+		this.deadlineNanos = deadlineNanos;
+		this.parent = parent;
+	}
+
+	/**
+	 * Opens a step for the calling thread. The step's deadline is {@code timeout} from now,
+	 * or the enclosing step's deadline if that comes first.
+	 *
+	 * @param owner   the page class running the step
+	 * @param name    the helper method name
+	 * @param timeout the time budget for this step
+	 * @return the opened step, to be closed when the helper returns
+	 */
+	public static Step open(Class<?> owner, String name, Duration timeout) {
+		Step step = new Step(owner, name, deadlineFor(timeout), CURRENT.get());
+		CURRENT.set(step);
+		TraceRecorder.step(step, true);
+		return step;
+	}
+
+	/**
+	 * Runs {@code body} inside a step opened as by {@link #open(Class, String, Duration)}.
+	 *
+	 * @param owner   the page class running the step
+	 * @param name    the helper method name
+	 * @param timeout the time budget for this step
+	 * @param body    the helper's work
+	 * @return what {@code body} returned
+	 */
+	public static <T> T call(Class<?> owner, String name, Duration timeout, Supplier<T> body) {
+		Step step = open(owner, name, timeout);
+		try {
+			return body.get();
+		} finally {
+			step.close();
+		}
+	}
+
+	/**
+	 * Runs {@code body} inside a step opened as by {@link #open(Class, String, Duration)}.
+	 *
+	 * @param owner   the page class running the step
+	 * @param name    the helper method name
+	 * @param timeout the time budget for this step
+	 * @param body    the helper's work
+	 */
+	public static void run(Class<?> owner, String name, Duration timeout, Runnable body) {
+		call(owner, name, timeout, () -> {
+			body.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Returns the innermost open step of the calling thread.
+	 *
+	 * @return the current step, or {@code null} outside any helper
+	 */
+	public static Step current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Returns the {@link System#nanoTime()} deadline for a wait that asks for {@code timeout},
+	 * capped by the current step's deadline if there is one.
+	 *
+	 * @param timeout the wait's own timeout
+	 * @return the effective deadline in nanoTime units
+	 */
+	static long deadlineFor(Duration timeout) {
+		long deadline = System.nanoTime() + timeout.toNanos();
+		Step step = CURRENT.get();
+		if (step != null && step.deadlineNanos - deadline < 0) {
+			return step.deadlineNanos;
+		}
+		return deadline;
+	}
+
+	public Class<?> owner() {
+		return owner;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * Returns the outermost step of this chain, i.e. the helper the test called directly.
+	 *
+	 * @return the root step
+	 */
+	public Step root() {
+		Step step = this;
+		while (step.parent != null) {
+			step = step.parent;
+		}
+		return step;
+	}
+
+	/**
+	 * @return the number of enclosing steps, 0 for a root step
+	 */
+	int depth() {
+		int depth = 0;
+		for (Step step = parent; step != null; step = step.parent) {
+			depth++;
+		}
+		return depth;
+	}
+
+	public Duration remaining() {
+		return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+	}
+
+	@Override
+	public void close() {
+		TraceRecorder.step(this, false);
+		if (parent == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(parent);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return (owner == null ? "" : owner.getSimpleName() + ".") + name;
+	}
+}
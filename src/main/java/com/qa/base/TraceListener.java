@@ -0,0 +1,45 @@
+package com.qa.base;
+
+import java.nio.file.Path;
+
+import org.testng.IInvokedMethod;
+import org.testng.IInvokedMethodListener;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+/**
+ * Starts a {@link TraceRecorder} trace when a test starts and ends it right after the test
+ * method returns, before {@link DriverPoolListener} resets the session, so the reset does
+ * not end up in the trace. When the trace is written its path is attached to the result
+ * under {@link #RESULT_ATTRIBUTE}, where {@link ResultJournal} picks it up. Register it in
+ * testng.xml after {@link ScreenshotListener}, whose failure screenshot the trace refers to.
+ */
+public class TraceListener implements ITestListener, IInvokedMethodListener {
+
+	public static final String RESULT_ATTRIBUTE = "trace";
+
+	@Override
+	public void onTestStart(ITestResult result) {
+		TraceRecorder.get().begin(result);
+	}
+
+	@Override
+	public void afterInvocation(IInvokedMethod method, ITestResult result) {
+		if (method.isTestMethod()) {
+			end(result);
+		}
+	}
+
+	@Override
+	public void onTestSkipped(ITestResult result) {
+		// a test skipped before its method ran still has its trace open
+		end(result);
+	}
+
+	private void end(ITestResult result) {
+		Path file = TraceRecorder.get().end(result);
+		if (file != null) {
+			result.setAttribute(RESULT_ATTRIBUTE, file.toString());
+		}
+	}
+}
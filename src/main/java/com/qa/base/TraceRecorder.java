@@ -0,0 +1,531 @@
+package com.qa.base;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.ThreadContext;
+import org.openqa.selenium.Alert;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.Keys;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.WrapsDriver;
+import org.openqa.selenium.support.events.WebDriverListener;
+import org.testng.ITestResult;
+import org.testng.SkipException;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Records what a test did to its browser, so a failed flow can be diagnosed from its
+ * artifacts instead of being rerun.
+ * <p>
+ * Between {@link #begin(ITestResult)} and {@link #end(ITestResult)}, called by
+ * {@link TraceListener}, every command the test thread sends through an instrumented
+ * driver becomes one event: the page and {@link BasePage} helper it came from, its target
+ * (driver, element locator, navigation, ...), arguments, result or error and duration.
+ * Helper {@link Step}s are recorded as they open and close. Only the last
+ * {@code trace.max.events} events of a test are kept.
+ * </p>
+ * <p>
+ * Page captures are opt-in, because each one is an extra browser round-trip after every
+ * command that may change the page, whether the test then passes or not:
+ * {@code trace.dom=hash} hashes the document in the browser, {@code trace.dom=full} keeps
+ * the HTML of every distinct document as well, and {@code trace.screenshots=n} keeps
+ * screenshots of the last n page changes. The captures are counted in the
+ * {@link CommandMetrics} as the commands {@code traceDom} and {@code traceScreenshot}.
+ * </p>
+ * <p>
+ * Everything stays in memory until the test ends. The trace is then written as NDJSON to
+ * {@code trace.dir/<Class>.<method>.ndjson} if the test failed ({@code trace.mode=failure},
+ * the default) or always ({@code always}), so passing tests write nothing in failure mode.
+ * {@code off} disables recording. {@link com.qa.utilities.TraceViewer} lists and steps
+ * through traces without a browser.
+ * </p>
+ */
+public final class TraceRecorder implements WebDriverListener {
+
+	private static final Logger LOG = LogManager.getLogger(TraceRecorder.class);
+
+	public enum Mode {
+		OFF, FAILURE, ALWAYS
+	}
+
+	// FNV-1a over the serialized document, plus its length; see hash(String)
+	static final String DOM_HASH = String.join("\n",
+			"var html = document.documentElement ? document.documentElement.outerHTML : '';",
+			"var h = 0x811c9dc5;",
+			"for (var i = 0; i < html.length; i++) {",
+			"  h = Math.imul(h ^ html.charCodeAt(i), 0x01000193);",
+			"}",
+			"return ('0000000' + (h >>> 0).toString(16)).slice(-8) + ':' + html.length;");
+
+	static final String DOM_HTML = "return document.documentElement ? document.documentElement.outerHTML : '';";
+
+	private static final int MAX_TEXT = 300;
+	private static final int MAX_DOCUMENTS = 100;
+
+	// created on first use, so a bad trace.mode fails that call instead of the class
+	private static volatile TraceRecorder instance;
+
+	private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+	private final Mode mode;
+	private final Path directory;
+	private final String dom;
+	private final int screenshots;
+	private final int maxEvents;
+	private final ThreadLocal<Trace> current = new ThreadLocal<>();
+	private final Map<String, AtomicInteger> names = new ConcurrentHashMap<>();
+
+	TraceRecorder(Mode mode, Path directory, String dom, int screenshots, int maxEvents) {
+		this.mode = mode;
+		this.directory = directory;
+		this.dom = dom;
+		this.screenshots = Math.max(0, screenshots);
+		this.maxEvents = Math.max(1, maxEvents);
+	}
+
+	public static TraceRecorder get() {
+		TraceRecorder result = instance;
+		if (result == null) {
+			synchronized (TraceRecorder.class) {
+				result = instance;
+				if (result == null) {
+					FrameworkConfig config = FrameworkConfig.get();
+					result = new TraceRecorder(Mode.valueOf(config.traceMode().toUpperCase(Locale.ROOT)),
+							config.traceDir(), config.traceDom(), config.traceScreenshots(), config.traceMaxEvents());
+					instance = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	public Mode mode() {
+		return mode;
+	}
+
+	/**
+	 * Adds the recorder to a driver that is being decorated; see
+	 * {@link DriverManager#createDriver(String)}.
+	 *
+	 * @return the listener, or null when {@code trace.mode=off}
+	 */
+	static WebDriverListener listener() {
+		TraceRecorder recorder = get();
+		return recorder.mode == Mode.OFF ? null : recorder;
+	}
+
+	/**
+	 * Starts a trace for the test running on this thread, replacing any unfinished one.
+	 *
+	 * @param result the test that starts
+	 */
+	public void begin(ITestResult result) {
+		if (mode == Mode.OFF) {
+			return;
+		}
+		Trace trace = new Trace(maxEvents);
+		JsonObject header = new JsonObject();
+		header.addProperty("type", "trace");
+		header.addProperty("test", result.getTestClass().getRealClass().getSimpleName() + "."
+				+ result.getMethod().getMethodName());
+		header.addProperty("class", result.getTestClass().getRealClass().getName());
+		header.addProperty("method", result.getMethod().getMethodName());
+		JsonArray parameters = new JsonArray();
+		for (Object parameter : result.getParameters()) {
+			parameters.add(text(String.valueOf(parameter)));
+		}
+		header.add("parameters", parameters);
+		header.addProperty("thread", Thread.currentThread().getName());
+		header.addProperty("startMillis", System.currentTimeMillis());
+		header.addProperty("dom", dom);
+		trace.header = header;
+		current.set(trace);
+	}
+
+	/**
+	 * Stops the trace of this thread's test and writes it if the test failed or
+	 * {@code trace.mode=always}. A test counts as failed when it has a throwable other than a
+	 * {@link SkipException}, which also covers attempts that are about to be retried.
+	 *
+	 * @param result the test that ended
+	 * @return the trace file, or null if nothing was written
+	 */
+	public Path end(ITestResult result) {
+		Trace trace = current.get();
+		current.remove();
+		if (trace == null) {
+			return null;
+		}
+		boolean failed = result.getStatus() == ITestResult.FAILURE
+				|| result.getThrowable() != null && !(result.getThrowable() instanceof SkipException);
+		if (mode != Mode.ALWAYS && !failed) {
+			return null;
+		}
+		JsonObject end = trace.event("end", System.nanoTime());
+		end.addProperty("status", failed ? "FAIL" : result.getStatus() == ITestResult.SKIP ? "SKIP" : "PASS");
+		if (result.getThrowable() != null) {
+			end.addProperty("error", error(result.getThrowable()));
+		}
+		addString(end, "session", ThreadContext.get(LogContext.SESSION));
+		addString(end, "failureScreenshot", result.getAttribute(ScreenshotListener.RESULT_ATTRIBUTE));
+		end.addProperty("events", trace.events.size());
+		end.addProperty("dropped", trace.dropped);
+		try {
+			return write(trace, end, fileName(trace.header.get("test").getAsString()));
+		} catch (IOException e) {
+			LOG.error("Could not write the trace of {}: {}", trace.header.get("test").getAsString(), e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Records a helper step opening or closing on this thread; called by {@link Step}.
+	 */
+	static void step(Step step, boolean open) {
+		TraceRecorder recorder = instance;
+		Trace trace = recorder == null ? null : recorder.current.get();
+		if (trace == null) {
+			return;
+		}
+		JsonObject event = trace.event("step", System.nanoTime());
+		event.addProperty("phase", open ? "open" : "close");
+		event.addProperty("name", step.toString());
+		event.addProperty("depth", step.depth());
+		trace.add(event);
+	}
+
+	@Override
+	public void beforeAnyCall(Object target, Method method, Object[] args) {
+		Trace trace = current.get();
+		if (trace != null && CommandOrigin.isCommand(method.getName())) {
+			trace.started.push(System.nanoTime());
+		}
+	}
+
+	@Override
+	public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+		record(target, method, args, result, null);
+	}
+
+	@Override
+	public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+		record(target, method, args, null, e.getCause() != null ? e.getCause() : e);
+	}
+
+	private void record(Object target, Method method, Object[] args, Object result, Throwable error) {
+		Trace trace = current.get();
+		if (trace == null || !CommandOrigin.isCommand(method.getName())) {
+			return;
+		}
+		Long start = trace.started.poll();
+		if (start == null) {
+			return;
+		}
+		JsonObject event = trace.event("command", start);
+		event.addProperty("ms", Math.round((System.nanoTime() - start) / 100_000.0) / 10.0);
+		String[] origin = CommandOrigin.current();
+		event.addProperty("page", origin[0]);
+		event.addProperty("helper", origin[1]);
+		event.addProperty("on", kind(target));
+		if (target instanceof WebElement) {
+			event.addProperty("element", describe(target));
+		}
+		event.addProperty("command", method.getName());
+		if (args != null && args.length > 0) {
+			event.add("args", describeAll(args));
+		}
+		if (error != null) {
+			event.addProperty("error", error(error));
+		} else if (result != null) {
+			event.add("result", describeResult(result));
+		}
+		if (target instanceof WebDriver) {
+			trace.driver = (WebDriver) target;
+		}
+		if (PageSnapshot.mayChangePage(method, args) && !method.getName().equals("quit")
+				&& !method.getName().equals("close")) {
+			capture(trace, event, target);
+		}
+		trace.add(event);
+	}
+
+	// hashes (and keeps) the document and takes a screenshot after a page change
+	private void capture(Trace trace, JsonObject event, Object target) {
+		WebDriver driver = trace.driver;
+		if (driver == null && target instanceof WrapsDriver) {
+			driver = ((WrapsDriver) target).getWrappedDriver();
+		}
+		if (driver == null) {
+			return;
+		}
+		String command = null;
+		long start = System.nanoTime();
+		try {
+			if (!dom.equals("off") && driver instanceof JavascriptExecutor) {
+				command = "traceDom";
+				JavascriptExecutor js = (JavascriptExecutor) driver;
+				String hash = (String) js.executeScript(DOM_HASH);
+				if (dom.equals("full") && !trace.documents.containsKey(hash)) {
+					String html = (String) js.executeScript(DOM_HTML);
+					// the page may have moved on between the two scripts
+					hash = hash(html);
+					trace.documents.put(hash, html);
+				}
+				event.addProperty("dom", hash);
+				CommandMetrics.record(command, System.nanoTime() - start, false);
+				command = null;
+			}
+			if (screenshots > 0 && driver instanceof TakesScreenshot) {
+				command = "traceScreenshot";
+				start = System.nanoTime();
+				trace.shots.addLast(new Shot(event, ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES)));
+				CommandMetrics.record(command, System.nanoTime() - start, false);
+				command = null;
+				if (trace.shots.size() > screenshots) {
+					trace.shots.removeFirst();
+				}
+			}
+		} catch (RuntimeException e) {
+			if (command != null) {
+				CommandMetrics.record(command, System.nanoTime() - start, true);
+			}
+			event.addProperty("captureError", error(e));
+		}
+	}
+
+	private Path write(Trace trace, JsonObject end, String name) throws IOException {
+		Files.createDirectories(directory);
+		for (Shot shot : trace.shots) {
+			String file = name + "-" + shot.event.get("seq").getAsInt() + ".png";
+			Files.write(directory.resolve(file), shot.png);
+			shot.event.addProperty("screenshot", file);
+		}
+		Path file = directory.resolve(name + ".ndjson");
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			out.write(GSON.toJson(trace.header));
+			out.write('\n');
+			for (JsonObject event : trace.events) {
+				out.write(GSON.toJson(event));
+				out.write('\n');
+			}
+			for (Map.Entry<String, String> document : trace.documents.entrySet()) {
+				JsonObject line = new JsonObject();
+				line.addProperty("type", "dom");
+				line.addProperty("hash", document.getKey());
+				line.addProperty("html", document.getValue());
+				out.write(GSON.toJson(line));
+				out.write('\n');
+			}
+			out.write(GSON.toJson(end));
+			out.write('\n');
+		}
+		return file;
+	}
+
+	// retries and data-provider rows of the same method get their own file
+	private String fileName(String test) {
+		int run = names.computeIfAbsent(test, key -> new AtomicInteger()).incrementAndGet();
+		String name = test.replaceAll("[^A-Za-z0-9._-]", "_");
+		return run == 1 ? name : name + "-" + run;
+	}
+
+	/**
+	 * Hashes a document the way {@link #DOM_HASH} does in the browser.
+	 *
+	 * @param html the serialized document
+	 * @return the hash, as {@code <8 hex digits>:<length>}
+	 */
+	static String hash(String html) {
+		int h = 0x811c9dc5;
+		for (int i = 0; i < html.length(); i++) {
+			h = (h ^ html.charAt(i)) * 0x01000193;
+		}
+		return String.format("%08x", h) + ":" + html.length();
+	}
+
+	private static String kind(Object target) {
+		if (target instanceof WebDriver) {
+			return "driver";
+		}
+		if (target instanceof WebElement) {
+			return "element";
+		}
+		if (target instanceof WebDriver.Navigation) {
+			return "navigation";
+		}
+		if (target instanceof WebDriver.TargetLocator) {
+			return "switchTo";
+		}
+		if (target instanceof Alert) {
+			return "alert";
+		}
+		if (target instanceof WebDriver.Window) {
+			return "window";
+		}
+		if (target instanceof WebDriver.Options || target instanceof WebDriver.Timeouts) {
+			return "options";
+		}
+		return target.getClass().getSimpleName();
+	}
+
+	// "[[ChromeDriver: ...] -> css selector: .a]] -> tag name: b]" becomes "css selector: .a -> tag name: b"
+	static String describe(Object element) {
+		String text = String.valueOf(element);
+		// elements returned through the instrumented driver print as "Decorated {...}"
+		if (text.startsWith("Decorated {") && text.endsWith("}")) {
+			text = text.substring("Decorated {".length(), text.length() - 1);
+		}
+		int start = text.indexOf("-> ");
+		if (start >= 0) {
+			text = text.substring(start + 3);
+			if (text.endsWith("]")) {
+				text = text.substring(0, text.length() - 1);
+			}
+			text = text.replace("]] -> ", " -> ");
+		}
+		return text(text);
+	}
+
+	private static JsonArray describeAll(Object[] values) {
+		JsonArray array = new JsonArray();
+		for (Object value : values) {
+			if (value instanceof CharSequence[]) {
+				StringBuilder keys = new StringBuilder();
+				for (CharSequence key : (CharSequence[]) value) {
+					keys.append(key instanceof Keys ? "<" + ((Keys) key).name() + ">" : key);
+				}
+				array.add(text(keys.toString()));
+			} else if (value instanceof Object[]) {
+				array.add(describeAll((Object[]) value));
+			} else {
+				array.add(describeValue(value));
+			}
+		}
+		return array;
+	}
+
+	private static JsonElement describeValue(Object value) {
+		if (value == null) {
+			return JsonNull.INSTANCE;
+		}
+		if (value instanceof Boolean) {
+			return new JsonPrimitive((Boolean) value);
+		}
+		if (value instanceof Number) {
+			return new JsonPrimitive((Number) value);
+		}
+		if (value instanceof WebElement) {
+			return new JsonPrimitive("element " + describe(value));
+		}
+		if (value instanceof By) {
+			return new JsonPrimitive(value.toString());
+		}
+		return new JsonPrimitive(text(String.valueOf(value)));
+	}
+
+	private static JsonElement describeResult(Object result) {
+		if (result instanceof Collection) {
+			return new JsonPrimitive(((Collection<?>) result).size() + " item(s)");
+		}
+		if (result instanceof byte[]) {
+			return new JsonPrimitive(((byte[]) result).length + " bytes");
+		}
+		return describeValue(result);
+	}
+
+	private static String error(Throwable error) {
+		String message = error.getMessage() == null ? "" : error.getMessage();
+		int newline = message.indexOf('\n');
+		return error.getClass().getSimpleName() + ": " + text(newline < 0 ? message : message.substring(0, newline));
+	}
+
+	private static String text(String value) {
+		return value.length() <= MAX_TEXT ? value : value.substring(0, MAX_TEXT) + "...";
+	}
+
+	private static void addString(JsonObject line, String name, Object value) {
+		if (value != null) {
+			line.addProperty(name, value.toString());
+		}
+	}
+
+	// the recording of one test
+	private static final class Trace {
+		final long startNanos = System.nanoTime();
+		final int maxEvents;
+		final Deque<JsonObject> events = new ArrayDeque<>();
+		final Deque<Long> started = new ArrayDeque<>();
+		final Deque<Shot> shots = new ArrayDeque<>();
+		final Map<String, String> documents = new LinkedHashMap<String, String>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > MAX_DOCUMENTS;
+			}
+		};
+		JsonObject header;
+		WebDriver driver;
+		int seq;
+		int dropped;
+
+		Trace(int maxEvents) {
+			this.maxEvents = maxEvents;
+		}
+
+		JsonObject event(String type, long nanos) {
+			JsonObject event = new JsonObject();
+			event.addProperty("type", type);
+			event.addProperty("seq", ++seq);
+			event.addProperty("at", (nanos - startNanos) / 1_000_000);
+			return event;
+		}
+
+		void add(JsonObject event) {
+			if (events.size() == maxEvents) {
+				JsonObject oldest = events.removeFirst();
+				dropped++;
+				shots.removeIf(shot -> shot.event == oldest);
+			}
+			events.addLast(event);
+		}
+	}
+
+	private static final class Shot {
+		final JsonObject event;
+		final byte[] png;
+
+		Shot(JsonObject event, byte[] png) {
+			this.event = event;
+			this.png = png;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.qa.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IExecutorServiceFactory;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * TestNG executor factory that runs parallel test methods and data provider rows on
+ * virtual threads when {@code executor.mode=virtual}.
+ * <p>
+ * Test threads spend nearly all their time blocked on WebDriver HTTP calls, so on virtual
+ * threads the parallelism is no longer limited by what platform threads cost.
+ * {@code executor.concurrency} raises the number of tests running at once above the
+ * suite's {@code thread-count}; the driver pool still caps the number of browsers, and
+ * tests beyond {@code pool.size} wait in {@link DriverPool#borrow()} without holding an
+ * OS thread. Every task gets a new virtual thread rather than a pooled one; a semaphore
+ * caps how many run at once, and tasks waiting for a permit stay in TestNG's work queue,
+ * so method priorities are honoured as before.
+ * </p>
+ * <p>
+ * TestNG takes the factory from its command line
+ * ({@code -threadpoolfactoryclass com.qa.base.VirtualThreadExecutorFactory}); the
+ * {@code virtual-threads} Maven profile and {@code ShardRunner} pass it on. Without Java 21
+ * the factory logs a notice and uses platform threads.
+ * </p>
+ */
+public class VirtualThreadExecutorFactory implements IExecutorServiceFactory {
+
+	private static final Logger LOG = LogManager.getLogger(VirtualThreadExecutorFactory.class);
+
+	private static final AtomicBoolean REPORTED = new AtomicBoolean();
+
+	@Override
+	public ExecutorService create(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+			BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory) {
+		FrameworkConfig config = FrameworkConfig.get();
+		ExecutorService threads = "virtual".equals(config.executorMode().toLowerCase(Locale.ROOT))
+				? VirtualThreads.perTaskExecutor("testng-virtual-")
+				: null;
+		if (threads == null) {
+			report("Running tests on platform threads (executor.mode={}{})", config.executorMode(),
+					VirtualThreads.supported() ? "" : ", virtual threads need Java 21");
+			return new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue,
+					threadFactory);
+		}
+		int concurrency = Math.max(maximumPoolSize, config.executorConcurrency());
+		report("Running tests on virtual threads, up to {} at once", concurrency);
+		return new BoundedExecutor(threads, workQueue, concurrency);
+	}
+
+	private static void report(String message, Object... params) {
+		if (REPORTED.compareAndSet(false, true)) {
+			LOG.info(message, params);
+		}
+	}
+
+	/**
+	 * Hands queued tasks to a thread-per-task executor while fewer than {@code permits}
+	 * are running. Dispatch and termination are synchronized so a task taken from the
+	 * queue is never handed to an executor that has just been shut down.
+	 */
+	private static final class BoundedExecutor extends AbstractExecutorService {
+
+		private final ExecutorService threads;
+		private final BlockingQueue<Runnable> queue;
+		private final Semaphore permits;
+		private volatile boolean shutdown;
+
+		BoundedExecutor(ExecutorService threads, BlockingQueue<Runnable> queue, int permits) {
+			this.threads = threads;
+			this.queue = queue;
+			this.permits = new Semaphore(permits);
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			if (shutdown || !queue.offer(task)) {
+				throw new RejectedExecutionException("Executor is shut down or its queue is full");
+			}
+			dispatch();
+		}
+
+		private synchronized void dispatch() {
+			while (!queue.isEmpty() && permits.tryAcquire()) {
+				Runnable task = queue.poll();
+				if (task == null) {
+					permits.release();
+					return;
+				}
+				try {
+					threads.execute(() -> {
+						try {
+							task.run();
+						} finally {
+							permits.release();
+							dispatch();
+							terminateIfDrained();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					permits.release();
+					throw e;
+				}
+			}
+		}
+
+		private synchronized void terminateIfDrained() {
+			if (shutdown && queue.isEmpty()) {
+				threads.shutdown();
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			shutdown = true;
+			terminateIfDrained();
+		}
+
+		@Override
+		public synchronized List<Runnable> shutdownNow() {
+			shutdown = true;
+			List<Runnable> pending = new ArrayList<>();
+			queue.drainTo(pending);
+			threads.shutdownNow();
+			return pending;
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return shutdown;
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return threads.isTerminated();
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			return threads.awaitTermination(timeout, unit);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.qa.base;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to Java 21 virtual threads from code compiled for older releases.
+ * <p>
+ * The framework is built with {@code -source 8}, so {@code Thread.ofVirtual()} is looked
+ * up reflectively; on a JVM without virtual threads {@link #factory(String)} returns null
+ * and callers fall back to platform threads.
+ * </p>
+ */
+public final class VirtualThreads {
+
+	private static final Method OF_VIRTUAL = lookup("java.lang.Thread", "ofVirtual");
+	private static final Method NAME = lookup("java.lang.Thread$Builder", "name", String.class, long.class);
+	private static final Method FACTORY = lookup("java.lang.Thread$Builder", "factory");
+	private static final Method PER_TASK = lookup("java.util.concurrent.Executors", "newThreadPerTaskExecutor",
+			ThreadFactory.class);
+
+	private VirtualThreads() {
+	}
+
+	public static boolean supported() {
+		return OF_VIRTUAL != null && NAME != null && FACTORY != null;
+	}
+
+	/**
+	 * Returns a factory for virtual threads named {@code prefix0}, {@code prefix1}, ...
+	 *
+	 * @param prefix the thread name prefix
+	 * @return the factory, or null if this JVM has no virtual threads
+	 */
+	public static ThreadFactory factory(String prefix) {
+		if (!supported()) {
+			return null;
+		}
+		try {
+			Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+			return (ThreadFactory) FACTORY.invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot create a virtual thread factory", e);
+		}
+	}
+
+	/**
+	 * Returns an executor that starts a new virtual thread named {@code prefix0},
+	 * {@code prefix1}, ... for every task.
+	 *
+	 * @param prefix the thread name prefix
+	 * @return the executor, or null if this JVM has no virtual threads
+	 */
+	public static ExecutorService perTaskExecutor(String prefix) {
+		ThreadFactory factory = factory(prefix);
+		if (factory == null || PER_TASK == null) {
+			return null;
+		}
+		try {
+			return (ExecutorService) PER_TASK.invoke(null, factory);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot create a virtual thread executor", e);
+		}
+	}
+
+	private static Method lookup(String type, String name, Class<?>... parameters) {
+		try {
+			return Class.forName(type).getMethod(name, parameters);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
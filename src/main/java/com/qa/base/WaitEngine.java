@@ -0,0 +1,146 @@
+package com.qa.base;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Central wait loop shared by all helpers of one WebDriver session.
+ * <p>
+ * Unlike a {@code WebDriverWait} with its fixed 500 ms polling, the engine starts
+ * polling after a few milliseconds and backs off exponentially, so conditions that
+ * are already true (or become true quickly) return almost immediately. Every wait is
+ * also capped by the deadline of the enclosing {@link Step}.
+ * </p>
+ */
+public final class WaitEngine {
+
+	// wait.timeout, wait.poll.initial.ms and wait.poll.max.ms; 10 s, 5 ms and 250 ms by default
+	public static final Duration DEFAULT_TIMEOUT = FrameworkConfig.get().waitTimeout();
+	public static final Duration INITIAL_POLL = FrameworkConfig.get().waitInitialPoll();
+	public static final Duration MAX_POLL = FrameworkConfig.get().waitMaxPoll();
+
+	private static final Map<WebDriver, WaitEngine> ENGINES = new ConcurrentHashMap<>();
+
+	private final WebDriver driver;
+	private final Duration defaultTimeout;
+	private final long initialPollNanos;
+	private final long maxPollNanos;
+
+	WaitEngine(WebDriver driver, Duration defaultTimeout, Duration initialPoll, Duration maxPoll) {
+		this.driver = driver;
+		this.defaultTimeout = defaultTimeout;
+		this.initialPollNanos = initialPoll.toNanos();
+		this.maxPollNanos = maxPoll.toNanos();
+	}
+
+	/**
+	 * Returns the engine bound to the given session; all pages of that session share it.
+	 *
+	 * @param driver the WebDriver session
+	 * @return the session's wait engine
+	 */
+	public static WaitEngine of(WebDriver driver) {
+		WaitEngine engine = ENGINES.get(driver);
+		if (engine == null) {
+			engine = ENGINES.computeIfAbsent(driver,
+					d -> new WaitEngine(d, DEFAULT_TIMEOUT, INITIAL_POLL, MAX_POLL));
+		}
+		return engine;
+	}
+
+	/**
+	 * Drops the engine of a session that is being quit.
+	 *
+	 * @param driver the WebDriver session
+	 */
+	static void forget(WebDriver driver) {
+		ENGINES.remove(driver);
+	}
+
+	public Duration defaultTimeout() {
+		return defaultTimeout;
+	}
+
+	/**
+	 * Repeatedly evaluates {@code condition} until it returns a non-null value other than
+	 * {@code Boolean.FALSE}, polling with exponential back-off from {@link #INITIAL_POLL}
+	 * to {@link #MAX_POLL}. {@link NotFoundException} and {@link StaleElementReferenceException}
+	 * thrown by the condition count as "not yet".
+	 *
+	 * @param condition the condition to evaluate, e.g. an {@code ExpectedCondition}
+	 * @param timeout   the maximum time to wait, capped by the current {@link Step}
+	 * @return the condition's last value
+	 * @throws TimeoutException if the condition is not met before the deadline
+	 */
+	public <T> T until(Function<? super WebDriver, T> condition, Duration timeout) {
+		return poll(condition, timeout, initialPollNanos, maxPollNanos);
+	}
+
+	/**
+	 * Same as {@link #until(Function, Duration)} but with a fixed polling interval, for
+	 * callers that explicitly asked for one.
+	 *
+	 * @param condition the condition to evaluate
+	 * @param timeout   the maximum time to wait, capped by the current {@link Step}
+	 * @param polling   the interval between evaluations
+	 * @return the condition's last value
+	 * @throws TimeoutException if the condition is not met before the deadline
+	 */
+	public <T> T until(Function<? super WebDriver, T> condition, Duration timeout, Duration polling) {
+		return poll(condition, timeout, polling.toNanos(), polling.toNanos());
+	}
+
+	private <T> T poll(Function<? super WebDriver, T> condition, Duration timeout, long firstPoll, long maxPoll) {
+		long start = System.nanoTime();
+		long deadline = Step.deadlineFor(timeout);
+		long interval = firstPoll;
+		RuntimeException last = null;
+		boolean gaveUp = false;
+		LocatorRegistry.startWait();
+		try {
+			while (true) {
+				try {
+					T value = condition.apply(driver);
+					if (value != null && !Boolean.FALSE.equals(value)) {
+						return value;
+					}
+				} catch (NotFoundException | StaleElementReferenceException e) {
+					last = e;
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					gaveUp = true;
+					Step step = Step.current();
+					throw new TimeoutException(String.format(
+							"Expected condition failed: waiting for %s (tried for %d ms%s)", condition,
+							TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+							step == null ? "" : " in " + step.root()), last);
+				}
+				sleep(Math.min(interval, remaining));
+				interval = Math.min(interval * 2, maxPoll);
+			}
+		} finally {
+			// failed lookups while polling are one miss for the locator registry, and only on timeout
+			LocatorRegistry.endWait(gaveUp);
+		}
+	}
+
+	private static void sleep(long nanos) {
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TimeoutException("Interrupted while waiting", e);
+		}
+	}
+}
@@ -0,0 +1,558 @@
+package com.qa.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Framework configuration, loaded once per JVM.
+ * <p>
+ * Values come from three layers, later ones overriding earlier ones:
+ * </p>
+ * <ol>
+ * <li>{@code config.properties}: the file named by {@code -Dconfig.file}, else
+ * {@code com/qa/config/config.properties} or {@code config.properties} on the classpath,
+ * else {@code src/main/java/com/qa/config/config.properties} in the working directory</li>
+ * <li>environment variables prefixed with {@code QA_}: {@code QA_POOL_SIZE} sets
+ * {@code pool.size}, {@code QA_FINALTEXT} sets {@code finalText}</li>
+ * <li>system properties given with {@code -D}, for keys that a lower layer defines or
+ * that the framework reads ({@code browser}, {@code url}, {@code pool.*}, {@code wait.*}, ...)</li>
+ * </ol>
+ * <p>
+ * The merged values are immutable. Typed accessors cover the settings the framework
+ * itself reads; test data is available through {@link #get(String)}.
+ * </p>
+ */
+public final class FrameworkConfig {
+
+	private static final Logger LOG = LogManager.getLogger(FrameworkConfig.class);
+
+	public static final String ENV_PREFIX = "QA_";
+
+	private static final String FILE_PATH = "src/main/java/com/qa/config/config.properties";
+	private static final String[] RESOURCES = { "com/qa/config/config.properties", "config.properties" };
+
+	// settings the framework reads; -D values for them apply even when config.properties lacks them
+	private static final List<String> FRAMEWORK_KEYS = Collections.unmodifiableList(Arrays.asList(
+			"browser", "url", "home.url"));
+	private static final List<String> FRAMEWORK_PREFIXES = Collections.unmodifiableList(Arrays.asList(
+			"browser.",
+			"pool.",
+			"wait.",
+			"readiness.",
+			"element.",
+			"metrics.",
+			"screenshot.",
+			"session.",
+			"network.",
+			"data.",
+			"shard.",
+			"executor.",
+			"http.",
+			"locator.",
+			"report.",
+			"retry.",
+			"snapshot.",
+			"grid.",
+			"log.",
+			"trace.",
+			"flow."));
+
+	private static volatile FrameworkConfig instance;
+
+	private final Map<String, String> values;
+	private final String source;
+
+	FrameworkConfig(Properties file, String source, Map<String, String> env, Properties system) {
+		Map<String, String> merged = new HashMap<>();
+		for (String key : file.stringPropertyNames()) {
+			merged.put(key, file.getProperty(key).trim());
+		}
+		for (Map.Entry<String, String> entry : env.entrySet()) {
+			if (entry.getKey().startsWith(ENV_PREFIX)) {
+				merged.put(keyForEnv(entry.getKey().substring(ENV_PREFIX.length()), merged), entry.getValue().trim());
+			}
+		}
+		for (String key : system.stringPropertyNames()) {
+			if (merged.containsKey(key) || isFrameworkKey(key)) {
+				merged.put(key, system.getProperty(key).trim());
+			}
+		}
+		this.values = Collections.unmodifiableMap(merged);
+		this.source = source;
+	}
+
+	/**
+	 * Returns the configuration of this JVM, loading it on first use.
+	 *
+	 * @return the configuration
+	 */
+	public static FrameworkConfig get() {
+		FrameworkConfig result = instance;
+		if (result == null) {
+			synchronized (FrameworkConfig.class) {
+				result = instance;
+				if (result == null) {
+					result = load();
+					instance = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static FrameworkConfig load() {
+		Properties file = new Properties();
+		String source = null;
+		try {
+			String configured = System.getProperty("config.file");
+			if (configured != null) {
+				source = read(file, Paths.get(configured));
+			} else {
+				ClassLoader loader = FrameworkConfig.class.getClassLoader();
+				for (String resource : RESOURCES) {
+					try (InputStream input = loader.getResourceAsStream(resource)) {
+						if (input != null) {
+							file.load(input);
+							source = "classpath:" + resource;
+							break;
+						}
+					}
+				}
+				if (source == null && Files.exists(Paths.get(FILE_PATH))) {
+					source = read(file, Paths.get(FILE_PATH));
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read config.properties: " + e.getMessage(), e);
+		}
+		if (source == null) {
+			LOG.warn("config.properties not found; using environment and -D settings only");
+		}
+		return new FrameworkConfig(file, source, System.getenv(), System.getProperties());
+	}
+
+	private static String read(Properties file, Path path) throws IOException {
+		try (InputStream input = Files.newInputStream(path)) {
+			file.load(input);
+		}
+		return path.toAbsolutePath().toString();
+	}
+
+	// QA_POOL_SIZE -> pool.size, or an existing key that matches ignoring case and separators
+	private static String keyForEnv(String name, Map<String, String> known) {
+		String normalized = name.replace("_", "").toLowerCase(Locale.ROOT);
+		for (String key : known.keySet()) {
+			if (key.replace(".", "").toLowerCase(Locale.ROOT).equals(normalized)) {
+				return key;
+			}
+		}
+		return name.toLowerCase(Locale.ROOT).replace('_', '.');
+	}
+
+	/**
+	 * Tells whether a {@code -D} setting is read by the framework even when
+	 * config.properties does not mention it.
+	 *
+	 * @param key the property name
+	 * @return true for framework settings
+	 */
+	public static boolean isFrameworkKey(String key) {
+		if (FRAMEWORK_KEYS.contains(key)) {
+			return true;
+		}
+		for (String prefix : FRAMEWORK_PREFIXES) {
+			if (key.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return where config.properties was read from, or null if it was not found
+	 */
+	public String source() {
+		return source;
+	}
+
+	public String get(String key) {
+		return values.get(key);
+	}
+
+	public String get(String key, String defaultValue) {
+		String value = values.get(key);
+		return value == null || value.isEmpty() ? defaultValue : value;
+	}
+
+	/**
+	 * Returns a setting that has to be present.
+	 *
+	 * @param key the property name
+	 * @return the value
+	 * @throws IllegalStateException if the setting is missing or empty
+	 */
+	public String require(String key) {
+		String value = values.get(key);
+		if (value == null || value.isEmpty()) {
+			throw new IllegalStateException(key + " is not set in config.properties ("
+					+ (source == null ? "file not found" : source) + "), " + ENV_PREFIX
+					+ key.replace('.', '_').toUpperCase(Locale.ROOT) + " or -D" + key);
+		}
+		return value;
+	}
+
+	public int getInt(String key, int defaultValue) {
+		String value = get(key, null);
+		return value == null ? defaultValue : parse(key, value, Integer::parseInt);
+	}
+
+	public long getLong(String key, long defaultValue) {
+		String value = get(key, null);
+		return value == null ? defaultValue : parse(key, value, Long::parseLong);
+	}
+
+	public boolean getBoolean(String key, boolean defaultValue) {
+		String value = get(key, null);
+		return value == null ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+	public Duration getSeconds(String key, long defaultSeconds) {
+		return Duration.ofSeconds(getLong(key, defaultSeconds));
+	}
+
+	public Duration getMillis(String key, long defaultMillis) {
+		return Duration.ofMillis(getLong(key, defaultMillis));
+	}
+
+	/**
+	 * Returns a setting that must be one of a fixed set of values, ignoring case.
+	 *
+	 * @param key          the property name
+	 * @param defaultValue the value to use when the setting is missing
+	 * @param allowed      the accepted values, in lower case
+	 * @return the value in lower case
+	 * @throws IllegalArgumentException if the setting is not one of {@code allowed}
+	 */
+	public String getChoice(String key, String defaultValue, String... allowed) {
+		String value = get(key, defaultValue).trim().toLowerCase(Locale.ROOT);
+		for (String choice : allowed) {
+			if (choice.equals(value)) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Invalid value for " + key + ": " + get(key) + " (expected one of "
+				+ String.join(", ", allowed) + ")");
+	}
+
+	private static <T> T parse(String key, String value, Function<String, T> parser) {
+		try {
+			return parser.apply(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalStateException("Invalid number for " + key + ": " + value, e);
+		}
+	}
+
+	/**
+	 * Returns all settings whose key starts with {@code prefix}, keyed by the rest of the key.
+	 *
+	 * @param prefix the key prefix, for example {@code network.stub.}
+	 * @return the matching settings
+	 */
+	public Map<String, String> withPrefix(String prefix) {
+		Map<String, String> result = new HashMap<>();
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			if (entry.getKey().startsWith(prefix)) {
+				result.put(entry.getKey().substring(prefix.length()), entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a comma-separated setting as a list, without empty entries.
+	 *
+	 * @param key the property name
+	 * @return the entries, empty if the setting is missing
+	 */
+	public List<String> getList(String key) {
+		List<String> result = new ArrayList<>();
+		for (String entry : get(key, "").split(",")) {
+			if (!entry.trim().isEmpty()) {
+				result.add(entry.trim());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a mutable copy of all values, for code that still works with {@link Properties}.
+	 *
+	 * @return a new Properties object
+	 */
+	public Properties asProperties() {
+		Properties prop = new Properties();
+		prop.putAll(values);
+		return prop;
+	}
+
+	public String browser() {
+		return get("browser");
+	}
+
+	public String baseUrl() {
+		return require("url");
+	}
+
+	public int poolSize() {
+		return getInt("pool.size", 1);
+	}
+
+	public int poolWarmup() {
+		return getInt("pool.warmup", 0);
+	}
+
+	public int poolContexts() {
+		return getInt("pool.contexts", 1);
+	}
+
+	public Duration poolBorrowTimeout() {
+		return getSeconds("pool.borrow.timeout", 120);
+	}
+
+	public Duration poolFramePinTimeout() {
+		return getSeconds("pool.frame.pin.timeout", 30);
+	}
+
+	public Duration waitTimeout() {
+		return getSeconds("wait.timeout", 10);
+	}
+
+	public Duration waitInitialPoll() {
+		return getMillis("wait.poll.initial.ms", 5);
+	}
+
+	public Duration waitMaxPoll() {
+		return getMillis("wait.poll.max.ms", 250);
+	}
+
+	public Duration readinessQuietPeriod() {
+		return getMillis("readiness.quiet.ms", 50);
+	}
+
+	public Duration elementCacheTtl() {
+		return getMillis("element.cache.ttl.ms", 0);
+	}
+
+	public boolean metricsEnabled() {
+		return getBoolean("metrics.enabled", true);
+	}
+
+	public Path metricsDir() {
+		return Paths.get(get("metrics.dir", "target/metrics"));
+	}
+
+	public String screenshotMode() {
+		return getChoice("screenshot.mode", "always", "always", "failure", "off");
+	}
+
+	public Path screenshotDir() {
+		return Paths.get(get("screenshot.dir", "target/screenshots"));
+	}
+
+	public int screenshotQueueSize() {
+		return getInt("screenshot.queue.size", 32);
+	}
+
+	public String browserProfile() {
+		return get("browser.profile", "default");
+	}
+
+	public String browserViewport() {
+		return get("browser.viewport", "1920x1080");
+	}
+
+	public String browserDriverPath() {
+		return get("browser.driver.path", null);
+	}
+
+	public String browserBinaryPath() {
+		return get("browser.binary.path", null);
+	}
+
+	public String homeUrl() {
+		return require("home.url");
+	}
+
+	public String sessionLoginMode() {
+		return get("session.login.mode", "api");
+	}
+
+	public String sessionLoginUrl() {
+		return require("session.login.url");
+	}
+
+	public Duration sessionTtl() {
+		return Duration.ofMinutes(getLong("session.ttl.minutes", 30));
+	}
+
+	public List<String> networkBlockList() {
+		return getList("network.block");
+	}
+
+	public boolean networkTiming() {
+		return getBoolean("network.timing", true);
+	}
+
+	public String executorMode() {
+		return get("executor.mode", "platform");
+	}
+
+	public int executorConcurrency() {
+		return getInt("executor.concurrency", 0);
+	}
+
+	public Duration httpConnectTimeout() {
+		return getSeconds("http.connect.timeout", 10);
+	}
+
+	public Duration httpReadTimeout() {
+		return getSeconds("http.read.timeout", 180);
+	}
+
+	public boolean locatorEnabled() {
+		return getBoolean("locator.enabled", true);
+	}
+
+	public Path locatorIndex() {
+		return Paths.get(get("locator.index", "locator-index.json"));
+	}
+
+	public Duration locatorSlow() {
+		return getMillis("locator.slow.ms", 250);
+	}
+
+	public boolean locatorSuggest() {
+		return getBoolean("locator.suggest", true);
+	}
+
+	public Path reportJournal() {
+		return Paths.get(get("report.journal", "target/reports/results.ndjson"));
+	}
+
+	public boolean reportFsync() {
+		return getBoolean("report.fsync", false);
+	}
+
+	public Path reportHtml() {
+		return Paths.get(get("report.html", "target/reports/extent.html"));
+	}
+
+	public boolean retryEnabled() {
+		return getBoolean("retry.enabled", true);
+	}
+
+	public int retryMax() {
+		return getInt("retry.max", 1);
+	}
+
+	public List<String> retryCategories() {
+		List<String> categories = getList("retry.categories");
+		return categories.isEmpty() ? Arrays.asList("INFRASTRUCTURE", "TIMING", "STALE") : categories;
+	}
+
+	public int retryBudgetAttempts() {
+		return getInt("retry.budget.attempts", 5);
+	}
+
+	public Duration retryBudgetTime() {
+		return getSeconds("retry.budget.seconds", 600);
+	}
+
+	public boolean snapshotEnabled() {
+		return getBoolean("snapshot.enabled", true);
+	}
+
+	public int snapshotMaxNodes() {
+		return getInt("snapshot.max.nodes", 5000);
+	}
+
+	public boolean snapshotObserve() {
+		return getBoolean("snapshot.observe", true);
+	}
+
+	public String gridMode() {
+		return get("grid.mode", "off").trim().toLowerCase(Locale.ROOT);
+	}
+
+	public int gridNodes() {
+		return getInt("grid.nodes", 2);
+	}
+
+	public int gridNodeSessions() {
+		return getInt("grid.node.sessions", 2);
+	}
+
+	public boolean gridNodeHeadless() {
+		return getBoolean("grid.node.headless", true);
+	}
+
+	public Duration gridQueueTimeout() {
+		return getSeconds("grid.queue.timeout.seconds", 120);
+	}
+
+	public Duration gridSessionTimeout() {
+		return getSeconds("grid.session.timeout.seconds", 300);
+	}
+
+	public int gridPort() {
+		return getInt("grid.port", 0);
+	}
+
+	public String logLevel() {
+		return get("log.level", "info").trim();
+	}
+
+	public String traceMode() {
+		return getChoice("trace.mode", "failure", "failure", "always", "off");
+	}
+
+	public Path traceDir() {
+		return Paths.get(get("trace.dir", "target/traces"));
+	}
+
+	public String traceDom() {
+		return getChoice("trace.dom", "off", "off", "hash", "full");
+	}
+
+	public int traceScreenshots() {
+		return getInt("trace.screenshots", 0);
+	}
+
+	public int traceMaxEvents() {
+		return getInt("trace.max.events", 5000);
+	}
+
+	public boolean flowFailFast() {
+		return getBoolean("flow.failfast", true);
+	}
+
+	public boolean flowReuse() {
+		return getBoolean("flow.reuse", true);
+	}
+}
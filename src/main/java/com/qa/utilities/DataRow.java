@@ -0,0 +1,44 @@
+package com.qa.utilities;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * One record of a test dataset: its position in the file and its named values.
+ */
+public final class DataRow {
+
+	private final long index;
+	private final Map<String, String> values;
+
+	DataRow(long index, Map<String, String> values) {
+		this.index = index;
+		this.values = Collections.unmodifiableMap(values);
+	}
+
+	/**
+	 * @return the zero-based position of the row in its file, counting data rows only
+	 */
+	public long index() {
+		return index;
+	}
+
+	public String get(String column) {
+		return values.get(column);
+	}
+
+	public String get(String column, String defaultValue) {
+		String value = values.get(column);
+		return value == null || value.isEmpty() ? defaultValue : value;
+	}
+
+	public Map<String, String> values() {
+		return values;
+	}
+
+	// TestNG shows this as the parameter of each invocation
+	@Override
+	public String toString() {
+		return "#" + index + " " + values;
+	}
+}
@@ -0,0 +1,271 @@
+package com.qa.utilities;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Streams test data rows from CSV or JSON files, one row in memory at a time.
+ * <p>
+ * CSV files start with a header row; fields may be quoted, with {@code ""} for a quote and
+ * line breaks inside quotes. JSON files hold an array of flat objects, read with Gson's
+ * streaming {@link JsonReader}. Rows outside the {@link Shard} are skipped without being
+ * parsed into values, and reading stops once the shard's range is passed.
+ * </p>
+ * <p>
+ * The returned iterator holds the file open until it is exhausted or closed; TestNG
+ * exhausts data provider iterators, so providers can return it directly.
+ * </p>
+ */
+public final class DataRows {
+
+	private DataRows() {
+	}
+
+	/**
+	 * Opens a CSV ({@code .csv}) or JSON ({@code .json}) file for the given shard.
+	 *
+	 * @param file  the dataset
+	 * @param shard the rows to return
+	 * @return an iterator over the selected rows
+	 * @throws UncheckedIOException if the file cannot be opened
+	 */
+	public static Reader open(Path file, Shard shard) {
+		String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+		try {
+			BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+			if (name.endsWith(".csv")) {
+				return new CsvReader(in, shard);
+			}
+			if (name.endsWith(".json")) {
+				return new JsonRowReader(in, shard);
+			}
+			in.close();
+			throw new IllegalArgumentException("Unsupported data file (expected .csv or .json): " + file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open data file " + file, e);
+		}
+	}
+
+	/**
+	 * Iterator over data rows that releases its file when done.
+	 */
+	public abstract static class Reader implements Iterator<DataRow>, Closeable {
+
+		private final Shard shard;
+		private DataRow next;
+		private long index;
+		private boolean done;
+
+		Reader(Shard shard) {
+			this.shard = shard;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null && !done) {
+				try {
+					while (next == null) {
+						if (shard.isPast(index) || !hasMoreRows()) {
+							done = true;
+							close();
+							break;
+						}
+						if (shard.contains(index)) {
+							next = new DataRow(index, readRow());
+						} else {
+							skipRow();
+						}
+						index++;
+					}
+				} catch (IOException e) {
+					done = true;
+					throw new UncheckedIOException(e);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public DataRow next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			DataRow row = next;
+			next = null;
+			return row;
+		}
+
+		abstract boolean hasMoreRows() throws IOException;
+
+		abstract Map<String, String> readRow() throws IOException;
+
+		abstract void skipRow() throws IOException;
+	}
+
+	static final class CsvReader extends Reader {
+
+		private final BufferedReader in;
+		private final List<String> header;
+		private String line;
+
+		CsvReader(BufferedReader in, Shard shard) throws IOException {
+			super(shard);
+			this.in = in;
+			String first = in.readLine();
+			if (first != null && !first.isEmpty() && first.charAt(0) == '\uFEFF') {
+				first = first.substring(1);
+			}
+			this.header = first == null ? new ArrayList<>() : parse(first);
+		}
+
+		@Override
+		boolean hasMoreRows() throws IOException {
+			while (line == null) {
+				line = in.readLine();
+				if (line == null) {
+					return false;
+				}
+				if (line.trim().isEmpty()) {
+					line = null;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		Map<String, String> readRow() throws IOException {
+			List<String> fields = parse(record());
+			Map<String, String> row = new LinkedHashMap<>();
+			for (int i = 0; i < header.size(); i++) {
+				row.put(header.get(i), i < fields.size() ? fields.get(i) : "");
+			}
+			return row;
+		}
+
+		@Override
+		void skipRow() throws IOException {
+			record();
+		}
+
+		// the current line plus continuation lines while a quoted field is open
+		private String record() throws IOException {
+			StringBuilder record = new StringBuilder(line);
+			line = null;
+			while (openQuotes(record)) {
+				String more = in.readLine();
+				if (more == null) {
+					break;
+				}
+				record.append('\n').append(more);
+			}
+			return record.toString();
+		}
+
+		private static boolean openQuotes(CharSequence text) {
+			boolean open = false;
+			for (int i = 0; i < text.length(); i++) {
+				if (text.charAt(i) == '"') {
+					open = !open;
+				}
+			}
+			return open;
+		}
+
+		private static List<String> parse(String record) {
+			List<String> fields = new ArrayList<>();
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false;
+			for (int i = 0; i < record.length(); i++) {
+				char c = record.charAt(i);
+				if (quoted) {
+					if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+						field.append('"');
+						i++;
+					} else if (c == '"') {
+						quoted = false;
+					} else {
+						field.append(c);
+					}
+				} else if (c == '"') {
+					quoted = true;
+				} else if (c == ',') {
+					fields.add(field.toString().trim());
+					field.setLength(0);
+				} else {
+					field.append(c);
+				}
+			}
+			fields.add(field.toString().trim());
+			return fields;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	static final class JsonRowReader extends Reader {
+
+		private final JsonReader in;
+
+		JsonRowReader(BufferedReader in, Shard shard) throws IOException {
+			super(shard);
+			this.in = new JsonReader(in);
+			this.in.beginArray();
+		}
+
+		@Override
+		boolean hasMoreRows() throws IOException {
+			return in.hasNext();
+		}
+
+		@Override
+		Map<String, String> readRow() throws IOException {
+			Map<String, String> row = new LinkedHashMap<>();
+			in.beginObject();
+			while (in.hasNext()) {
+				String name = in.nextName();
+				JsonToken token = in.peek();
+				if (token == JsonToken.NULL) {
+					in.nextNull();
+					row.put(name, "");
+				} else if (token == JsonToken.BOOLEAN) {
+					row.put(name, String.valueOf(in.nextBoolean()));
+				} else if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+					row.put(name, in.nextString());
+				} else {
+					throw new IOException("Nested value for '" + name + "' at " + in.getPath()
+							+ "; data rows must be flat objects");
+				}
+			}
+			in.endObject();
+			return row;
+		}
+
+		@Override
+		void skipRow() throws IOException {
+			in.skipValue();
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package com.qa.utilities;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.Status;
+import com.aventstack.extentreports.reporter.ExtentSparkReporter;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Renders the NDJSON result journal written by {@link com.qa.base.ResultJournal} as an
+ * Extent Spark HTML report.
+ * <p>
+ * Rendering is a separate step that can run whenever the report is wanted, also on the
+ * journal of a run that crashed; a truncated last line is skipped. Usage:
+ * {@code ReportRenderer [journal] [report.html]}, defaulting to {@code report.journal} and
+ * {@code report.html}.
+ * </p>
+ */
+public final class ReportRenderer {
+
+	private ReportRenderer() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		FrameworkConfig config = FrameworkConfig.get();
+		Path journal = args.length > 0 ? Paths.get(args[0]) : config.reportJournal();
+		Path html = args.length > 1 ? Paths.get(args[1]) : config.reportHtml();
+		int results = render(journal, html);
+		System.out.println("Rendered " + results + " result(s) from " + journal + " into " + html);
+	}
+
+	/**
+	 * Renders a journal into an HTML report.
+	 *
+	 * @param journal the NDJSON journal
+	 * @param html    the report file to write
+	 * @return the number of test results rendered
+	 * @throws IOException if the journal cannot be read
+	 */
+	public static int render(Path journal, Path html) throws IOException {
+		if (html.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(html.toAbsolutePath().getParent());
+		}
+		ExtentReports extent = new ExtentReports();
+		extent.attachReporter(new ExtentSparkReporter(html.toString()));
+		extent.setSystemInfo("Journal", journal.toString());
+		int results = 0;
+		int lineNumber = 0;
+		try (BufferedReader in = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+			String text;
+			while ((text = in.readLine()) != null) {
+				lineNumber++;
+				if (text.trim().isEmpty()) {
+					continue;
+				}
+				JsonObject line;
+				try {
+					line = JsonParser.parseString(text).getAsJsonObject();
+				} catch (JsonParseException | IllegalStateException e) {
+					System.out.println("Skipping unreadable journal line " + lineNumber + ": " + e.getMessage());
+					continue;
+				}
+				String type = string(line, "type");
+				if ("result".equals(type)) {
+					addResult(extent, line);
+					results++;
+				} else if ("suite-start".equals(type)) {
+					extent.setSystemInfo("Run " + string(line, "run"),
+							string(line, "suite") + " on " + string(line, "browser") + " (" + string(line, "jvm") + ")");
+				}
+			}
+		}
+		extent.flush();
+		return results;
+	}
+
+	private static void addResult(ExtentReports extent, JsonObject line) {
+		String name = string(line, "class") + "." + string(line, "method");
+		JsonArray parameters = line.getAsJsonArray("parameters");
+		if (parameters != null && parameters.size() > 0) {
+			name += " " + parameters;
+		}
+		ExtentTest test = extent.createTest(name);
+		String className = string(line, "class");
+		test.assignCategory(className.substring(className.lastIndexOf('.') + 1));
+		test.getModel().setStartTime(new Date(line.get("startMillis").getAsLong()));
+		test.getModel().setEndTime(new Date(line.get("endMillis").getAsLong()));
+		test.info("Run " + string(line, "run") + ", thread " + string(line, "thread") + ", "
+				+ (line.has("attempt") ? "attempt " + line.get("attempt").getAsInt() + ", " : "")
+				+ line.get("durationMs").getAsLong() + " ms");
+
+		JsonObject commands = line.getAsJsonObject("commands");
+		if (commands != null) {
+			StringBuilder summary = new StringBuilder("WebDriver commands: " + commands.get("count").getAsLong()
+					+ ", " + commands.get("totalMs").getAsDouble() + " ms");
+			for (JsonElement row : commands.getAsJsonArray("top")) {
+				JsonObject command = row.getAsJsonObject();
+				summary.append("<br>").append(string(command, "command")).append(" in ")
+						.append(string(command, "page")).append('.').append(string(command, "helper"))
+						.append(": ").append(command.get("count").getAsLong()).append(" x, ")
+						.append(command.get("totalMs").getAsDouble()).append(" ms");
+			}
+			test.info(summary.toString());
+		}
+		if (line.has("metrics")) {
+			test.info("Command metrics: " + string(line, "metrics"));
+		}
+		if (line.has("trace")) {
+			test.info("Trace: " + string(line, "trace") + " (open with TraceViewer)");
+		}
+
+		String status = string(line, "status");
+		JsonObject error = line.getAsJsonObject("error");
+		String message = error == null ? null
+				: string(error, "type") + ": " + string(error, "message")
+						+ (error.has("at") ? "<br>at " + string(error, "at") : "");
+		if ("FAIL".equals(status)) {
+			test.fail(message == null ? "Failed" : message);
+		} else if ("RETRY".equals(status)) {
+			test.warning("Retried after a " + string(line, "category") + " failure: " + message);
+		} else if ("SKIP".equals(status)) {
+			test.skip(message == null ? "Skipped" : message);
+		} else {
+			test.log(Status.PASS, "Passed");
+		}
+		if (line.has("screenshot")) {
+			// journal paths are relative to the run's working directory, the report may live elsewhere
+			test.addScreenCaptureFromPath(Paths.get(string(line, "screenshot")).toAbsolutePath().toString());
+		}
+	}
+
+	private static String string(JsonObject object, String name) {
+		JsonElement value = object.get(name);
+		return value == null || value.isJsonNull() ? "" : value.getAsString();
+	}
+}
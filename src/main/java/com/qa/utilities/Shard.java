@@ -0,0 +1,80 @@
+package com.qa.utilities;
+
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Selects which rows of a dataset this JVM runs.
+ * <p>
+ * {@code data.range=start-end} keeps the rows with {@code start <= index < end}, for a
+ * planner that hands each worker a contiguous block. {@code data.shard.index} and
+ * {@code data.shard.count} stripe the remaining rows across workers: row {@code i} belongs
+ * to shard {@code i % count}. Striping needs no row count up front, so the file can be
+ * streamed, and it spreads slow and fast parts of a dataset evenly across workers.
+ * </p>
+ */
+public final class Shard {
+
+	public static final Shard ALL = new Shard(0, 1, 0, Long.MAX_VALUE);
+
+	private final int index;
+	private final int count;
+	private final long start;
+	private final long end;
+
+	public Shard(int index, int count, long start, long end) {
+		if (count < 1 || index < 0 || index >= count) {
+			throw new IllegalArgumentException("Shard index must be between 0 and " + (count - 1) + ": " + index);
+		}
+		if (start < 0 || end < start) {
+			throw new IllegalArgumentException("Invalid row range " + start + "-" + end);
+		}
+		this.index = index;
+		this.count = count;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Returns the shard configured through {@code data.shard.index}, {@code data.shard.count}
+	 * and {@code data.range} (or their {@code QA_} environment variables).
+	 *
+	 * @return the configured shard, {@link #ALL} if none is set
+	 */
+	public static Shard fromConfig() {
+		FrameworkConfig config = FrameworkConfig.get();
+		return of(config.getInt("data.shard.index", 0), config.getInt("data.shard.count", 1),
+				config.get("data.range", null));
+	}
+
+	/**
+	 * @param index the stripe of this worker
+	 * @param count the number of stripes
+	 * @param range {@code start-end} or {@code start-} as in {@code data.range}, or null for all rows
+	 * @return the shard
+	 */
+	static Shard of(int index, int count, String range) {
+		long start = 0;
+		long end = Long.MAX_VALUE;
+		if (range != null) {
+			String[] bounds = range.split("-", 2);
+			start = Long.parseLong(bounds[0].trim());
+			end = bounds.length < 2 || bounds[1].trim().isEmpty() ? Long.MAX_VALUE : Long.parseLong(bounds[1].trim());
+		}
+		return new Shard(index, count, start, end);
+	}
+
+	public boolean contains(long row) {
+		return row >= start && row < end && row % count == index;
+	}
+
+	// readers stop once no later row can belong to the shard
+	boolean isPast(long row) {
+		return row >= end;
+	}
+
+	@Override
+	public String toString() {
+		return "shard " + index + "/" + count + (start > 0 || end < Long.MAX_VALUE
+				? " rows " + start + "-" + (end == Long.MAX_VALUE ? "" : String.valueOf(end)) : "");
+	}
+}
@@ -0,0 +1,182 @@
+package com.qa.utilities;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.testng.annotations.Test;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlInclude;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+/**
+ * Splits the test methods of a suite into shards of similar total duration.
+ * <p>
+ * Methods are assigned longest first, each to the shard with the least planned time
+ * (the LPT heuristic), using {@link TestDurations}; methods without history count as
+ * the median. A method with a data provider is planned into every shard with an equal
+ * share of its time, and each shard then runs only its {@link Shard} of the rows.
+ * </p>
+ */
+public final class ShardPlan {
+
+	// assumed duration when there is no history at all
+	static final long DEFAULT_MILLIS = 60_000;
+
+	private final XmlSuite base;
+	private final List<Bucket> buckets = new ArrayList<>();
+
+	private ShardPlan(XmlSuite base, int count) {
+		this.base = base;
+		for (int i = 0; i < count; i++) {
+			buckets.add(new Bucket(i));
+		}
+	}
+
+	/**
+	 * Plans the methods of {@code base} into {@code count} shards.
+	 *
+	 * @param base      the full suite
+	 * @param count     the number of shards
+	 * @param durations historical durations
+	 * @return the plan
+	 */
+	public static ShardPlan of(XmlSuite base, int count, TestDurations durations) {
+		ShardPlan plan = new ShardPlan(base, count);
+		long unknown = durations.median(DEFAULT_MILLIS);
+		List<Unit> units = new ArrayList<>();
+		for (XmlTest test : base.getTests()) {
+			for (XmlClass type : test.getXmlClasses()) {
+				for (Method method : testMethods(type)) {
+					Long recorded = durations.get(type.getName() + "." + method.getName());
+					units.add(new Unit(type.getName(), method.getName(), recorded == null ? unknown : recorded,
+							!method.getAnnotation(Test.class).dataProvider().isEmpty()));
+				}
+			}
+		}
+		units.sort(Comparator.comparingLong((Unit u) -> u.millis).reversed());
+		PriorityQueue<Bucket> lightest = new PriorityQueue<>(
+				Comparator.comparingLong((Bucket b) -> b.millis).thenComparingInt(b -> b.index));
+		for (Unit unit : units) {
+			if (unit.dataDriven) {
+				for (Bucket bucket : plan.buckets) {
+					bucket.add(unit, unit.millis / count);
+				}
+			}
+		}
+		lightest.addAll(plan.buckets);
+		for (Unit unit : units) {
+			if (!unit.dataDriven) {
+				Bucket bucket = lightest.poll();
+				bucket.add(unit, unit.millis);
+				lightest.add(bucket);
+			}
+		}
+		return plan;
+	}
+
+	public int size() {
+		return buckets.size();
+	}
+
+	public long plannedMillis(int shard) {
+		return buckets.get(shard).millis;
+	}
+
+	public int methodCount(int shard) {
+		return buckets.get(shard).units.size();
+	}
+
+	/**
+	 * Builds the TestNG suite of one shard: the base suite's listeners, parameters and
+	 * parallel settings with only the shard's methods included.
+	 *
+	 * @param shard the shard index
+	 * @return the suite
+	 */
+	public XmlSuite suite(int shard) {
+		XmlSuite suite = new XmlSuite();
+		suite.setName(base.getName() + " shard " + shard);
+		suite.setListeners(new ArrayList<>(base.getListeners()));
+		suite.setParameters(new LinkedHashMap<>(base.getParameters()));
+		suite.setParallel(base.getParallel());
+		suite.setThreadCount(base.getThreadCount());
+		suite.setDataProviderThreadCount(base.getDataProviderThreadCount());
+		XmlTest template = base.getTests().isEmpty() ? null : base.getTests().get(0);
+		XmlTest test = new XmlTest(suite);
+		test.setName("Shard " + shard);
+		if (template != null) {
+			test.setParallel(template.getParallel());
+			test.setThreadCount(template.getThreadCount());
+		}
+		Map<String, XmlClass> classes = new LinkedHashMap<>();
+		for (Unit unit : buckets.get(shard).units) {
+			XmlClass type = classes.computeIfAbsent(unit.className, name -> new XmlClass(name, false));
+			List<XmlInclude> includes = new ArrayList<>(type.getIncludedMethods());
+			includes.add(new XmlInclude(unit.methodName));
+			type.setIncludedMethods(includes);
+		}
+		test.setXmlClasses(new ArrayList<>(classes.values()));
+		return suite;
+	}
+
+	private static List<Method> testMethods(XmlClass type) {
+		List<Method> methods = new ArrayList<>();
+		Class<?> testClass;
+		try {
+			testClass = Class.forName(type.getName());
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Test class not on the classpath: " + type.getName(), e);
+		}
+		List<String> included = new ArrayList<>();
+		for (XmlInclude include : type.getIncludedMethods()) {
+			included.add(include.getName());
+		}
+		for (Method method : testClass.getMethods()) {
+			if (method.isAnnotationPresent(Test.class) && !Modifier.isStatic(method.getModifiers())
+					&& (included.isEmpty() || included.contains(method.getName()))
+					&& !type.getExcludedMethods().contains(method.getName())) {
+				methods.add(method);
+			}
+		}
+		methods.sort(Comparator.comparing(Method::getName));
+		return methods;
+	}
+
+	private static final class Unit {
+
+		final String className;
+		final String methodName;
+		final long millis;
+		final boolean dataDriven;
+
+		Unit(String className, String methodName, long millis, boolean dataDriven) {
+			this.className = className;
+			this.methodName = methodName;
+			this.millis = millis;
+			this.dataDriven = dataDriven;
+		}
+	}
+
+	private static final class Bucket {
+
+		final int index;
+		final List<Unit> units = new ArrayList<>();
+		long millis;
+
+		Bucket(int index) {
+			this.index = index;
+		}
+
+		void add(Unit unit, long share) {
+			units.add(unit);
+			millis += share;
+		}
+	}
+}
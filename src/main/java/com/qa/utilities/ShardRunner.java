@@ -0,0 +1,166 @@
+package com.qa.utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.testng.xml.SuiteXmlParser;
+import org.testng.xml.XmlSuite;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.qa.base.VirtualThreadExecutorFactory;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Runs a TestNG suite as several balanced shards, each in its own JVM.
+ * <p>
+ * The runner plans the suite with {@link ShardPlan} from the durations recorded in
+ * {@code shard.history}, writes one suite per shard to {@code target/shards}, starts a
+ * JVM per shard on the current classpath and waits for all of them. The shards'
+ * {@code testng-results.xml} files are merged into {@code target/shards/testng-results.xml}
+ * and the new durations are blended into the history for the next run.
+ * </p>
+ * <p>
+ * Usage: {@code ShardRunner [suite.xml]}; {@code shard.count} sets the number of shards.
+ * The exit code is non-zero if any shard failed. Framework settings given with {@code -D}
+ * are passed on to every shard, and each shard also gets its {@code data.shard.index} so
+ * data providers split their rows the same way.
+ * </p>
+ */
+public final class ShardRunner {
+
+	// TestNG's exit status when a suite selected no tests, e.g. a shard without data rows
+	private static final int HAS_NO_TEST = 8;
+
+	private ShardRunner() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		FrameworkConfig config = FrameworkConfig.get();
+		Path suiteFile = Paths.get(args.length > 0 ? args[0] : "testng.xml");
+		int count = config.getInt("shard.count", 2);
+		Path output = Paths.get(config.get("shard.dir", "target/shards"));
+		Path history = Paths.get(config.get("shard.history", "test-durations.properties"));
+
+		XmlSuite base;
+		try (InputStream in = Files.newInputStream(suiteFile)) {
+			base = new SuiteXmlParser().parse(suiteFile.toString(), in, false);
+		}
+		TestDurations durations = TestDurations.load(history);
+		ShardPlan plan = ShardPlan.of(base, count, durations);
+		Files.createDirectories(output);
+
+		List<Process> processes = new ArrayList<>();
+		for (int shard = 0; shard < plan.size(); shard++) {
+			Path suite = output.resolve("shard-" + shard + ".xml");
+			Files.write(suite, plan.suite(shard).toXml().getBytes(StandardCharsets.UTF_8));
+			System.out.println("Shard " + shard + ": " + plan.methodCount(shard) + " method(s), planned "
+					+ plan.plannedMillis(shard) / 1000 + " s");
+			processes.add(launch(shard, count, suite, output.resolve("shard-" + shard)));
+		}
+
+		long start = System.currentTimeMillis();
+		int failed = 0;
+		List<Path> results = new ArrayList<>();
+		for (int shard = 0; shard < processes.size(); shard++) {
+			int exit = processes.get(shard).waitFor();
+			Path result = output.resolve("shard-" + shard).resolve("testng-results.xml");
+			System.out.println("Shard " + shard + " finished with exit code " + exit + " after "
+					+ (System.currentTimeMillis() - start) / 1000 + " s; log in "
+					+ output.resolve("shard-" + shard + ".log"));
+			if (exit != 0 && exit != HAS_NO_TEST) {
+				failed++;
+			}
+			if (Files.exists(result)) {
+				results.add(result);
+			}
+		}
+
+		Path merged = output.resolve("testng-results.xml");
+		if (!results.isEmpty()) {
+			merge(results, merged);
+			durations.record(merged);
+			durations.save(history);
+			System.out.println("Merged " + results.size() + " shard report(s) into " + merged);
+		}
+		System.exit(failed == 0 ? 0 : 1);
+	}
+
+	private static Process launch(int shard, int count, Path suite, Path outputDir) throws IOException {
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		for (String key : System.getProperties().stringPropertyNames()) {
+			if (key.equals("config.file") || (FrameworkConfig.isFrameworkKey(key) && !key.startsWith("data.shard.")
+					&& !key.equals("metrics.dir") && !key.equals("screenshot.dir"))) {
+				command.add("-D" + key + "=" + System.getProperty(key));
+			}
+		}
+		command.add("-Ddata.shard.index=" + shard);
+		command.add("-Ddata.shard.count=" + count);
+		// keep the shards from overwriting each other's metrics and screenshots
+		command.add("-Dmetrics.dir=" + outputDir.resolve("metrics"));
+		command.add("-Dscreenshot.dir=" + outputDir.resolve("screenshots"));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("org.testng.TestNG");
+		if ("virtual".equalsIgnoreCase(FrameworkConfig.get().executorMode())) {
+			command.add("-threadpoolfactoryclass");
+			command.add(VirtualThreadExecutorFactory.class.getName());
+		}
+		command.add("-d");
+		command.add(outputDir.toString());
+		command.add(suite.toString());
+		File log = outputDir.resolveSibling(outputDir.getFileName() + ".log").toFile();
+		return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+	}
+
+	// sums the counters of the root elements and concatenates the suites
+	static void merge(List<Path> results, Path target) throws IOException {
+		Document merged = null;
+		Element root = null;
+		String[] counters = { "ignored", "total", "passed", "failed", "skipped" };
+		for (Path result : results) {
+			Document document = TestDurations.parse(result);
+			Element shardRoot = document.getDocumentElement();
+			if (merged == null) {
+				merged = document;
+				root = shardRoot;
+				continue;
+			}
+			for (String counter : counters) {
+				long sum = parseLong(root.getAttribute(counter)) + parseLong(shardRoot.getAttribute(counter));
+				root.setAttribute(counter, String.valueOf(sum));
+			}
+			NodeList suites = shardRoot.getElementsByTagName("suite");
+			for (int i = 0; i < suites.getLength(); i++) {
+				root.appendChild(merged.importNode(suites.item(i), true));
+			}
+		}
+		try {
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
+			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+			transformer.transform(new DOMSource(merged), new StreamResult(target.toFile()));
+		} catch (TransformerException e) {
+			throw new IOException("Cannot write " + target + ": " + e.getMessage(), e);
+		}
+	}
+
+	private static long parseLong(String value) {
+		return value == null || value.isEmpty() ? 0 : Long.parseLong(value);
+	}
+}
@@ -0,0 +1,137 @@
+package com.qa.utilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * Historical duration of each test method, keyed by {@code class.method}, used to
+ * balance shards. Durations come from TestNG's {@code testng-results.xml}; all
+ * invocations of a method (data provider rows, retries) are added up. Each new run is
+ * blended with the stored value so one slow run does not reshuffle every shard.
+ */
+public final class TestDurations {
+
+	// weight of the newest run when blending with the stored history
+	private static final double NEW_RUN_WEIGHT = 0.5;
+
+	private final Map<String, Long> millis = new TreeMap<>();
+
+	/**
+	 * Loads the history file; a missing file gives an empty history.
+	 *
+	 * @param file the history file
+	 * @return the history
+	 * @throws IOException if the file exists but cannot be read
+	 */
+	public static TestDurations load(Path file) throws IOException {
+		TestDurations durations = new TestDurations();
+		if (Files.exists(file)) {
+			Properties stored = new Properties();
+			try (InputStream in = Files.newInputStream(file)) {
+				stored.load(in);
+			}
+			for (String key : stored.stringPropertyNames()) {
+				durations.millis.put(key, Long.parseLong(stored.getProperty(key).trim()));
+			}
+		}
+		return durations;
+	}
+
+	public void save(Path file) throws IOException {
+		if (file.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+		}
+		Properties stored = new Properties();
+		for (Map.Entry<String, Long> entry : millis.entrySet()) {
+			stored.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+		}
+		try (OutputStream out = Files.newOutputStream(file)) {
+			stored.store(out, "Test method durations in ms, maintained by ShardRunner");
+		}
+	}
+
+	/**
+	 * Returns the recorded duration of a test method.
+	 *
+	 * @param test {@code class.method}
+	 * @return the duration in ms, or null if the method has not run before
+	 */
+	public Long get(String test) {
+		return millis.get(test);
+	}
+
+	/**
+	 * Returns the median of all recorded durations, used for methods without history.
+	 *
+	 * @param fallback the value to use if nothing has been recorded
+	 * @return the median duration in ms
+	 */
+	public long median(long fallback) {
+		if (millis.isEmpty()) {
+			return fallback;
+		}
+		List<Long> values = new ArrayList<>(millis.values());
+		Collections.sort(values);
+		return values.get(values.size() / 2);
+	}
+
+	/**
+	 * Blends the method durations of a TestNG results file into the history.
+	 *
+	 * @param results a {@code testng-results.xml}
+	 * @throws IOException if the file cannot be read or parsed
+	 */
+	public void record(Path results) throws IOException {
+		Map<String, Long> run = new HashMap<>();
+		Document document = parse(results);
+		NodeList classes = document.getElementsByTagName("class");
+		for (int i = 0; i < classes.getLength(); i++) {
+			Element type = (Element) classes.item(i);
+			NodeList methods = type.getElementsByTagName("test-method");
+			for (int j = 0; j < methods.getLength(); j++) {
+				Element method = (Element) methods.item(j);
+				if ("true".equals(method.getAttribute("is-config"))) {
+					continue;
+				}
+				String key = type.getAttribute("name") + "." + method.getAttribute("name");
+				run.merge(key, Long.parseLong(method.getAttribute("duration-ms")), Long::sum);
+			}
+		}
+		for (Map.Entry<String, Long> entry : run.entrySet()) {
+			Long previous = millis.get(entry.getKey());
+			long blended = previous == null ? entry.getValue()
+					: Math.round(NEW_RUN_WEIGHT * entry.getValue() + (1 - NEW_RUN_WEIGHT) * previous);
+			millis.put(entry.getKey(), blended);
+		}
+	}
+
+	static Document parse(Path xml) throws IOException {
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+			try (InputStream in = Files.newInputStream(xml)) {
+				return factory.newDocumentBuilder().parse(in);
+			}
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Cannot parse " + xml + ": " + e.getMessage(), e);
+		}
+	}
+}
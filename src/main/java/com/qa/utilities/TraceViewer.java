@@ -0,0 +1,325 @@
+package com.qa.utilities;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.qa.config.FrameworkConfig;
+
+/**
+ * Reads the traces written by {@link com.qa.base.TraceRecorder} without a browser.
+ * <p>
+ * Usage:
+ * <ul>
+ * <li>{@code TraceViewer} lists the traces in {@code trace.dir}, newest first;</li>
+ * <li>{@code TraceViewer <trace>} prints the trace as a timeline of helpers and commands;</li>
+ * <li>{@code TraceViewer <trace> --step} replays it one event at a time, showing the URL,
+ * window, frame and document the browser was on at that point;</li>
+ * <li>{@code TraceViewer <trace> --dom <hash> [file.html]} writes a recorded document
+ * (traces taken with {@code trace.dom=full}) so it can be opened offline.</li>
+ * </ul>
+ * A truncated last line, as left by a crashed JVM, is skipped.
+ * </p>
+ */
+public final class TraceViewer {
+
+	private final Path file;
+	private JsonObject header = new JsonObject();
+	private JsonObject end;
+	private final List<JsonObject> events = new ArrayList<>();
+	private final Map<String, String> documents = new HashMap<>();
+
+	private TraceViewer(Path file) {
+		this.file = file;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			list(FrameworkConfig.get().traceDir());
+			return;
+		}
+		TraceViewer trace = read(Paths.get(args[0]));
+		if (args.length > 1 && args[1].equals("--step")) {
+			trace.step(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+		} else if (args.length > 2 && args[1].equals("--dom")) {
+			Path target = args.length > 3 ? Paths.get(args[3]) : trace.domFile(args[2]);
+			System.out.println(trace.writeDocument(args[2], target) ? "Wrote " + target
+					: "The trace holds no document " + args[2] + "; record with trace.dom=full to keep documents");
+		} else {
+			trace.print();
+		}
+	}
+
+	/**
+	 * Reads a trace file.
+	 *
+	 * @param file the NDJSON trace
+	 * @return the parsed trace
+	 * @throws IOException if the file cannot be read
+	 */
+	public static TraceViewer read(Path file) throws IOException {
+		TraceViewer trace = new TraceViewer(file);
+		int lineNumber = 0;
+		try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String text;
+			while ((text = in.readLine()) != null) {
+				lineNumber++;
+				if (text.trim().isEmpty()) {
+					continue;
+				}
+				JsonObject line;
+				try {
+					line = JsonParser.parseString(text).getAsJsonObject();
+				} catch (JsonParseException | IllegalStateException e) {
+					System.out.println("Skipping unreadable trace line " + lineNumber + ": " + e.getMessage());
+					continue;
+				}
+				String type = string(line, "type");
+				if (type.equals("trace")) {
+					trace.header = line;
+				} else if (type.equals("end")) {
+					trace.end = line;
+				} else if (type.equals("dom")) {
+					trace.documents.put(string(line, "hash"), string(line, "html"));
+				} else {
+					trace.events.add(line);
+				}
+			}
+		}
+		return trace;
+	}
+
+	private static void list(Path directory) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			System.out.println("No traces in " + directory);
+			return;
+		}
+		List<Path> files;
+		try (Stream<Path> stream = Files.list(directory)) {
+			files = stream.filter(path -> path.toString().endsWith(".ndjson"))
+					.sorted(Comparator.comparingLong(TraceViewer::modified).reversed()).collect(Collectors.toList());
+		}
+		for (Path path : files) {
+			TraceViewer trace = read(path);
+			System.out.println(String.format("%-6s %6d event(s)  %s", trace.end == null ? "?" : string(trace.end, "status"),
+					trace.events.size(), path));
+		}
+		System.out.println(files.size() + " trace(s) in " + directory);
+	}
+
+	private static long modified(Path path) {
+		try {
+			return Files.getLastModifiedTime(path).toMillis();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private void print() {
+		System.out.println(string(header, "test") + " " + header.get("parameters"));
+		for (JsonObject event : events) {
+			if (!string(event, "phase").equals("close")) {
+				System.out.println(line(event));
+			}
+		}
+		printEnd();
+	}
+
+	private void printEnd() {
+		if (end == null) {
+			System.out.println("(no end line: the run stopped while the test was running)");
+			return;
+		}
+		System.out.println(string(end, "status") + " after " + seconds(end) + (end.has("error") ? ": " + string(end, "error") : ""));
+		if (end.has("dropped") && end.get("dropped").getAsInt() > 0) {
+			System.out.println("The " + end.get("dropped").getAsInt() + " oldest event(s) were dropped (trace.max.events)");
+		}
+		if (end.has("failureScreenshot")) {
+			System.out.println("Failure screenshot: " + string(end, "failureScreenshot"));
+		}
+	}
+
+	// one line per event: sequence, time since the test started, then the step or command
+	private static String line(JsonObject event) {
+		String prefix = String.format("%5d %8s ", event.get("seq").getAsInt(), seconds(event));
+		if (string(event, "type").equals("step")) {
+			return prefix + "          " + indent(event.get("depth").getAsInt()) + "> " + string(event, "name");
+		}
+		StringBuilder line = new StringBuilder(prefix);
+		line.append(String.format("%8.1fms ", event.get("ms").getAsDouble()));
+		line.append(string(event, "on"));
+		if (event.has("element")) {
+			line.append('[').append(string(event, "element")).append(']');
+		}
+		line.append('.').append(string(event, "command")).append('(');
+		if (event.has("args")) {
+			String args = event.get("args").toString();
+			line.append(args, 1, args.length() - 1);
+		}
+		line.append(')');
+		if (event.has("error")) {
+			line.append("  !! ").append(string(event, "error"));
+		} else if (event.has("result")) {
+			line.append(" = ").append(event.get("result"));
+		}
+		if (event.has("dom")) {
+			line.append("  dom ").append(string(event, "dom"));
+		}
+		return line.toString();
+	}
+
+	private void step(BufferedReader in) throws IOException {
+		System.out.println(string(header, "test") + " " + header.get("parameters") + ": " + events.size() + " event(s)");
+		System.out.println("Enter/n next, p previous, g <seq> go to, e next error, d write document, q quit");
+		int index = 0;
+		while (index < events.size()) {
+			show(index);
+			System.out.print("> ");
+			String input = in.readLine();
+			if (input == null || input.trim().equals("q")) {
+				return;
+			}
+			input = input.trim();
+			if (input.isEmpty() || input.equals("n")) {
+				index++;
+			} else if (input.equals("p")) {
+				index = Math.max(0, index - 1);
+			} else if (input.startsWith("g ")) {
+				index = indexOf(input.substring(2).trim(), index);
+			} else if (input.equals("e")) {
+				index = nextError(index);
+			} else if (input.equals("d")) {
+				String hash = state(index).get("dom");
+				Path target = hash == null ? null : domFile(hash);
+				System.out.println(hash == null ? "No document recorded yet"
+						: writeDocument(hash, target) ? "Wrote " + target : "Document " + hash + " was not kept (trace.dom=full keeps it)");
+			}
+		}
+		printEnd();
+	}
+
+	private void show(int index) {
+		JsonObject event = events.get(index);
+		System.out.println();
+		System.out.println(line(event));
+		if (string(event, "type").equals("command") && !string(event, "page").equals("-")) {
+			System.out.println("      from " + string(event, "page") + "." + string(event, "helper"));
+		}
+		if (event.has("screenshot")) {
+			System.out.println("      screenshot " + file.resolveSibling(string(event, "screenshot")));
+		}
+		Map<String, String> state = state(index);
+		System.out.println("      url " + state.getOrDefault("url", "?") + ", window " + state.getOrDefault("window", "?")
+				+ ", frame depth " + state.getOrDefault("frame", "0") + ", document " + state.getOrDefault("dom", "?"));
+	}
+
+	// replays the events up to index to find where the browser was at that point
+	private Map<String, String> state(int index) {
+		Map<String, String> state = new HashMap<>();
+		int frame = 0;
+		for (int i = 0; i <= index; i++) {
+			JsonObject event = events.get(i);
+			if (!string(event, "type").equals("command") || event.has("error")) {
+				continue;
+			}
+			String on = string(event, "on");
+			String command = string(event, "command");
+			if (command.equals("get") && on.equals("driver") || command.equals("to") && on.equals("navigation")) {
+				state.put("url", firstArg(event));
+				frame = 0;
+			} else if (command.equals("getCurrentUrl") && event.has("result")) {
+				state.put("url", string(event, "result"));
+			} else if (on.equals("switchTo")) {
+				if (command.equals("window")) {
+					state.put("window", firstArg(event));
+					frame = 0;
+				} else if (command.equals("frame")) {
+					frame++;
+				} else if (command.equals("parentFrame")) {
+					frame = Math.max(0, frame - 1);
+				} else if (command.equals("defaultContent")) {
+					frame = 0;
+				}
+			} else if (on.equals("navigation")) {
+				frame = 0;
+			}
+			if (event.has("dom")) {
+				state.put("dom", string(event, "dom"));
+			}
+		}
+		state.put("frame", String.valueOf(frame));
+		return state;
+	}
+
+	private int indexOf(String seq, int fallback) {
+		for (int i = 0; i < events.size(); i++) {
+			if (events.get(i).get("seq").getAsString().equals(seq)) {
+				return i;
+			}
+		}
+		System.out.println("No event " + seq);
+		return fallback;
+	}
+
+	private int nextError(int index) {
+		for (int i = index + 1; i < events.size(); i++) {
+			if (events.get(i).has("error")) {
+				return i;
+			}
+		}
+		System.out.println("No later errors");
+		return index;
+	}
+
+	private Path domFile(String hash) {
+		String name = file.getFileName().toString().replaceFirst("\\.ndjson$", "");
+		return file.resolveSibling(name + "-" + hash.replace(':', '-') + ".html");
+	}
+
+	private boolean writeDocument(String hash, Path target) throws IOException {
+		String html = documents.get(hash);
+		if (html == null) {
+			return false;
+		}
+		Files.write(target, html.getBytes(StandardCharsets.UTF_8));
+		return true;
+	}
+
+	private static String firstArg(JsonObject event) {
+		return event.has("args") && event.getAsJsonArray("args").size() > 0
+				? event.getAsJsonArray("args").get(0).getAsString()
+				: "?";
+	}
+
+	private static String seconds(JsonObject event) {
+		return event.has("at") ? String.format("+%.3fs", event.get("at").getAsLong() / 1000.0) : "";
+	}
+
+	private static String indent(int depth) {
+		StringBuilder indent = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			indent.append("  ");
+		}
+		return indent.toString();
+	}
+
+	private static String string(JsonObject object, String name) {
+		JsonElement value = object.get(name);
+		return value == null || value.isJsonNull() ? "" : value.getAsString();
+	}
+}
@@ -0,0 +1,165 @@
+package com.qa.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.testng.annotations.Test;
+
+public class DriverPoolTest {
+
+	@Test
+	public void borrowGivesUpWhenNoSessionIsFreedInTime() throws Exception {
+		Sessions sessions = new Sessions();
+		DriverPool pool = new DriverPool(sessions, 1, 0);
+		pool.borrow();
+		ExecutorService other = Executors.newSingleThreadExecutor();
+		try {
+			ExecutionException failure = expectThrows(ExecutionException.class, () -> other.submit(() -> pool.borrow()).get());
+			assertTrue(failure.getCause() instanceof IllegalStateException);
+			assertTrue(failure.getCause().getMessage().startsWith("No WebDriver session became available within 0s"));
+		} finally {
+			other.shutdown();
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void aReleasedSessionIsResetAndReused() {
+		Sessions sessions = new Sessions();
+		DriverPool pool = new DriverPool(sessions, 1, 5);
+		WebDriver driver = pool.borrow();
+		pool.release();
+		assertNull(pool.current());
+		assertEquals(pool.idleCount(), 1);
+		assertEquals(sessions.get(0).resets, 1);
+		assertEquals(sessions.get(0).pages, Collections.singletonList("about:blank"));
+		assertSame(pool.borrow(), driver);
+		assertEquals(pool.idleCount(), 0);
+		assertEquals(pool.size(), 1);
+		pool.shutdown();
+	}
+
+	@Test
+	public void aMarkedSessionGoesToABorrowerThatPrefersItsState() {
+		Sessions sessions = new Sessions();
+		DriverPool pool = new DriverPool(sessions, 1, 5);
+		WebDriver driver = pool.borrow();
+		pool.markState("alice");
+		pool.release();
+		assertEquals(sessions.get(0).resets, 0);
+		assertSame(pool.borrow(Arrays.asList("bob", "alice")), driver);
+		assertEquals(pool.state(), "alice");
+		assertEquals(sessions.get(0).resets, 0);
+		pool.release();
+		assertSame(pool.borrow(), driver);
+		assertNull(pool.state());
+		assertEquals(sessions.get(0).resets, 1);
+		pool.shutdown();
+	}
+
+	@Test
+	public void discardingTheCurrentSessionFreesItsSlot() {
+		Sessions sessions = new Sessions();
+		DriverPool pool = new DriverPool(sessions, 1, 0);
+		WebDriver first = pool.borrow();
+		pool.discardCurrent();
+		assertTrue(sessions.get(0).quit);
+		assertEquals(pool.size(), 0);
+		assertNotSame(pool.borrow(), first);
+		assertEquals(pool.size(), 1);
+		pool.shutdown();
+		assertTrue(sessions.get(1).quit);
+	}
+
+	@Test
+	public void warmUpStopsAtThePoolSize() {
+		Sessions sessions = new Sessions();
+		DriverPool pool = new DriverPool(sessions, 2, 5);
+		assertEquals(pool.warmUp(5), 2);
+		assertEquals(pool.size(), 2);
+		assertEquals(pool.idleCount(), 2);
+		assertEquals(sessions.size(), 2);
+		assertEquals(pool.warmUp(1), 0);
+		pool.shutdown();
+	}
+
+	// launches fake sessions and keeps them for inspection
+	private static final class Sessions extends ArrayList<Session> implements Supplier<WebDriver> {
+
+		@Override
+		public synchronized WebDriver get() {
+			Session session = new Session();
+			add(session);
+			return session.driver;
+		}
+	}
+
+	// a session with one window that records what the pool does to it
+	private static final class Session {
+		final List<String> pages = new ArrayList<>();
+		final WebDriver driver;
+		int resets;
+		boolean quit;
+
+		Session() {
+			driver = (WebDriver) Proxy.newProxyInstance(DriverPoolTest.class.getClassLoader(),
+					new Class<?>[] { WebDriver.class, JavascriptExecutor.class }, (proxy, method, args) -> {
+						switch (method.getName()) {
+						case "getWindowHandle":
+							return "main";
+						case "getWindowHandles":
+							return Collections.singleton("main");
+						case "manage":
+							return stub(WebDriver.Options.class);
+						case "switchTo":
+							return stub(WebDriver.TargetLocator.class);
+						case "executeScript":
+							return null;
+						case "get":
+							pages.add((String) args[0]);
+							return null;
+						case "quit":
+							quit = true;
+							return null;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							throw new UnsupportedOperationException(method.getName());
+						}
+					});
+		}
+
+		// the options and frame switching views; only deleteAllCookies() is counted
+		private Object stub(Class<?> view) {
+			return Proxy.newProxyInstance(DriverPoolTest.class.getClassLoader(), new Class<?>[] { view },
+					(proxy, method, args) -> {
+						if (method.getName().equals("deleteAllCookies")) {
+							resets++;
+							return null;
+						}
+						if (method.getName().equals("defaultContent")) {
+							return driver;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					});
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.qa.base;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.testng.annotations.Test;
+
+public class ElementCacheTest {
+
+	private static final By BUTTON = By.id("login");
+
+	@Test
+	public void servesAStoredHandleWithinItsTtl() {
+		ElementCache cache = new ElementCache(Duration.ofMinutes(1));
+		WebElement element = element();
+		cache.put(BUTTON, element);
+		assertSame(cache.get(BUTTON), element);
+		assertNull(cache.get(By.id("other")));
+	}
+
+	@Test
+	public void dropsAnExpiredHandle() throws InterruptedException {
+		ElementCache cache = new ElementCache(Duration.ofMillis(20));
+		cache.put(BUTTON, element());
+		Thread.sleep(40);
+		assertNull(cache.get(BUTTON));
+	}
+
+	@Test
+	public void invalidateAndClearForgetHandles() {
+		ElementCache cache = new ElementCache(Duration.ofMinutes(1));
+		cache.put(BUTTON, element());
+		cache.invalidate(BUTTON);
+		assertNull(cache.get(BUTTON));
+		cache.put(BUTTON, element());
+		cache.clear();
+		assertNull(cache.get(BUTTON));
+	}
+
+	@Test
+	public void zeroTtlDisablesTheCache() {
+		ElementCache cache = new ElementCache(Duration.ZERO);
+		assertFalse(cache.isEnabled());
+		cache.put(BUTTON, element());
+		assertNull(cache.get(BUTTON));
+		assertTrue(new ElementCache(Duration.ofMillis(1)).isEnabled());
+	}
+
+	private static WebElement element() {
+		return (WebElement) Proxy.newProxyInstance(ElementCacheTest.class.getClassLoader(),
+				new Class<?>[] { WebElement.class }, (proxy, method, args) -> {
+					if (method.getName().equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					}
+					if (method.getName().equals("equals")) {
+						return proxy == args[0];
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
@@ -0,0 +1,67 @@
+package com.qa.base;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+
+import org.openqa.selenium.ElementClickInterceptedException;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.NoSuchSessionException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriverException;
+import org.testng.annotations.Test;
+
+import com.qa.base.FailureClassifier.Category;
+
+public class FailureClassifierTest {
+
+	@Test
+	public void assertionsWinOverEverythingElse() {
+		AssertionError assertion = new AssertionError("expected [3] but found [2]");
+		assertEquals(FailureClassifier.classify(assertion), Category.ASSERTION);
+		assertEquals(FailureClassifier.classify(new TimeoutException("wrapped", assertion)), Category.ASSERTION);
+	}
+
+	@Test
+	public void waitsAndUnreadyElementsAreTiming() {
+		assertEquals(FailureClassifier.classify(new TimeoutException("waiting for .toast")), Category.TIMING);
+		assertEquals(FailureClassifier.classify(new NoSuchElementException("#login")), Category.TIMING);
+		assertEquals(FailureClassifier.classify(new ElementClickInterceptedException("covered by .ngx-spinner")),
+				Category.TIMING);
+	}
+
+	@Test
+	public void staleElementsAreStale() {
+		assertEquals(FailureClassifier.classify(new StaleElementReferenceException("detached")), Category.STALE);
+	}
+
+	@Test
+	public void lostBrowsersAndSessionsAreInfrastructure() {
+		assertEquals(FailureClassifier.classify(new NoSuchSessionException("invalid session id")),
+				Category.INFRASTRUCTURE);
+		assertEquals(FailureClassifier.classify(new WebDriverException("unknown error: Chrome not reachable")),
+				Category.INFRASTRUCTURE);
+		assertEquals(FailureClassifier.classify(new IllegalStateException("No WebDriver session became available within 60 s")),
+				Category.INFRASTRUCTURE);
+		assertEquals(FailureClassifier.classify(new UncheckedIOException(new ConnectException("Connection refused"))),
+				Category.INFRASTRUCTURE);
+	}
+
+	@Test
+	public void theOutermostRecognisedExceptionDecides() {
+		WebDriverException outer = new WebDriverException("tab crashed", new NoSuchElementException("#cart"));
+		assertEquals(FailureClassifier.classify(outer), Category.INFRASTRUCTURE);
+		assertEquals(FailureClassifier.classify(new RuntimeException(new StaleElementReferenceException("gone"))),
+				Category.STALE);
+	}
+
+	@Test
+	public void everythingElseIsOther() {
+		assertEquals(FailureClassifier.classify(new NullPointerException()), Category.OTHER);
+		assertEquals(FailureClassifier.classify(new WebDriverException("javascript error: x is not defined")),
+				Category.OTHER);
+		assertEquals(FailureClassifier.classify(null), Category.OTHER);
+	}
+}
@@ -0,0 +1,84 @@
+package com.qa.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
+import org.testng.annotations.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class LocatorRegistryTest {
+
+	private final LocatorRegistry registry = LocatorRegistry.get();
+	private final WaitEngine engine = new WaitEngine(null, Duration.ofSeconds(10), Duration.ofMillis(1),
+			Duration.ofMillis(4));
+
+	@Test
+	public void countsEveryMissOutsideAWait() throws IOException {
+		By locator = By.id("outside");
+		miss(locator);
+		miss(locator);
+		JsonObject row = row(locator);
+		assertEquals(row.get("misses").getAsLong(), 2);
+		assertEquals(row.get("finds").getAsLong(), 2);
+	}
+
+	@Test
+	public void countsOneMissForAWaitThatGivesUp() throws IOException {
+		By locator = By.id("given-up");
+		expectThrows(TimeoutException.class, () -> engine.until(driver -> {
+			miss(locator);
+			return null;
+		}, Duration.ofMillis(30)));
+		JsonObject row = row(locator);
+		assertEquals(row.get("misses").getAsLong(), 1);
+		assertTrue(row.get("finds").getAsLong() > 1);
+	}
+
+	@Test
+	public void dropsTheMissesOfAWaitThatSucceeds() throws IOException {
+		By locator = By.id("found-later");
+		int[] polls = { 0 };
+		engine.until(driver -> {
+			miss(locator);
+			return ++polls[0] == 3;
+		}, Duration.ofSeconds(1));
+		assertEquals(row(locator).get("misses").getAsLong(), 0);
+	}
+
+	private void miss(By locator) {
+		registry.recordFind(null, locator, Collections.emptyList(), 1_000_000, null, "TestPage");
+	}
+
+	// writes the recorded run to a fresh index and returns the locator's row
+	private JsonObject row(By locator) throws IOException {
+		Path file = Files.createTempFile("locator-index", ".json");
+		try {
+			registry.writeIndex(file);
+			try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+				for (JsonElement row : JsonParser.parseReader(in).getAsJsonObject().getAsJsonArray("locators")) {
+					if (row.getAsJsonObject().get("locator").getAsString().equals(locator.toString())) {
+						return row.getAsJsonObject();
+					}
+				}
+			}
+			throw new AssertionError("No row for " + locator);
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".lock"));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.qa.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.testng.annotations.Test;
+
+public class ScreenshotServiceTest {
+
+	@Test
+	public void rewritingALinkedFileLeavesItsDuplicateAlone() throws IOException {
+		Path directory = Files.createTempDirectory("screenshots");
+		try {
+			ScreenshotService service = new ScreenshotService(ScreenshotService.Mode.ALWAYS, directory, 4);
+			byte[][] screen = { bytes("first") };
+			WebDriver driver = driver(screen);
+			Path first = directory.resolve("first.png");
+			Path duplicate = directory.resolve("duplicate.png");
+			service.capture(driver, first);
+			assertTrue(service.flush(Duration.ofSeconds(5)));
+			service.capture(driver, duplicate);
+			assertTrue(service.flush(Duration.ofSeconds(5)));
+			screen[0] = bytes("second");
+			service.capture(driver, first);
+			assertTrue(service.flush(Duration.ofSeconds(5)));
+			assertEquals(Files.readAllBytes(first), bytes("second"));
+			assertEquals(Files.readAllBytes(duplicate), bytes("first"));
+		} finally {
+			try (Stream<Path> files = Files.walk(directory)) {
+				files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+			}
+		}
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	// a session whose screenshots are whatever screen[0] holds
+	private static WebDriver driver(byte[][] screen) {
+		return (WebDriver) Proxy.newProxyInstance(ScreenshotServiceTest.class.getClassLoader(),
+				new Class<?>[] { WebDriver.class, TakesScreenshot.class }, (proxy, method, args) -> {
+					if (method.getName().equals("getScreenshotAs")) {
+						return screen[0].clone();
+					}
+					if (method.getName().equals("hashCode")) {
+						return System.identityHashCode(proxy);
+					}
+					if (method.getName().equals("equals")) {
+						return proxy == args[0];
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+}
@@ -0,0 +1,120 @@
+package com.qa.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+public class SnapshotSelectorTest {
+
+	private final List<SnapshotNode> nodes = new ArrayList<>();
+
+	// <div id="cart" class="cartSection">
+	//   <h3>My Cart</h3>
+	//   <ul>
+	//     <li class="item sale" data-tags="new hot"><h3>ZARA COAT 3</h3></li>
+	//     <li class="item" data-tags="hotline"><h3>ADIDAS ORIGINAL</h3></li>
+	//   </ul>
+	// </div>
+	private final SnapshotNode cart = node("div", null, "id", "cart", "class", "cartSection");
+	private final SnapshotNode heading = node("h3", cart);
+	private final SnapshotNode list = node("ul", cart);
+	private final SnapshotNode sale = node("li", list, "class", "item sale", "data-tags", "new hot");
+	private final SnapshotNode saleName = node("h3", sale);
+	private final SnapshotNode other = node("li", list, "class", "item", "data-tags", "hotline");
+	private final SnapshotNode otherName = node("h3", other);
+
+	@Test
+	public void matchesTypeIdClassAndUniversal() {
+		assertEquals(select("h3"), list(heading, saleName, otherName));
+		assertEquals(select("#cart"), list(cart));
+		assertEquals(select("li.item.sale"), list(sale));
+		assertEquals(select("*").size(), nodes.size());
+		assertEquals(select("LI"), list(sale, other));
+	}
+
+	@Test
+	public void matchesAttributeOperators() {
+		assertEquals(select("[data-tags]"), list(sale, other));
+		assertEquals(select("[data-tags=hotline]"), list(other));
+		assertEquals(select("[data-tags~=hot]"), list(sale));
+		assertEquals(select("[data-tags~='new']"), list(sale));
+		assertEquals(select("[data-tags^=hot]"), list(other));
+		assertEquals(select("[data-tags$=\"line\"]"), list(other));
+		assertEquals(select("[data-tags*=ot]"), list(sale, other));
+		assertEquals(select("[data-tags~='']"), list());
+	}
+
+	@Test
+	public void childCombinatorOnlyMatchesDirectChildren() {
+		assertEquals(select("div > h3"), list(heading));
+		assertEquals(select("ul>li>h3"), list(saleName, otherName));
+		assertEquals(select("div > li"), list());
+	}
+
+	@Test
+	public void descendantCombinatorMatchesAnyAncestor() {
+		assertEquals(select("div h3"), list(heading, saleName, otherName));
+		assertEquals(select(".cartSection li.sale h3"), list(saleName));
+		assertEquals(select("ul div"), list());
+	}
+
+	@Test
+	public void commaListsMatchAnyAlternative() {
+		assertEquals(select("li.sale h3, div > h3"), list(heading, saleName));
+		assertEquals(select("#missing,ul"), list(list));
+	}
+
+	@Test
+	public void rejectsUnsupportedSyntax() {
+		for (String css : new String[] { "li:first-child", "h3 + h3", "li ~ li", "[data-tags|=new]", "[data-tags='new]",
+				"li::before", "", "div >", "li,", ":not(.item)" }) {
+			IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> SnapshotSelector.parse(css));
+			assertTrue(e.getMessage().contains("not supported"), css);
+		}
+	}
+
+	@Test
+	public void keepsTheSourceText() {
+		SnapshotSelector selector = SnapshotSelector.parse("ul > li.item");
+		assertEquals(selector.toString(), "ul > li.item");
+		assertTrue(selector.matches(other));
+		assertFalse(selector.matches(otherName));
+	}
+
+	private List<SnapshotNode> select(String css) {
+		SnapshotSelector selector = SnapshotSelector.parse(css);
+		List<SnapshotNode> matches = new ArrayList<>();
+		for (SnapshotNode node : nodes) {
+			if (selector.matches(node)) {
+				matches.add(node);
+			}
+		}
+		return matches;
+	}
+
+	private static List<SnapshotNode> list(SnapshotNode... nodes) {
+		List<SnapshotNode> list = new ArrayList<>();
+		for (SnapshotNode node : nodes) {
+			list.add(node);
+		}
+		return list;
+	}
+
+	private SnapshotNode node(String tag, SnapshotNode parent, String... attributes) {
+		Map<String, String> map = new LinkedHashMap<>();
+		for (int i = 0; i < attributes.length; i += 2) {
+			map.put(attributes[i], attributes[i + 1]);
+		}
+		SnapshotNode node = new SnapshotNode(nodes.size(), tag, map, "", "", true, parent, null);
+		nodes.add(node);
+		return node;
+	}
+}
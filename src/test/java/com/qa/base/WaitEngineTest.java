@@ -0,0 +1,114 @@
+package com.qa.base;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.testng.annotations.Test;
+
+public class WaitEngineTest {
+
+	private final WaitEngine engine = new WaitEngine(null, Duration.ofSeconds(10), Duration.ofMillis(1),
+			Duration.ofMillis(8));
+
+	@Test
+	public void returnsAMetConditionWithoutPolling() {
+		AtomicInteger calls = new AtomicInteger();
+		String value = engine.until(driver -> {
+			calls.incrementAndGet();
+			return "ready";
+		}, Duration.ofSeconds(1));
+		assertEquals(value, "ready");
+		assertEquals(calls.get(), 1);
+	}
+
+	@Test
+	public void keepsPollingOnNullFalseAndNotFound() {
+		AtomicInteger calls = new AtomicInteger();
+		Boolean value = engine.until(driver -> {
+			switch (calls.incrementAndGet()) {
+			case 1:
+				return null;
+			case 2:
+				return false;
+			case 3:
+				throw new NoSuchElementException("not yet");
+			case 4:
+				throw new StaleElementReferenceException("detached");
+			default:
+				return true;
+			}
+		}, Duration.ofSeconds(1));
+		assertTrue(value);
+		assertEquals(calls.get(), 5);
+	}
+
+	@Test
+	public void otherExceptionsEndTheWait() {
+		IllegalStateException failure = new IllegalStateException("broken");
+		IllegalStateException thrown = expectThrows(IllegalStateException.class, () -> engine.until(driver -> {
+			throw failure;
+		}, Duration.ofSeconds(1)));
+		assertSame(thrown, failure);
+	}
+
+	@Test
+	public void timesOutWithTheLastNotFoundAsCause() {
+		NoSuchElementException missing = new NoSuchElementException("missing");
+		TimeoutException timeout = expectThrows(TimeoutException.class, () -> engine.until(driver -> {
+			throw missing;
+		}, Duration.ofMillis(50)));
+		assertSame(timeout.getCause(), missing);
+	}
+
+	@Test
+	public void backsOffUpToTheMaximumInterval() {
+		AtomicInteger calls = new AtomicInteger();
+		expectThrows(TimeoutException.class, () -> engine.until(driver -> {
+			calls.incrementAndGet();
+			return null;
+		}, Duration.ofMillis(200)));
+		// 1, 2, 4 ms then every 8 ms: about 26 polls; a fixed 1 ms poll would make about 200
+		assertTrue(calls.get() >= 5 && calls.get() <= 40, "polls: " + calls.get());
+	}
+
+	@Test
+	public void fixedPollingKeepsTheRequestedInterval() {
+		AtomicInteger calls = new AtomicInteger();
+		expectThrows(TimeoutException.class, () -> engine.until(driver -> {
+			calls.incrementAndGet();
+			return null;
+		}, Duration.ofMillis(200), Duration.ofMillis(50)));
+		assertTrue(calls.get() >= 3 && calls.get() <= 6, "polls: " + calls.get());
+	}
+
+	@Test
+	public void stepDeadlineCapsALongerWait() {
+		long start = System.nanoTime();
+		TimeoutException timeout = expectThrows(TimeoutException.class, () -> Step.run(WaitEngineTest.class,
+				"shortStep", Duration.ofMillis(50), () -> engine.until(driver -> null, Duration.ofSeconds(5))));
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		assertTrue(elapsedMs < 2000, "waited " + elapsedMs + " ms");
+		assertTrue(timeout.getMessage().contains("WaitEngineTest.shortStep"), timeout.getMessage());
+		assertEquals(Step.current(), null);
+	}
+
+	@Test
+	public void nestedStepsNeverExtendTheOuterDeadline() {
+		Step.run(WaitEngineTest.class, "outer", Duration.ofMillis(100), () -> {
+			Duration outer = Step.current().remaining();
+			Step.run(WaitEngineTest.class, "inner", Duration.ofSeconds(10), () -> {
+				assertTrue(Step.current().remaining().compareTo(outer) <= 0);
+				assertEquals(Step.current().root().name(), "outer");
+			});
+			assertEquals(Step.current().name(), "outer");
+		});
+	}
+}
@@ -0,0 +1,115 @@
+package com.qa.config;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+
+public class FrameworkConfigTest {
+
+	@Test
+	public void environmentOverridesTheFileAndDashDOverridesBoth() {
+		Properties file = properties("pool.size", "2", "wait.timeout", "10", "url", "https://file");
+		Map<String, String> env = new HashMap<>();
+		env.put("QA_POOL_SIZE", "3");
+		env.put("QA_WAIT_TIMEOUT", " 20 ");
+		env.put("POOL_SIZE", "9");
+		Properties system = properties("pool.size", "4");
+		FrameworkConfig config = new FrameworkConfig(file, "test", env, system);
+		assertEquals(config.poolSize(), 4);
+		assertEquals(config.waitTimeout(), Duration.ofSeconds(20));
+		assertEquals(config.get("url"), "https://file");
+		assertEquals(config.source(), "test");
+	}
+
+	@Test
+	public void environmentNamesMapToExistingKeysOrDottedLowerCase() {
+		Properties file = properties("home.url", "https://file");
+		Map<String, String> env = new HashMap<>();
+		env.put("QA_HOMEURL", "https://env");
+		env.put("QA_GRID_SESSION_TIMEOUT_SECONDS", "60");
+		FrameworkConfig config = new FrameworkConfig(file, null, env, new Properties());
+		assertEquals(config.homeUrl(), "https://env");
+		assertEquals(config.gridSessionTimeout(), Duration.ofSeconds(60));
+	}
+
+	@Test
+	public void dashDOnlyAppliesToKnownOrFrameworkKeys() {
+		FrameworkConfig config = new FrameworkConfig(properties("custom", "a"), null, Collections.<String, String>emptyMap(),
+				properties("custom", "b", "java.version", "8", "pool.warmup", "2", "browser", "firefox"));
+		assertEquals(config.get("custom"), "b");
+		assertNull(config.get("java.version"));
+		assertEquals(config.poolWarmup(), 2);
+		assertEquals(config.browser(), "firefox");
+		assertTrue(FrameworkConfig.isFrameworkKey("trace.mode"));
+		assertFalse(FrameworkConfig.isFrameworkKey("user.home"));
+	}
+
+	@Test
+	public void typedAccessorsFallBackToTheirDefaults() {
+		FrameworkConfig config = empty();
+		assertEquals(config.poolSize(), 1);
+		assertEquals(config.poolBorrowTimeout(), Duration.ofSeconds(120));
+		assertEquals(config.waitInitialPoll(), Duration.ofMillis(5));
+		assertEquals(config.elementCacheTtl(), Duration.ZERO);
+		assertEquals(config.screenshotMode(), "always");
+		assertEquals(config.traceMode(), "failure");
+		assertEquals(config.getLong("missing", 7L), 7L);
+		assertTrue(config.getBoolean("missing", true));
+		assertEquals(config.get("missing", "fallback"), "fallback");
+		assertTrue(config.getList("missing").isEmpty());
+	}
+
+	@Test
+	public void parsesNumbersDurationsAndLists() {
+		FrameworkConfig config = new FrameworkConfig(properties("pool.size", "6", "wait.poll.max.ms", "400",
+				"pool.frame.pin.timeout", "45", "metrics.enabled", "TRUE", "retry.on", " a, ,b ,"), null,
+				Collections.<String, String>emptyMap(), new Properties());
+		assertEquals(config.poolSize(), 6);
+		assertEquals(config.waitMaxPoll(), Duration.ofMillis(400));
+		assertEquals(config.poolFramePinTimeout(), Duration.ofSeconds(45));
+		assertTrue(config.getBoolean("metrics.enabled", false));
+		assertEquals(config.getList("retry.on"), Arrays.asList("a", "b"));
+	}
+
+	@Test
+	public void rejectsBadNumbersAndChoices() {
+		FrameworkConfig config = new FrameworkConfig(properties("pool.size", "five", "wait.timeout", "1.5",
+				"screenshot.mode", "Sometimes", "trace.mode", "ALWAYS"), null, Collections.<String, String>emptyMap(),
+				new Properties());
+		IllegalStateException size = expectThrows(IllegalStateException.class, config::poolSize);
+		assertEquals(size.getMessage(), "Invalid number for pool.size: five");
+		expectThrows(IllegalStateException.class, config::waitTimeout);
+		IllegalArgumentException mode = expectThrows(IllegalArgumentException.class, config::screenshotMode);
+		assertEquals(mode.getMessage(), "Invalid value for screenshot.mode: Sometimes (expected one of always, failure, off)");
+		assertEquals(config.traceMode(), "always");
+	}
+
+	@Test
+	public void requireNamesEveryPlaceToSetAMissingKey() {
+		IllegalStateException missing = expectThrows(IllegalStateException.class, () -> empty().require("url"));
+		assertEquals(missing.getMessage(), "url is not set in config.properties (file not found), QA_URL or -Durl");
+	}
+
+	private static FrameworkConfig empty() {
+		return new FrameworkConfig(new Properties(), null, Collections.<String, String>emptyMap(), new Properties());
+	}
+
+	private static Properties properties(String... pairs) {
+		Properties properties = new Properties();
+		for (int i = 0; i < pairs.length; i += 2) {
+			properties.setProperty(pairs[i], pairs[i + 1]);
+		}
+		return properties;
+	}
+}
@@ -0,0 +1,136 @@
+package com.qa.utilities;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.expectThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DataRowsTest {
+
+	private Path directory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("datarows");
+	}
+
+	@AfterMethod(alwaysRun = true)
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void readsCsvWithQuotesAndLineBreaks() throws IOException {
+		Path file = write("orders.csv", "\uFEFFusername,productname,note\n"
+				+ "a@x.com, ZARA COAT 3 ,plain\n"
+				+ "\n"
+				+ "b@x.com,\"ADIDAS, ORIGINAL\",\"said \"\"hi\"\"\nthen left\"\n"
+				+ "c@x.com,IPHONE\n");
+		List<DataRow> rows = read(file, Shard.ALL);
+		assertEquals(rows.size(), 3);
+		assertEquals(rows.get(0).values(), row("username", "a@x.com", "productname", "ZARA COAT 3", "note", "plain"));
+		assertEquals(rows.get(1).get("productname"), "ADIDAS, ORIGINAL");
+		assertEquals(rows.get(1).get("note"), "said \"hi\"\nthen left");
+		// missing trailing fields read as empty and fall back to the default
+		assertEquals(rows.get(2).get("note"), "");
+		assertEquals(rows.get(2).get("note", "none"), "none");
+		assertEquals(rows.get(2).index(), 2);
+	}
+
+	@Test
+	public void readsFlatJsonObjects() throws IOException {
+		Path file = write("orders.json", "[{\"username\": \"a@x.com\", \"qty\": 2, \"gift\": true, \"note\": null},"
+				+ " {\"username\": \"b@x.com\"}]");
+		List<DataRow> rows = read(file, Shard.ALL);
+		assertEquals(rows.size(), 2);
+		assertEquals(rows.get(0).values(), row("username", "a@x.com", "qty", "2", "gift", "true", "note", ""));
+		assertEquals(rows.get(1).values(), row("username", "b@x.com"));
+	}
+
+	@Test
+	public void rejectsNestedJsonValues() throws IOException {
+		Path file = write("orders.json", "[{\"username\": \"a@x.com\", \"address\": {\"city\": \"Pune\"}}]");
+		DataRows.Reader rows = DataRows.open(file, Shard.ALL);
+		expectThrows(UncheckedIOException.class, rows::hasNext);
+	}
+
+	@Test
+	public void returnsOnlyTheShardsRows() throws IOException {
+		StringBuilder csv = new StringBuilder("n\n");
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < 10; i++) {
+			csv.append(i).append('\n');
+			json.append(i == 0 ? "" : ",").append("{\"n\": ").append(i).append('}');
+		}
+		Path csvFile = write("rows.csv", csv.toString());
+		Path jsonFile = write("rows.json", json.append(']').toString());
+		for (Path file : new Path[] { csvFile, jsonFile }) {
+			assertEquals(values(read(file, Shard.of(1, 3, null))), "1,4,7", file.toString());
+			assertEquals(values(read(file, Shard.of(0, 2, "3-8"))), "4,6", file.toString());
+		}
+	}
+
+	@Test
+	public void stopsReadingOncePastTheRange() throws IOException {
+		// the row after the range is malformed; it must not be read
+		Path file = write("rows.json", "[{\"n\": 0}, {\"n\": 1}, {\"n\": {\"bad\": 1}}]");
+		DataRows.Reader rows = DataRows.open(file, Shard.of(0, 1, "0-2"));
+		assertEquals(values(drain(rows)), "0,1");
+		assertFalse(rows.hasNext());
+	}
+
+	@Test
+	public void rejectsUnknownFileTypes() throws IOException {
+		Path file = write("rows.txt", "n\n1\n");
+		expectThrows(IllegalArgumentException.class, () -> DataRows.open(file, Shard.ALL));
+	}
+
+	private Path write(String name, String content) throws IOException {
+		return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static List<DataRow> read(Path file, Shard shard) {
+		return drain(DataRows.open(file, shard));
+	}
+
+	private static List<DataRow> drain(DataRows.Reader reader) {
+		List<DataRow> rows = new ArrayList<>();
+		reader.forEachRemaining(rows::add);
+		return rows;
+	}
+
+	private static String values(List<DataRow> rows) {
+		StringBuilder values = new StringBuilder();
+		for (DataRow row : rows) {
+			values.append(values.length() == 0 ? "" : ",").append(row.get("n"));
+		}
+		return values.toString();
+	}
+
+	private static Map<String, String> row(String... pairs) {
+		Map<String, String> row = new LinkedHashMap<>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			row.put(pairs[i], pairs[i + 1]);
+		}
+		return row;
+	}
+}
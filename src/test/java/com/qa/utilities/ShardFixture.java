@@ -0,0 +1,39 @@
+package com.qa.utilities;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Test class that {@link ShardPlanTest} plans by name; it is never run itself.
+ */
+public class ShardFixture {
+
+	@Test
+	public void a() {
+	}
+
+	@Test
+	public void b() {
+	}
+
+	@Test
+	public void c() {
+	}
+
+	@Test
+	public void d() {
+	}
+
+	@Test
+	public void e() {
+	}
+
+	@Test(dataProvider = "rows")
+	public void rows(String row) {
+	}
+
+	@DataProvider(name = "rows")
+	public Object[][] data() {
+		return new Object[0][];
+	}
+}
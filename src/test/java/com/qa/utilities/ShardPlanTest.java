@@ -0,0 +1,149 @@
+package com.qa.utilities;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlInclude;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+import org.w3c.dom.Document;
+
+public class ShardPlanTest {
+
+	private static final String TIMED = ShardFixture.class.getName();
+
+	@Test
+	public void assignsLongestFirstToTheLightestShard() throws IOException {
+		TestDurations durations = durations("a", 50, "b", 40, "c", 30, "d", 20, "e", 10);
+		ShardPlan plan = ShardPlan.of(suite(TIMED, "a", "b", "c", "d", "e"), 2, durations);
+		// a -> 0, b -> 1, c -> 1, d -> 0, e -> 0 (ties go to the lower shard)
+		assertEquals(methods(plan.suite(0)), Arrays.asList("a", "d", "e"));
+		assertEquals(methods(plan.suite(1)), Arrays.asList("b", "c"));
+		assertEquals(plan.plannedMillis(0), 80);
+		assertEquals(plan.plannedMillis(1), 70);
+	}
+
+	@Test
+	public void plansMethodsWithoutHistoryAsTheMedian() throws IOException {
+		TestDurations durations = durations("a", 10, "b", 100, "c", 1000);
+		ShardPlan plan = ShardPlan.of(suite(TIMED, "a", "b", "c", "d"), 2, durations);
+		// d counts as 100: c -> 0, b -> 1, d -> 1, a -> 1
+		assertEquals(plan.plannedMillis(0), 1000);
+		assertEquals(plan.plannedMillis(1), 210);
+		assertEquals(plan.methodCount(1), 3);
+	}
+
+	@Test
+	public void dataDrivenMethodsRunInEveryShardWithAnEqualShare() throws IOException {
+		TestDurations durations = durations("a", 40, "rows", 90);
+		ShardPlan plan = ShardPlan.of(suite(TIMED, "a", "rows"), 3, durations);
+		for (int shard = 0; shard < 3; shard++) {
+			assertTrue(methods(plan.suite(shard)).contains("rows"), "shard " + shard);
+		}
+		assertEquals(plan.plannedMillis(0), 70);
+		assertEquals(plan.plannedMillis(1), 30);
+		assertEquals(plan.plannedMillis(2), 30);
+	}
+
+	@Test
+	public void emptyHistoryUsesTheDefaultDuration() {
+		ShardPlan plan = ShardPlan.of(suite(TIMED, "a"), 1, new TestDurations());
+		assertEquals(plan.plannedMillis(0), ShardPlan.DEFAULT_MILLIS);
+	}
+
+	@Test
+	public void shardSuitesKeepTheBaseSettings() throws IOException {
+		XmlSuite base = suite(TIMED, "a", "b");
+		base.setListeners(Collections.singletonList("com.qa.base.DriverPoolListener"));
+		base.setDataProviderThreadCount(5);
+		base.getTests().get(0).setParallel(XmlSuite.ParallelMode.METHODS);
+		base.getTests().get(0).setThreadCount(4);
+		XmlSuite shard = ShardPlan.of(base, 2, durations("a", 1, "b", 2)).suite(1);
+		assertEquals(shard.getName(), "Suite shard 1");
+		assertEquals(shard.getListeners(), Collections.singletonList("com.qa.base.DriverPoolListener"));
+		assertEquals(shard.getDataProviderThreadCount(), 5);
+		assertEquals(shard.getTests().get(0).getParallel(), XmlSuite.ParallelMode.METHODS);
+		assertEquals(shard.getTests().get(0).getThreadCount(), 4);
+	}
+
+	@Test
+	public void mergesShardResults() throws IOException {
+		Path first = Files.createTempFile("shard0", ".xml");
+		Path second = Files.createTempFile("shard1", ".xml");
+		Path merged = Files.createTempFile("merged", ".xml");
+		try {
+			Files.write(first, ("<testng-results ignored=\"0\" total=\"3\" passed=\"2\" failed=\"1\" skipped=\"0\">"
+					+ "<suite name=\"Suite shard 0\"/></testng-results>").getBytes(StandardCharsets.UTF_8));
+			Files.write(second, ("<testng-results ignored=\"1\" total=\"2\" passed=\"1\" failed=\"0\" skipped=\"1\">"
+					+ "<suite name=\"Suite shard 1\"/></testng-results>").getBytes(StandardCharsets.UTF_8));
+			ShardRunner.merge(Arrays.asList(first, second), merged);
+			Document document = TestDurations.parse(merged);
+			assertEquals(document.getDocumentElement().getAttribute("total"), "5");
+			assertEquals(document.getDocumentElement().getAttribute("passed"), "3");
+			assertEquals(document.getDocumentElement().getAttribute("failed"), "1");
+			assertEquals(document.getDocumentElement().getAttribute("skipped"), "1");
+			assertEquals(document.getDocumentElement().getAttribute("ignored"), "1");
+			assertEquals(document.getElementsByTagName("suite").getLength(), 2);
+		} finally {
+			Files.deleteIfExists(first);
+			Files.deleteIfExists(second);
+			Files.deleteIfExists(merged);
+		}
+	}
+
+	private static XmlSuite suite(String className, String... methods) {
+		XmlSuite suite = new XmlSuite();
+		suite.setName("Suite");
+		XmlTest test = new XmlTest(suite);
+		test.setName("Test");
+		XmlClass type = new XmlClass(className, false);
+		List<XmlInclude> includes = new ArrayList<>();
+		for (String method : methods) {
+			includes.add(new XmlInclude(method));
+		}
+		type.setIncludedMethods(includes);
+		test.setXmlClasses(new ArrayList<>(Collections.singletonList(type)));
+		return suite;
+	}
+
+	private static List<String> methods(XmlSuite suite) {
+		List<String> methods = new ArrayList<>();
+		for (XmlClass type : suite.getTests().get(0).getXmlClasses()) {
+			for (XmlInclude include : type.getIncludedMethods()) {
+				methods.add(include.getName());
+			}
+		}
+		return methods;
+	}
+
+	// durations of ShardFixture's methods, as name/millis pairs
+	private static TestDurations durations(Object... pairs) throws IOException {
+		StringBuilder xml = new StringBuilder("<testng-results><suite name=\"Suite\"><test name=\"Test\"><class name=\""
+				+ TIMED + "\">");
+		for (int i = 0; i < pairs.length; i += 2) {
+			xml.append("<test-method name=\"").append(pairs[i]).append("\" duration-ms=\"").append(pairs[i + 1])
+					.append("\"/>");
+		}
+		xml.append("</class></test></suite></testng-results>");
+		Path file = Files.createTempFile("testng-results", ".xml");
+		try {
+			Files.write(file, xml.toString().getBytes(StandardCharsets.UTF_8));
+			TestDurations durations = new TestDurations();
+			durations.record(file);
+			return durations;
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
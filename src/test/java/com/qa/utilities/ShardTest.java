@@ -0,0 +1,80 @@
+package com.qa.utilities;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.expectThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+public class ShardTest {
+
+	@Test
+	public void stripesRowsAcrossWorkers() {
+		assertEquals(rows(Shard.of(0, 3, null), 10), Arrays.asList(0L, 3L, 6L, 9L));
+		assertEquals(rows(Shard.of(1, 3, null), 10), Arrays.asList(1L, 4L, 7L));
+		assertEquals(rows(Shard.of(2, 3, null), 10), Arrays.asList(2L, 5L, 8L));
+	}
+
+	@Test
+	public void everyRowBelongsToExactlyOneStripe() {
+		for (long row = 0; row < 50; row++) {
+			int owners = 0;
+			for (int index = 0; index < 4; index++) {
+				owners += Shard.of(index, 4, null).contains(row) ? 1 : 0;
+			}
+			assertEquals(owners, 1, "row " + row);
+		}
+	}
+
+	@Test
+	public void rangeKeepsAHalfOpenBlock() {
+		Shard shard = Shard.of(0, 1, "3-6");
+		assertEquals(rows(shard, 10), Arrays.asList(3L, 4L, 5L));
+		assertFalse(shard.isPast(5));
+		assertTrue(shard.isPast(6));
+	}
+
+	@Test
+	public void openEndedRangeRunsToTheEnd() {
+		Shard shard = Shard.of(0, 1, " 7 - ");
+		assertEquals(rows(shard, 10), Arrays.asList(7L, 8L, 9L));
+		assertFalse(shard.isPast(Long.MAX_VALUE - 1));
+	}
+
+	@Test
+	public void rangeAndStripesCombine() {
+		// the stripe is taken over absolute row numbers, not positions inside the range
+		assertEquals(rows(Shard.of(1, 2, "2-8"), 10), Arrays.asList(3L, 5L, 7L));
+	}
+
+	@Test
+	public void allContainsEveryRow() {
+		assertEquals(rows(Shard.ALL, 5), Arrays.asList(0L, 1L, 2L, 3L, 4L));
+		assertEquals(Shard.ALL.toString(), "shard 0/1");
+		assertEquals(Shard.of(1, 2, "2-8").toString(), "shard 1/2 rows 2-8");
+	}
+
+	@Test
+	public void rejectsInvalidShards() {
+		expectThrows(IllegalArgumentException.class, () -> Shard.of(2, 2, null));
+		expectThrows(IllegalArgumentException.class, () -> Shard.of(-1, 2, null));
+		expectThrows(IllegalArgumentException.class, () -> Shard.of(0, 0, null));
+		expectThrows(IllegalArgumentException.class, () -> Shard.of(0, 1, "6-3"));
+		expectThrows(NumberFormatException.class, () -> Shard.of(0, 1, "a-3"));
+	}
+
+	private static List<Long> rows(Shard shard, long total) {
+		List<Long> rows = new ArrayList<>();
+		for (long row = 0; row < total; row++) {
+			if (shard.contains(row)) {
+				rows.add(row);
+			}
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,75 @@
+package com.qa.utilities;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+public class TestDurationsTest {
+
+	@Test
+	public void sumsInvocationsAndSkipsConfigurationMethods() throws IOException {
+		TestDurations durations = new TestDurations();
+		durations.record(results(method("mainTest", 1000, false), method("mainTest", 500, false),
+				method("setUp", 9000, true), method("other", 200, false)));
+		assertEquals(durations.get("automation.ApplicationTest.mainTest"), Long.valueOf(1500));
+		assertEquals(durations.get("automation.ApplicationTest.other"), Long.valueOf(200));
+		assertNull(durations.get("automation.ApplicationTest.setUp"));
+	}
+
+	@Test
+	public void blendsANewRunHalfAndHalfWithTheHistory() throws IOException {
+		TestDurations durations = new TestDurations();
+		durations.record(results(method("mainTest", 1000, false)));
+		durations.record(results(method("mainTest", 3000, false)));
+		assertEquals(durations.get("automation.ApplicationTest.mainTest"), Long.valueOf(2000));
+		durations.record(results(method("mainTest", 1000, false)));
+		assertEquals(durations.get("automation.ApplicationTest.mainTest"), Long.valueOf(1500));
+	}
+
+	@Test
+	public void medianFallsBackWithoutHistory() throws IOException {
+		TestDurations durations = new TestDurations();
+		assertEquals(durations.median(42), 42);
+		durations.record(results(method("a", 10, false), method("b", 30, false), method("c", 20, false)));
+		assertEquals(durations.median(42), 20);
+	}
+
+	@Test
+	public void savesAndLoadsTheHistory() throws IOException {
+		Path file = Files.createTempFile("durations", ".properties");
+		Files.delete(file);
+		try {
+			assertNull(TestDurations.load(file).get("automation.ApplicationTest.mainTest"));
+			TestDurations durations = new TestDurations();
+			durations.record(results(method("mainTest", 1234, false)));
+			durations.save(file);
+			assertEquals(TestDurations.load(file).get("automation.ApplicationTest.mainTest"), Long.valueOf(1234));
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private static String method(String name, long millis, boolean config) {
+		return "<test-method name=\"" + name + "\" duration-ms=\"" + millis + "\""
+				+ (config ? " is-config=\"true\"" : "") + " status=\"PASS\"/>";
+	}
+
+	private static Path results(String... methods) throws IOException {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<testng-results total=\"1\"><suite name=\"Suite\"><test name=\"Test\">"
+				+ "<class name=\"automation.ApplicationTest\">");
+		for (String method : methods) {
+			xml.append(method);
+		}
+		xml.append("</class></test></suite></testng-results>");
+		Path file = Files.createTempFile("testng-results", ".xml");
+		file.toFile().deleteOnExit();
+		return Files.write(file, xml.toString().getBytes(StandardCharsets.UTF_8));
+	}
+}